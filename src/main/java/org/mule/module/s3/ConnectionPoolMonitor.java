@@ -0,0 +1,294 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3;
+
+import org.mule.module.s3.simpleapi.AmazonS3Decorator;
+import org.mule.module.s3.util.DaemonThreadFactory;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.S3Object;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns an {@link AmazonS3Client} and watches the use of its pool of HTTP
+ * connections, answering its usage statistics and, optionally, closing the
+ * connections that have been idle for too long - which the client never does by
+ * itself, so they are otherwise kept open until the server drops them, and then
+ * fail when reused.
+ * <p>
+ * The AWS SDK neither exposes the connection manager of its clients nor accepts
+ * one, so the pool is watched through the requests made with {@link #getS3()}:
+ * each request leases a connection until it is answered or, for got objects,
+ * until their content is read to its end or closed. The pool only opens a
+ * connection when all its open ones are leased, so it holds as many as were
+ * leased at the same time, unless the server dropped some of them.
+ * </p>
+ * <p>
+ * Idle connections are closed once none of them has been leased for the idle
+ * timeout, by shutting the client down and creating a new one on the next
+ * request. Connections that stay idle while others are leased are checked by the
+ * client before they are reused.
+ * </p>
+ */
+final class ConnectionPoolMonitor implements InvocationHandler
+{
+    private static final long MAX_REAP_INTERVAL = 30 * 1000;
+
+    private final SharedAmazonS3Clients.ComponentFactory<AmazonS3Client> clientFactory;
+    private final int maxConnections;
+    private final long idleTimeoutNanos;
+    private final AmazonS3 proxy;
+    private AmazonS3Client s3;
+    private int leasedConnections;
+    private int openConnections;
+    private long reapedConnections;
+    private long idleSince = System.nanoTime();
+    private ScheduledExecutorService reaper;
+
+    /**
+     * @param clientFactory creates the client, and the ones that replace it once
+     *            its idle connections are closed
+     * @param maxConnections the size of the client's pool
+     * @param idleTimeoutMillis the time a connection can be idle before it is
+     *            closed, or zero for never closing idle connections
+     */
+    public ConnectionPoolMonitor(SharedAmazonS3Clients.ComponentFactory<AmazonS3Client> clientFactory,
+                                 int maxConnections,
+                                 long idleTimeoutMillis)
+    {
+        this.clientFactory = clientFactory;
+        this.maxConnections = maxConnections;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.s3 = clientFactory.create();
+        this.proxy = (AmazonS3) Proxy.newProxyInstance(AmazonS3.class.getClassLoader(),
+            new Class<?>[]{AmazonS3.class}, this);
+        if (idleTimeoutMillis > 0)
+        {
+            long interval = Math.min(idleTimeoutMillis, MAX_REAP_INTERVAL);
+            reaper = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("mule-s3-reaper"));
+            reaper.scheduleWithFixedDelay(new Runnable()
+            {
+                public void run()
+                {
+                    reap();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the client whose connections are watched
+     */
+    public AmazonS3 getS3()
+    {
+        return proxy;
+    }
+
+    public synchronized ConnectionPoolStatistics getStatistics()
+    {
+        return new ConnectionPoolStatistics(maxConnections, leasedConnections,
+            openConnections - leasedConnections, reapedConnections);
+    }
+
+    /**
+     * Stops closing idle connections, and shuts the client down
+     */
+    public void close()
+    {
+        if (reaper != null)
+        {
+            reaper.shutdownNow();
+        }
+        AmazonS3Client closed;
+        synchronized (this)
+        {
+            closed = s3;
+            s3 = null;
+        }
+        if (closed != null)
+        {
+            closed.shutdown();
+        }
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        if (method.getDeclaringClass() == Object.class)
+        {
+            if (method.getName().equals("equals"))
+            {
+                return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode"))
+            {
+                return System.identityHashCode(proxy);
+            }
+            return "ConnectionPoolMonitor[" + maxConnections + "]";
+        }
+        if (!AmazonS3Decorator.makesRequest(method))
+        {
+            return proceed(getClient(), method, args);
+        }
+        AmazonS3Client client = lease();
+        Object result;
+        try
+        {
+            result = proceed(client, method, args);
+        }
+        catch (Throwable e)
+        {
+            release();
+            throw e;
+        }
+        if (result instanceof S3Object && ((S3Object) result).getObjectContent() != null)
+        {
+            S3Object object = (S3Object) result;
+            object.setObjectContent(new ReleasingInputStream(object.getObjectContent()));
+        }
+        else
+        {
+            release();
+        }
+        return result;
+    }
+
+    private static Object proceed(AmazonS3Client client, Method method, Object[] args) throws Throwable
+    {
+        try
+        {
+            return method.invoke(client, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    private synchronized AmazonS3Client getClient()
+    {
+        if (s3 == null)
+        {
+            s3 = clientFactory.create();
+        }
+        return s3;
+    }
+
+    private synchronized AmazonS3Client lease()
+    {
+        AmazonS3Client client = getClient();
+        leasedConnections++;
+        openConnections = Math.min(maxConnections, Math.max(openConnections, leasedConnections));
+        return client;
+    }
+
+    private synchronized void release()
+    {
+        leasedConnections--;
+        if (leasedConnections == 0)
+        {
+            idleSince = System.nanoTime();
+        }
+    }
+
+    private void reap()
+    {
+        AmazonS3Client idle;
+        synchronized (this)
+        {
+            if (s3 == null || leasedConnections > 0 || System.nanoTime() - idleSince < idleTimeoutNanos)
+            {
+                return;
+            }
+            idle = s3;
+            s3 = null;
+            reapedConnections += openConnections;
+            openConnections = 0;
+        }
+        try
+        {
+            idle.shutdown();
+        }
+        catch (RuntimeException e)
+        {
+            // the client is no longer used anyway, the reaper must not be
+            // cancelled
+        }
+    }
+
+    /**
+     * The content of a got object, which releases the connection of its request
+     * once it is read to its end or closed
+     */
+    private final class ReleasingInputStream extends FilterInputStream
+    {
+        private boolean released;
+
+        public ReleasingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b == -1)
+            {
+                releaseOnce();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int count = super.read(b, off, len);
+            if (count == -1)
+            {
+                releaseOnce();
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                releaseOnce();
+            }
+        }
+
+        private synchronized void releaseOnce()
+        {
+            if (!released)
+            {
+                released = true;
+                release();
+            }
+        }
+    }
+}
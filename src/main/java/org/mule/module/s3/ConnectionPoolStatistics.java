@@ -0,0 +1,94 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3;
+
+/**
+ * A snapshot of the usage of the pool of HTTP connections of a connection to S3
+ */
+public final class ConnectionPoolStatistics
+{
+    private final int maxConnections;
+    private final int leasedConnections;
+    private final int availableConnections;
+    private final long reapedConnections;
+
+    public ConnectionPoolStatistics(int maxConnections,
+                                    int leasedConnections,
+                                    int availableConnections,
+                                    long reapedConnections)
+    {
+        this.maxConnections = maxConnections;
+        this.leasedConnections = leasedConnections;
+        this.availableConnections = availableConnections;
+        this.reapedConnections = reapedConnections;
+    }
+
+    /**
+     * @return the maximum number of connections the pool may open
+     */
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    /**
+     * @return the number of connections currently in use by requests, including
+     *         those whose content is still being read
+     */
+    public int getLeasedConnections()
+    {
+        return leasedConnections;
+    }
+
+    /**
+     * @return the number of connections currently open and idle, which requests
+     *         can use without opening new ones
+     */
+    public int getAvailableConnections()
+    {
+        return availableConnections;
+    }
+
+    /**
+     * @return the number of connections currently open, either leased or
+     *         available
+     */
+    public int getOpenConnections()
+    {
+        return leasedConnections + availableConnections;
+    }
+
+    /**
+     * @return the number of idle connections closed so far by the idle connection
+     *         reaper
+     */
+    public long getReapedConnections()
+    {
+        return reapedConnections;
+    }
+
+    /**
+     * @return the ratio of leased to maximum connections, between 0 and 1. A ratio
+     *         close to 1 under load means requests are likely waiting for
+     *         connections, and maxConnections should be increased
+     */
+    public double getUtilization()
+    {
+        return maxConnections == 0 ? 0 : (double) leasedConnections / maxConnections;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ConnectionPoolStatistics[max " + maxConnections + ", leased " + leasedConnections
+               + ", available " + availableConnections + ", reaped " + reapedConnections + "]";
+    }
+}
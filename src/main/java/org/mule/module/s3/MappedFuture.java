@@ -0,0 +1,70 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A {@link Future} whose result is computed from that of another one, once it is
+ * retrieved. Cancellation and failures are those of the other future.
+ *
+ * @param <S> the type of the result of the other future
+ * @param <T> the type of the result of this future
+ */
+abstract class MappedFuture<S, T> implements Future<T>
+{
+    private final Future<S> delegate;
+
+    public MappedFuture(@NotNull Future<S> delegate)
+    {
+        Validate.notNull(delegate);
+        this.delegate = delegate;
+    }
+
+    /**
+     * Computes the result of this future
+     *
+     * @param result the result of the other future, which may be null
+     */
+    protected abstract T map(S result);
+
+    public boolean cancel(boolean mayInterruptIfRunning)
+    {
+        return delegate.cancel(mayInterruptIfRunning);
+    }
+
+    public boolean isCancelled()
+    {
+        return delegate.isCancelled();
+    }
+
+    public boolean isDone()
+    {
+        return delegate.isDone();
+    }
+
+    public T get() throws InterruptedException, ExecutionException
+    {
+        return map(delegate.get());
+    }
+
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+    {
+        return map(delegate.get(timeout, unit));
+    }
+}
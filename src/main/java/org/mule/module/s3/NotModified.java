@@ -0,0 +1,22 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3;
+
+/**
+ * The result of the processors that get or copy an object when their conditional
+ * constraints are not met - that is, the object was not modified, or did not
+ * have the expected ETag - so that flows can tell it apart from an actual
+ * result, such as the null version id of a copy to a bucket without versioning.
+ */
+public enum NotModified
+{
+    INSTANCE
+}
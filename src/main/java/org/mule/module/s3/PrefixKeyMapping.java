@@ -0,0 +1,63 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3;
+
+import org.mule.module.s3.simpleapi.SimpleAmazonS3.KeyMapping;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link KeyMapping} that replaces the prefix of keys, and optionally rewrites
+ * the rest of them with a regular expression. Keys that do not contain the
+ * expression are not mapped.
+ */
+final class PrefixKeyMapping implements KeyMapping
+{
+    private final String sourcePrefix;
+    private final String destinationPrefix;
+    private final Pattern pattern;
+    private final String replacement;
+
+    /**
+     * @param sourcePrefix the prefix of the mapped keys
+     * @param destinationPrefix the prefix that replaces the source prefix
+     * @param pattern the expression that the keys, without the source prefix, must
+     *            contain, or null if all the keys are mapped
+     * @param replacement the replacement for the matches of the pattern, or null
+     *            if keys are not rewritten
+     */
+    public PrefixKeyMapping(String sourcePrefix, String destinationPrefix, Pattern pattern, String replacement)
+    {
+        this.sourcePrefix = sourcePrefix;
+        this.destinationPrefix = destinationPrefix;
+        this.pattern = pattern;
+        this.replacement = replacement;
+    }
+
+    public String map(String sourceKey)
+    {
+        String relativeKey = sourceKey.substring(sourcePrefix.length());
+        if (pattern != null)
+        {
+            Matcher matcher = pattern.matcher(relativeKey);
+            if (!matcher.find())
+            {
+                return null;
+            }
+            if (replacement != null)
+            {
+                relativeKey = matcher.replaceAll(replacement);
+            }
+        }
+        return destinationPrefix + relativeKey;
+    }
+}
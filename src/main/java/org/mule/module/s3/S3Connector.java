@@ -12,12 +12,10 @@ package org.mule.module.s3;
 
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.HttpMethod;
-import com.amazonaws.auth.AWSCredentials;
-import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.Bucket;
 import com.amazonaws.services.s3.model.BucketWebsiteConfiguration;
+import com.amazonaws.services.s3.model.CopyObjectResult;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.Permission;
 import com.amazonaws.services.s3.model.PutObjectRequest;
@@ -38,18 +36,37 @@ import org.mule.api.annotations.param.ConnectionKey;
 import org.mule.api.annotations.param.Default;
 import org.mule.api.annotations.param.Optional;
 import org.mule.api.annotations.param.Payload;
+import org.mule.module.s3.simpleapi.AsyncSimpleAmazonS3;
+import org.mule.module.s3.simpleapi.BulkCopyResult;
+import org.mule.module.s3.simpleapi.BulkDeleteResult;
+import org.mule.module.s3.simpleapi.ByteRange;
+import org.mule.module.s3.simpleapi.CacheStatistics;
+import org.mule.module.s3.simpleapi.ConcurrencyLimitStatistics;
+import org.mule.module.s3.simpleapi.ConcurrencyLimitingAmazonS3;
 import org.mule.module.s3.simpleapi.ConditionalConstraints;
+import org.mule.module.s3.simpleapi.ListingPage;
 import org.mule.module.s3.simpleapi.Region;
+import org.mule.module.s3.simpleapi.MetricsSimpleAmazonS3;
+import org.mule.module.s3.simpleapi.RateLimitStatistics;
+import org.mule.module.s3.simpleapi.RateLimitingAmazonS3;
+import org.mule.module.s3.simpleapi.RetryBudgets;
+import org.mule.module.s3.simpleapi.RetryStatistics;
+import org.mule.module.s3.simpleapi.RetryingSimpleAmazonS3;
 import org.mule.module.s3.simpleapi.S3ObjectId;
 import org.mule.module.s3.simpleapi.SimpleAmazonS3;
 import org.mule.module.s3.simpleapi.SimpleAmazonS3AmazonDevKitImpl;
 import org.mule.module.s3.simpleapi.VersioningStatus;
 
+import java.io.File;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 import static org.mule.module.s3.util.InternalUtils.coalesce;
 
@@ -86,6 +103,408 @@ public class S3Connector
     @Configurable
     @Optional
     private String proxyHost;   
+
+    /**
+     * The optional maximum number of HTTP connections opened at the same time.
+     * Requests beyond this limit wait for a connection to be released, so this
+     * should be at least the number of concurrent operations expected. Defaults to
+     * 50
+     */
+    @Configurable
+    @Optional
+    private Integer maxConnections;
+
+    /**
+     * The optional time, in milliseconds, to wait for a connection to be
+     * established. Defaults to 50000
+     */
+    @Configurable
+    @Optional
+    private Integer connectionTimeout;
+
+    /**
+     * The optional time, in milliseconds, to wait for data to be transferred over
+     * an open connection before giving up. Defaults to 50000
+     */
+    @Configurable
+    @Optional
+    private Integer socketTimeout;
+
+    /**
+     * The optional size hint, in bytes, for the send buffer of the sockets.
+     * Defaults to the operating system's default
+     */
+    @Configurable
+    @Optional
+    private Integer socketSendBufferSize;
+
+    /**
+     * The optional size hint, in bytes, for the receive buffer of the sockets.
+     * Defaults to the operating system's default
+     */
+    @Configurable
+    @Optional
+    private Integer socketReceiveBufferSize;
+
+    /**
+     * The optional maximum number of times a failed request that can be retried -
+     * such as one that was throttled or failed with a server error - is retried.
+     * Defaults to 3
+     */
+    @Configurable
+    @Optional
+    private Integer maxErrorRetry;
+
+    /**
+     * The optional time, in seconds, that a pooled HTTP connection can be idle
+     * before it is closed. Defaults to 0, that is, idle connections are kept open
+     * until the server closes them
+     */
+    @Configurable
+    @Optional
+    private Integer idleConnectionTimeout;
+
+    /**
+     * The optional content length, in bytes, above which objects are uploaded in
+     * several parts, using an S3 multipart upload. Defaults to 16 MB
+     */
+    @Configurable
+    @Optional
+    private Long multipartUploadThreshold;
+
+    /**
+     * The optional size, in bytes, of each part of a multipart upload. S3 does not
+     * accept parts smaller than 5 MB, except for the last one. Defaults to 8 MB
+     */
+    @Configurable
+    @Optional
+    private Long multipartUploadPartSize;
+
+    /**
+     * The optional maximum number of parts of a single multipart upload that are
+     * uploaded concurrently. Defaults to 4
+     */
+    @Configurable
+    @Optional
+    private Integer multipartUploadConcurrency;
+
+    /**
+     * The optional source object length, in bytes, above which copyObject copies
+     * objects in several parts, using an S3 multipart upload. Objects larger than
+     * 5 GB can only be copied this way. Thresholds lower than 5 GB cost an extra
+     * metadata request per copy, while larger copies only fall back to parts when
+     * S3 rejects their source as too large. 0 disables multipart copies. Defaults
+     * to 5 GB
+     */
+    @Configurable
+    @Optional
+    private Long multipartCopyThreshold;
+
+    /**
+     * The optional size, in bytes, of each part of a multipart copy. S3 does not
+     * accept parts smaller than 5 MB, except for the last one. Defaults to 64 MB
+     */
+    @Configurable
+    @Optional
+    private Long multipartCopyPartSize;
+
+    /**
+     * The optional maximum number of parts of a single multipart copy that are
+     * copied concurrently. Defaults to 4
+     */
+    @Configurable
+    @Optional
+    private Integer multipartCopyConcurrency;
+
+    /**
+     * Whether InputStreams of unknown length must be uploaded while they are read,
+     * in parts, instead of being first copied to a temporary file. As their length
+     * is unknown, the part size doubles every 2000 parts, up to 16 times the
+     * multipartUploadPartSize, so that they can be up to 62000 times the
+     * multipartUploadPartSize long. Defaults to false
+     */
+    @Configurable
+    @Optional
+    private Boolean streamingUpload;
+
+    /**
+     * Whether get-object-content must fetch objects larger than the download part
+     * size in several byte ranges, on concurrent connections. This requires an
+     * extra request for retrieving the object length, so it only pays off for large
+     * objects. Defaults to false
+     */
+    @Configurable
+    @Optional
+    private Boolean parallelDownload;
+
+    /**
+     * The optional size, in bytes, of the byte ranges fetched by parallel
+     * downloads. Defaults to 8 MB
+     */
+    @Configurable
+    @Optional
+    private Long downloadPartSize;
+
+    /**
+     * The optional maximum number of byte ranges of a single object fetched
+     * concurrently by parallel downloads. Defaults to 4
+     */
+    @Configurable
+    @Optional
+    private Integer downloadConcurrency;
+
+    /**
+     * The optional maximum number of multi-object delete requests, of up to 1000
+     * keys each, sent at the same time when deleting objects in bulk. Defaults to 4
+     */
+    @Configurable
+    @Optional
+    private Integer deleteConcurrency;
+
+    /**
+     * The optional maximum number of objects copied at the same time by
+     * copyObjects. It is capped at maxConnections, and so are all the parts
+     * copied at the same time by the objects that are copied in parts. Defaults
+     * to 8
+     */
+    @Configurable
+    @Optional
+    private Integer copyConcurrency;
+
+    /**
+     * The optional maximum number of pages of a listing of objects or versions, of
+     * up to 1000 entries each, fetched in background while the previous ones are
+     * still being consumed. Defaults to 0, that is, pages are fetched only once the
+     * previous one has been consumed. Prefetching stops once the listing is
+     * exhausted or closed - listings are java.io.Closeable - or its iteration is
+     * no longer referenced
+     */
+    @Configurable
+    @Optional
+    private Integer listingPrefetchPages;
+
+    /**
+     * The optional maximum number of listing pages either being fetched or fetched
+     * and waiting to be consumed when listing objects in parallel. Defaults to 8
+     */
+    @Configurable
+    @Optional
+    private Integer listingConcurrency;
+
+    /**
+     * The optional maximum number of objects whose metadata is cached by
+     * getObjectMetadata. The cache is shared by the pooled connections of this
+     * configuration. The metadata of objects changed through this connector is
+     * discarded, but changes made by others are not noticed until entries expire.
+     * Defaults to 0, that is, metadata is not cached
+     */
+    @Configurable
+    @Optional
+    private Integer metadataCacheMaxEntries;
+
+    /**
+     * The optional time, in seconds, that object metadata is cached for. Only used
+     * if metadataCacheMaxEntries is specified. Defaults to 60
+     */
+    @Configurable
+    @Optional
+    private Integer metadataCacheTtl;
+
+    /**
+     * The optional time, in seconds, that the regions of buckets are cached for
+     * once they are fetched by createObjectUri. Defaults to 0, that is, regions are
+     * cached for as long as the connection lives
+     */
+    @Configurable
+    @Optional
+    private Integer bucketRegionCacheTtl;
+
+    /**
+     * The optional regions of known buckets, by bucket name, so that they never
+     * need to be fetched by createObjectUri. Regions are specified as in
+     * createBucket, for example EU_IRELAND
+     */
+    @Configurable
+    @Optional
+    private Map<String, String> bucketRegions;
+
+    /**
+     * The optional directory where the contents answered by getObjectContent are
+     * cached. Cached contents are revalidated on each read with a conditional
+     * request, so unchanged contents are not transferred again. If unspecified,
+     * contents are not cached. The cache is shared by the pooled connections.
+     * Warning: files left in this directory by previous caches are deleted when
+     * the first connection that uses it is established
+     */
+    @Configurable
+    @Optional
+    private String contentCacheDirectory;
+
+    /**
+     * The optional maximum total size, in bytes, of the contents cached in the
+     * contentCacheDirectory, by all the pooled connections. Least recently read
+     * contents are discarded first. Defaults to 256 MB
+     */
+    @Configurable
+    @Optional
+    private Long contentCacheMaxSize;
+
+    /**
+     * The optional maximum number of pre-signed URIs cached by
+     * createObjectPresignedUri and createObjectPresignedUris, so that URIs of the
+     * same object and method are not signed again. Defaults to 0, that is, URIs
+     * are not cached
+     */
+    @Configurable
+    @Optional
+    private Integer presignedUriCacheMaxEntries;
+
+    /**
+     * The optional minimum time, in seconds, that a cached pre-signed URI must
+     * still be valid for in order to be reused. Only used if
+     * presignedUriCacheMaxEntries is specified. Defaults to 60
+     */
+    @Configurable
+    @Optional
+    private Integer presignedUriCacheMargin;
+
+    /**
+     * The optional maximum number of operations started by the async processors,
+     * such as createObjectAsync, that are run at the same time. Defaults to 16
+     */
+    @Configurable
+    @Optional
+    private Integer asyncConcurrency;
+
+    /**
+     * The optional maximum number of operations started by the async processors
+     * that wait for being run. Once it is reached, operations are run by the
+     * calling flow thread instead. Defaults to 1000
+     */
+    @Configurable
+    @Optional
+    private Integer asyncQueueSize;
+
+    /**
+     * The optional maximum time, in milliseconds, that disconnecting waits for the
+     * operations started by the async processors to complete. Operations still
+     * pending after it are abandoned: running ones are interrupted, and waiting
+     * ones are cancelled. Defaults to 30000
+     */
+    @Configurable
+    @Optional
+    private Long asyncShutdownTimeout;
+
+    /**
+     * The optional maximum number of times the connector retries an operation that
+     * failed with a transient error, such as a throttling response, waiting
+     * between attempts with exponential backoff and random jitter. Unlike
+     * maxErrorRetry, which applies to each single request made by the underlying
+     * client, it applies to whole operations, and only idempotent operations are
+     * retried on errors other than throttling. As both retry layers multiply,
+     * consider lowering maxErrorRetry when using it. If unspecified, operations
+     * are not retried by the connector
+     */
+    @Configurable
+    @Optional
+    private Integer maxRetries;
+
+    /**
+     * The optional limit, in milliseconds, of the random wait before the first
+     * retry, which doubles on each following one. Only used if maxRetries is
+     * specified. Defaults to 100
+     */
+    @Configurable
+    @Optional
+    private Long retryBaseDelay;
+
+    /**
+     * The optional maximum wait, in milliseconds, before any retry. Only used if
+     * maxRetries is specified. Defaults to 20000
+     */
+    @Configurable
+    @Optional
+    private Long retryMaxDelay;
+
+    /**
+     * The optional maximum number of retries of each operation that can be made
+     * in a row without successful calls in between. Each successful call allows a
+     * tenth of a further retry. This stops retrying operations that fail
+     * persistently, which would only add load to an overloaded service. The
+     * budget is shared by the pooled connections. Only used if maxRetries is
+     * specified. Defaults to 20
+     */
+    @Configurable
+    @Optional
+    private Integer retryBudget;
+
+    /**
+     * The optional maximum rates, in requests per second, of the requests that read
+     * objects - gets and listings - by bucket name, or by bucket name and key
+     * prefix, separated by a slash, like my-bucket/logs/. Each request is limited
+     * by the entry of its bucket with the longest prefix of its key, if any, so the
+     * many requests of bulk and parallel operations are limited one by one.
+     * Requests exceeding their rate wait for it, see rateLimitMaxWait. Limits are
+     * shared by all the pooled connections of the connector. If unspecified, reads
+     * are not limited
+     */
+    @Configurable
+    @Optional
+    private Map<String, String> readRateLimits;
+
+    /**
+     * The optional maximum rates, in requests per second, of the requests that
+     * write objects - creations, copies, deletions and settings - specified as in
+     * readRateLimits. If unspecified, writes are not limited
+     */
+    @Configurable
+    @Optional
+    private Map<String, String> writeRateLimits;
+
+    /**
+     * The optional maximum time, in milliseconds, that a request waits for its
+     * rate limit. Requests that would need to wait longer fail immediately
+     * instead. Only used if readRateLimits or writeRateLimits are specified.
+     * Defaults to waiting as long as necessary
+     */
+    @Configurable
+    @Optional
+    private Long rateLimitMaxWait;
+
+    /**
+     * The optional maximum number of requests in flight at the same time through
+     * this connector, across all flows and pooled connections. Each of the
+     * requests of bulk and parallel operations counts, and got objects count
+     * until their content is read or closed. Below it, the connector tunes the
+     * limit: it grows while latencies stay flat, and shrinks when they rise or
+     * requests are throttled. Requests beyond the limit wait for others to
+     * finish. It starts at 16, or at the maximum if lower. If unspecified,
+     * requests are not limited
+     */
+    @Configurable
+    @Optional
+    private Integer maxConcurrency;
+
+    /**
+     * The optional minimum the tuned limit of requests in flight at the same time
+     * can shrink to. Only used if maxConcurrency is specified. Defaults to 1
+     */
+    @Configurable
+    @Optional
+    private Integer minConcurrency;
+
+    /**
+     * The optional name under which the connector publishes the metrics of its
+     * operations over JMX - latency percentiles, request, error and in flight
+     * counts, and uploaded and downloaded bytes - as MBeans named
+     * org.mule.module.s3:type=S3Metrics,name=&lt;metricsName&gt;, for all
+     * operations, and with an additional operation key, for each one. Connections
+     * with the same name record their operations in the same MBeans. If
+     * unspecified, metrics are not recorded
+     */
+    @Configurable
+    @Optional
+    private String metricsName;
     
     /**
      * Inject the SimpleAmazonS3 client
@@ -94,6 +513,22 @@ public class S3Connector
     @Optional
     private SimpleAmazonS3 client;
 
+    private SharedAmazonS3Clients.SharedClient sharedClient;
+
+    private SharedS3Metrics.SharedMetrics sharedMetrics;
+
+    private SharedContentCaches.SharedContentCache sharedContentCache;
+
+    private String connectionId;
+
+    private AsyncSimpleAmazonS3 asyncClient;
+
+    private RetryingSimpleAmazonS3 retryingClient;
+
+    private RateLimitingAmazonS3 rateLimitingClient;
+
+    private ConcurrencyLimitingAmazonS3 concurrencyLimitingClient;
+
     /**
      * Creates a new bucket; connector must not be configured as anonymous for this
      * operation to succeed. Bucket names must be unique across all of Amazon S3,
@@ -127,7 +562,9 @@ public class S3Connector
      * Deletes the specified bucket. All objects (and all object versions, if
      * versioning was ever enabled) in the bucket must be deleted before the bucket
      * itself can be deleted; this restriction can be relaxed by specifying the 
-     * attribute  force="true".
+     * attribute  force="true", in which case objects are deleted in batches of up to
+     * 1000 keys. If any of them can not be deleted, the bucket is kept and the
+     * failures are reported.
      *
      * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:delete-bucket}
      * 
@@ -286,70 +723,237 @@ public class S3Connector
      * @param bucketName the target bucket's name
      * @param prefix the prefix of the objects to be listed. If unspecified, all
      *            objects are listed
+     * @param delimiter the delimiter of the key hierarchy. If specified, objects
+     *            whose key contains it after the prefix are not listed, as they are
+     *            rolled up into common prefixes. See listCommonPrefixes
+     * @param marker the key to start listing after, for resuming a previous
+     *            listing. If unspecified, objects are listed from the beginning
      * @return An iterable
      */
     @Processor
     public Iterable<S3ObjectSummary> listObjects(String bucketName,
-                                                 @Optional String prefix)
+                                                 @Optional String prefix,
+                                                 @Optional String delimiter,
+                                                 @Optional String marker)
     {
-        return client.listObjects(bucketName, prefix);
+        return client.listObjects(bucketName, prefix, delimiter, marker);
     }
-    
+
     /**
-     * Lazily lists all object versions for a given bucket that has versioning enabled.
-     * As S3 does not limit in any way
-     * the number of objects, such listing can retrieve an arbitrary amount of
-     * object versions, and may need to perform extra calls to the api while it is iterated.
+     * Lists a single page of the objects for a given prefix. The answered page
+     * holds the marker of the following one, which can be used for resuming the
+     * listing at any time - for example, after a restart - by passing it as the
+     * marker of the next invocation.
      *
-     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:list-object-versions}
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:list-objects-page}
      *
      * @param bucketName the target bucket's name
-     * @return An iterable
+     * @param prefix the prefix of the objects to be listed. If unspecified, all
+     *            objects are listed
+     * @param delimiter the delimiter of the key hierarchy. If specified, objects
+     *            whose key contains it after the prefix are rolled up into the
+     *            common prefixes of the page
+     * @param marker the key to start listing after, usually the next marker of the
+     *            previous page. If unspecified, the first page is listed
+     * @param maxKeys the maximum number of objects of the page. S3 does not answer
+     *            more than 1000, which is the default
+     * @return the page, holding its object summaries, its common prefixes and the
+     *         next marker, which is null for the last page
      */
     @Processor
-    public Iterable<S3VersionSummary> listObjectVersions(String bucketName)
+    public ListingPage<S3ObjectSummary> listObjectsPage(String bucketName,
+                                                        @Optional String prefix,
+                                                        @Optional String delimiter,
+                                                        @Optional String marker,
+                                                        @Optional Integer maxKeys)
     {
-        return client.listObjectVersions(bucketName);
+        return client.listObjectsPage(bucketName, prefix, delimiter, marker, maxKeys);
     }
-    
+
     /**
-     * Uploads an object to S3. Supported contents are InputStreams, Strings, byte
-     * arrays and Files.
+     * Lazily lists all objects for a given prefix, one page at a time. Unlike
+     * listObjects, whose result is fully loaded into memory when it is split by a
+     * collection splitter, each page is a separate element of the result, that
+     * can be iterated - for example, by a foreach - holding in memory no more than a
+     * page of objects at a time.
      *
-     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:create-object}
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:list-object-pages}
      *
-     * @param bucketName the object's bucket
-     * @param key the object's key
-     * @param content the content to be uploaded to S3, capable of creating a {@link PutObjectRequest}.
-     * @param contentLength the content length. If content is a InputStream,
-     *            this parameter should be specified, as not doing so will
-     *            introduce a performance loss as the contents will have to be persisted on disk before being uploaded. 
-     *            Otherwise, it is ignored. An exception to this 
-     *            rule are InputStreams returned by Mule Http Connector: if stream has Content-Length 
-     *            information, it will be used. 
-     *            In any case a content length of 0 is interpreted as an unspecified content length
-     * @param contentMd5 the content md5, encoded in base 64. If content is a file,
-     *            it is ignored.
-     * @param contentType the content type of the new object.
-     * @param acl the access control list of the new object
-     * @param storageClass the storage class of the new object
-     * @param userMetadata a map of arbitrary object properties keys and values
-     * @return the id of the created object, or null, if versioning is not enabled
+     * @param bucketName the target bucket's name
+     * @param prefix the prefix of the objects to be listed. If unspecified, all
+     *            objects are listed
+     * @param delimiter the delimiter of the key hierarchy. If specified, objects
+     *            whose key contains it after the prefix are rolled up into the
+     *            common prefixes of each page
+     * @param marker the key to start listing after, for resuming a previous
+     *            listing. If unspecified, objects are listed from the beginning
+     * @param pageSize the maximum number of objects of each page. S3 does not answer
+     *            more than 1000, which is the default
+     * @return An iterable of pages, each of them an iterable of object summaries
      */
     @Processor
-    public String createObject(String bucketName,
-                               String key,
-                               @Payload Object content,
-                               @Optional Long contentLength,
-                               @Optional String contentMd5,
-                               @Optional String contentType,
-                               @Optional @Default("PRIVATE") AccessControlList acl,
+    public Iterable<ListingPage<S3ObjectSummary>> listObjectPages(String bucketName,
+                                                                  @Optional String prefix,
+                                                                  @Optional String delimiter,
+                                                                  @Optional String marker,
+                                                                  @Optional Integer pageSize)
+    {
+        return client.listObjectPages(bucketName, prefix, delimiter, marker, pageSize);
+    }
+
+    /**
+     * Lazily lists the common prefixes of the keys under a given prefix, that is,
+     * the distinct "directories" one level below the prefix, when keys are
+     * organized hierarchically using a delimiter. Unlike listing all the objects
+     * under the prefix, this only fetches one page of up to 1000 entries per level.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:list-common-prefixes}
+     *
+     * @param bucketName the target bucket's name
+     * @param prefix the prefix of the keys. If unspecified, the top level common
+     *            prefixes are listed
+     * @param delimiter the delimiter of the key hierarchy
+     * @return An iterable of strings
+     */
+    @Processor
+    public Iterable<String> listCommonPrefixes(String bucketName,
+                                               @Optional String prefix,
+                                               @Optional @Default("/") String delimiter)
+    {
+        return client.listCommonPrefixes(bucketName, prefix, delimiter);
+    }
+
+    /**
+     * Lazily lists all objects for a given prefix, splitting the key space in
+     * shards that are listed at the same time and merged into a single iterable.
+     * The key space is split either at the given boundaries, or at the common
+     * prefixes of the given prefix, using / as delimiter - which requires listing
+     * the first level of the hierarchy before starting. Up to
+     * listingConcurrency pages are fetched at the same time. The iterable is a
+     * java.io.Closeable, whose closing stops fetching pages for the iterations
+     * that were abandoned before their end.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:list-objects-in-parallel}
+     *
+     * @param bucketName the target bucket's name
+     * @param prefix the prefix of the objects to be listed. If unspecified, all
+     *            objects are listed
+     * @param boundaries the keys at which the key space is split, each of them being
+     *            the last key of a shard. If unspecified, the key space is split at
+     *            common prefixes
+     * @param ordered whether objects must be listed in key order, as listObjects
+     *            does. Otherwise, objects are listed as soon as they are fetched
+     * @return An iterable
+     */
+    @Processor
+    public Iterable<S3ObjectSummary> listObjectsInParallel(String bucketName,
+                                                           @Optional String prefix,
+                                                           @Optional List<String> boundaries,
+                                                           @Optional @Default("false") boolean ordered)
+    {
+        return client.listObjectsInParallel(bucketName, prefix, boundaries, ordered);
+    }
+    
+    /**
+     * Lazily lists all object versions for a given bucket that has versioning enabled.
+     * As S3 does not limit in any way
+     * the number of objects, such listing can retrieve an arbitrary amount of
+     * object versions, and may need to perform extra calls to the api while it is iterated.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:list-object-versions}
+     *
+     * @param bucketName the target bucket's name
+     * @param prefix the prefix of the objects whose versions are listed. If
+     *            unspecified, versions of all the objects are listed
+     * @param keyMarker the key to start listing after, for resuming a previous
+     *            listing. If unspecified, versions are listed from the beginning
+     * @param versionIdMarker the version of the key marker to start listing after.
+     *            If unspecified, all the versions of the keys after the key marker
+     *            are listed
+     * @return An iterable
+     */
+    @Processor
+    public Iterable<S3VersionSummary> listObjectVersions(String bucketName,
+                                                         @Optional String prefix,
+                                                         @Optional String keyMarker,
+                                                         @Optional String versionIdMarker)
+    {
+        return client.listObjectVersions(bucketName, prefix, keyMarker, versionIdMarker);
+    }
+
+    /**
+     * Lists a single page of the object versions of a given bucket. The answered
+     * page holds the key and version id markers of the following one, which can be
+     * used for resuming the listing at any time by passing them to the next
+     * invocation.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:list-object-versions-page}
+     *
+     * @param bucketName the target bucket's name
+     * @param prefix the prefix of the objects whose versions are listed. If
+     *            unspecified, versions of all the objects are listed
+     * @param keyMarker the key to start listing after, usually the next marker of
+     *            the previous page. If unspecified, the first page is listed
+     * @param versionIdMarker the version of the key marker to start listing after,
+     *            usually the next version id marker of the previous page
+     * @param maxKeys the maximum number of versions of the page. S3 does not answer
+     *            more than 1000, which is the default
+     * @return the page, holding its version summaries and the next markers, which
+     *         are null for the last page
+     */
+    @Processor
+    public ListingPage<S3VersionSummary> listObjectVersionsPage(String bucketName,
+                                                                @Optional String prefix,
+                                                                @Optional String keyMarker,
+                                                                @Optional String versionIdMarker,
+                                                                @Optional Integer maxKeys)
+    {
+        return client.listObjectVersionsPage(bucketName, prefix, keyMarker, versionIdMarker, maxKeys);
+    }
+    
+    /**
+     * Uploads an object to S3. Supported contents are InputStreams, Strings, byte
+     * arrays and Files.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:create-object}
+     *
+     * @param bucketName the object's bucket
+     * @param key the object's key
+     * @param content the content to be uploaded to S3, capable of creating a {@link PutObjectRequest}.
+     * @param contentLength the content length. If content is a InputStream,
+     *            this parameter should be specified, as not doing so will
+     *            introduce a performance loss as the contents will have to be persisted on disk before being uploaded. 
+     *            Otherwise, it is ignored. An exception to this 
+     *            rule are InputStreams returned by Mule Http Connector: if stream has Content-Length 
+     *            information, it will be used. If the connector is configured for streaming uploads, 
+     *            InputStreams of unknown length are not persisted but uploaded in parts while read,
+     *            verifying the contentMd5, if any, before completing the upload.
+     *            An unspecified content length means an unknown length, while a content length of 0
+     *            is sent as such, as an empty content
+     * @param contentMd5 the content md5, encoded in base 64. Contents uploaded in
+     *            parts, including files, are sent along with the md5 of each part,
+     *            and the upload fails, without creating the object, if the whole
+     *            content does not match the given md5.
+     * @param contentType the content type of the new object.
+     * @param acl the access control list of the new object
+     * @param storageClass the storage class of the new object
+     * @param userMetadata a map of arbitrary object properties keys and values
+     * @return the id of the created object, or null, if versioning is not enabled
+     */
+    @Processor
+    public String createObject(String bucketName,
+                               String key,
+                               @Payload Object content,
+                               @Optional Long contentLength,
+                               @Optional String contentMd5,
+                               @Optional String contentType,
+                               @Optional @Default("PRIVATE") AccessControlList acl,
                                @Optional @Default("STANDARD") StorageClass storageClass,
                                @Optional Map<String, String> userMetadata)
     {
         return client.createObject(new S3ObjectId(bucketName, key), S3ContentUtils.createContent(content,
-            contentLength, contentMd5), contentType, acl.toS3Equivalent(), storageClass.toS3Equivalent(),
-            userMetadata);
+            contentLength, contentMd5, isStreamingUpload()), contentType, acl.toS3Equivalent(),
+            storageClass.toS3Equivalent(), userMetadata);
     }
 
     /**
@@ -377,6 +981,41 @@ public class S3Connector
         client.deleteObject(new S3ObjectId(bucketName, key, versionId));
     }
 
+    /**
+     * Deletes objects of a bucket in bulk: either all the objects under a given
+     * prefix, or a given list of keys. Objects are deleted using multi-object
+     * delete requests of up to 1000 keys, several of them in parallel, while the
+     * following objects are still being listed. Unlike deleting objects one by one,
+     * failures do not interrupt the operation, but are reported in the result.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:delete-objects}
+     * 
+     * @param bucketName the objects' bucket
+     * @param prefix the prefix of the objects to delete. An empty prefix deletes
+     *            all the objects of the bucket. Ignored if keys are specified
+     * @param keys the keys of the objects to delete. Either a prefix or a list of
+     *            keys must be specified
+     * @return the number of deleted objects, and the detail of those that could not
+     *         be deleted
+     */
+    @Processor
+    public BulkDeleteResult deleteObjects(String bucketName,
+                                          @Optional String prefix,
+                                          @Optional List<String> keys)
+    {
+        if (keys != null)
+        {
+            List<S3ObjectId> objectIds = new ArrayList<S3ObjectId>(keys.size());
+            for (String key : keys)
+            {
+                objectIds.add(new S3ObjectId(bucketName, key));
+            }
+            return client.deleteObjects(objectIds);
+        }
+        Validate.notNull(prefix, "Specify either a prefix or a list of keys");
+        return client.deleteObjects(bucketName, prefix);
+    }
+
     /**
      * Sets the Amazon S3 storage class for the given object. Changing the storage
      * class of an object in a bucket that has enabled versioning creates a new
@@ -406,6 +1045,8 @@ public class S3Connector
      * specified is provided. The AccesControlList is not copied to the new object,
      * and, unless another ACL specified, PRIVATE is assumed. If no destination
      * bucket is specified, the same that the source bucket is used - local copy.
+     * Objects larger than the multipartCopyThreshold, if specified, are copied
+     * in several parts, concurrently.
      *
      * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:copy-object}
      *
@@ -428,11 +1069,17 @@ public class S3Connector
      * @param unmodifiedSince The unmodified constraint that restricts this request
      *            to executing only if the object has not been modified after this
      *            date. This constraint is specified but does not match, no copy is performed
+     * @param matchingETag The constraint that restricts this request to executing
+     *            only if the source object has this ETag. If it does not match, no
+     *            copy is performed
+     * @param nonMatchingETag The constraint that restricts this request to executing
+     *            only if the source object does not have this ETag. If it does not
+     *            match, no copy is performed
      * @return the version id of the new object, or null, if versioning is not
-     *         enabled
+     *         enabled. {@link NotModified#INSTANCE} if constraints did not match
      */
     @Processor
-    public String copyObject(String sourceBucketName,
+    public Object copyObject(String sourceBucketName,
                              String sourceKey,
                              @Optional String sourceVersionId,
                              @Optional String destinationBucketName,
@@ -441,15 +1088,23 @@ public class S3Connector
                              @Optional @Default("STANDARD") StorageClass destinationStorageClass,
                              @Optional Map<String, String> destinationUserMetadata,  
                              @Optional Date modifiedSince, 
-                             @Optional Date unmodifiedSince)
+                             @Optional Date unmodifiedSince,
+                             @Optional String matchingETag,
+                             @Optional String nonMatchingETag)
     {
-        return client.copyObject(
+        CopyObjectResult result = client.copyObject(
                 new S3ObjectId(sourceBucketName, sourceKey, sourceVersionId),
                 new S3ObjectId(coalesce(destinationBucketName, sourceBucketName), destinationKey),
-                ConditionalConstraints.from(modifiedSince, unmodifiedSince),
+                ConditionalConstraints.from(modifiedSince, unmodifiedSince, matchingETag, nonMatchingETag),
                 destinationAcl.toS3Equivalent(),
                 destinationStorageClass.toS3Equivalent(),
                 destinationUserMetadata);
+        return versionIdOrNotModified(result);
+    }
+
+    private static Object versionIdOrNotModified(CopyObjectResult result)
+    {
+        return result != null ? result.getVersionId() : NotModified.INSTANCE;
     }
 
     /**
@@ -481,6 +1136,38 @@ public class S3Connector
             toHttpMethod(method));
     }
 
+    /**
+     * Returns pre-signed URLs for accessing several objects of a bucket, all of
+     * them with the same expiration and method. Signing the URLs of a whole batch
+     * of objects in a single invocation is far cheaper than signing them one by
+     * one. If presignedUriCacheMaxEntries is specified, URLs already signed for
+     * the same object and method are reused, as long as they are still valid for
+     * at least presignedUriCacheMargin seconds and they do not expire after the
+     * requested expiration.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:create-object-presigned-uris}
+     *
+     * @param bucketName the objects' bucket
+     * @param keys the objects' keys
+     * @param expiration The time at which the returned pre-signed URLs will
+     *            expire. Defaults to 15 minutes from now
+     * @param method The HTTP method verb to use for the URLs
+     * @return the non null pre-signed URIs, in the same order as the given keys
+     */
+    @Processor
+    public List<URI> createObjectPresignedUris(String bucketName,
+                                               List<String> keys,
+                                               @Optional Date expiration,
+                                               @Optional @Default("PUT") String method)
+    {
+        List<S3ObjectId> objectIds = new ArrayList<S3ObjectId>(keys.size());
+        for (String key : keys)
+        {
+            objectIds.add(new S3ObjectId(bucketName, key));
+        }
+        return client.createObjectPresignedUris(objectIds, expiration, toHttpMethod(method));
+    }
+
     private HttpMethod toHttpMethod(String method)
     {
         return method != null ? HttpMethod.valueOf(method) : null;
@@ -488,10 +1175,13 @@ public class S3Connector
 
     /**
      * Gets the content of an object stored in Amazon S3 under the specified bucket
-     * and key. Returns null if the specified constraints weren't met. To get an
-     * object's content from Amazon S3, the caller must have {@link Permission#Read}
+     * and key. Returns {@link NotModified#INSTANCE} if the specified constraints
+     * weren't met. To get an object's content from Amazon S3, the caller must have {@link Permission#Read}
      * access to the object. Regarding conditional get constraints, Amazon S3 will
-     * ignore any dates occurring in the future.
+     * ignore any dates occurring in the future. If a content cache is configured -
+     * see contentCacheDirectory - and no constraints are specified, contents are
+     * answered from the cache as long as they have not changed, in which case
+     * parallel download is not used.
      *
      * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:get-object-content}
      * 
@@ -506,22 +1196,143 @@ public class S3Connector
      * @param unmodifiedSince The unmodified constraint that restricts this request
      *            to executing only if the object has not been modified after this
      *            date.
-     * @return an input stream to the objects contents
+     * @param matchingETag The constraint that restricts this request to executing
+     *            only if the object has this ETag.
+     * @param nonMatchingETag The constraint that restricts this request to executing
+     *            only if the object does not have this ETag, usually the one of a
+     *            previously fetched copy of the object. This way, the object is only
+     *            transferred if it has changed.
+     * @return an input stream to the objects contents, or
+     *         {@link NotModified#INSTANCE}, if conditional get constraints did not
+     *         match - that is, the object was not modified
      */
     @Processor
-    public InputStream getObjectContent(String bucketName,
-                                        String key,
-                                        @Optional String versionId,
-                                        @Optional Date modifiedSince,
-                                        @Optional Date unmodifiedSince)
+    public Object getObjectContent(String bucketName,
+                                   String key,
+                                   @Optional String versionId,
+                                   @Optional Date modifiedSince,
+                                   @Optional Date unmodifiedSince,
+                                   @Optional String matchingETag,
+                                   @Optional String nonMatchingETag)
+    {
+        ConditionalConstraints constraints = ConditionalConstraints.from(modifiedSince, unmodifiedSince,
+            matchingETag, nonMatchingETag);
+        if (isParallelDownload() && contentCacheDirectory == null)
+        {
+            return notModifiedIfNull(client.getObjectContentInParallel(new S3ObjectId(bucketName, key,
+                versionId), constraints));
+        }
+        return notModifiedIfNull(client.getObjectContent(new S3ObjectId(bucketName, key, versionId), constraints));
+    }
+
+    private static Object notModifiedIfNull(Object result)
+    {
+        return result != null ? result : NotModified.INSTANCE;
+    }
+
+    /**
+     * Gets a range of bytes of the content of an object stored in Amazon S3 under
+     * the specified bucket and key, avoiding the transfer of the whole object when
+     * only a part of it is needed, like a header or a trailing index. At least one
+     * of offset and length must be specified: if only offset is, the range spans
+     * up to the end of the object; if only length is, the range is the last length
+     * bytes of the object, which requires an extra request for retrieving the
+     * object length. Returns {@link NotModified#INSTANCE} if the specified
+     * constraints weren't met.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:get-object-range}
+     * 
+     * @param bucketName the object's bucket
+     * @param key the object's key
+     * @param versionId the specific version of the object to get its contents, if
+     *            versioning is enabled, left unspecified if the latest version is
+     *            desired, or versioning is not enabled.
+     * @param offset the position of the first byte of the range, starting at 0
+     * @param length the number of bytes of the range
+     * @param modifiedSince The modified constraint that restricts this request to
+     *            executing only if the object has been modified after the specified
+     *            date.
+     * @param unmodifiedSince The unmodified constraint that restricts this request
+     *            to executing only if the object has not been modified after this
+     *            date.
+     * @param matchingETag The constraint that restricts this request to executing
+     *            only if the object has this ETag.
+     * @param nonMatchingETag The constraint that restricts this request to executing
+     *            only if the object does not have this ETag.
+     * @return an input stream to the given range of the object contents, or
+     *         {@link NotModified#INSTANCE}, if conditional get constraints did not
+     *         match
+     */
+    @Processor
+    public Object getObjectRange(String bucketName,
+                                 String key,
+                                 @Optional String versionId,
+                                 @Optional Long offset,
+                                 @Optional Long length,
+                                 @Optional Date modifiedSince,
+                                 @Optional Date unmodifiedSince,
+                                 @Optional String matchingETag,
+                                 @Optional String nonMatchingETag)
+    {
+        return notModifiedIfNull(client.getObjectRange(new S3ObjectId(bucketName, key, versionId),
+            ByteRange.from(offset, length),
+            ConditionalConstraints.from(modifiedSince, unmodifiedSince, matchingETag, nonMatchingETag)));
+    }
+
+    /**
+     * Downloads the content of an object stored in Amazon S3 under the specified
+     * bucket and key to a local file. Large objects are fetched in several byte
+     * ranges, on concurrent connections, each of them being written directly at
+     * its position in the file. Returns {@link NotModified#INSTANCE} if the
+     * specified constraints weren't met.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:download-object}
+     * 
+     * @param bucketName the object's bucket
+     * @param key the object's key
+     * @param versionId the specific version of the object to download, if
+     *            versioning is enabled, left unspecified if the latest version is
+     *            desired, or versioning is not enabled.
+     * @param destinationPath the path of the local file where to write the object
+     *            contents. If it already exists, it is overwritten.
+     * @param modifiedSince The modified constraint that restricts this request to
+     *            executing only if the object has been modified after the specified
+     *            date.
+     * @param unmodifiedSince The unmodified constraint that restricts this request
+     *            to executing only if the object has not been modified after this
+     *            date.
+     * @param matchingETag The constraint that restricts this request to executing
+     *            only if the object has this ETag.
+     * @param nonMatchingETag The constraint that restricts this request to executing
+     *            only if the object does not have this ETag, usually the one of a
+     *            previously downloaded copy of the object. This way, the object is
+     *            only transferred if it has changed.
+     * @return the destination file, or {@link NotModified#INSTANCE}, if conditional
+     *         get constraints did not match
+     */
+    @Processor
+    public Object downloadObject(String bucketName,
+                                 String key,
+                                 @Optional String versionId,
+                                 String destinationPath,
+                                 @Optional Date modifiedSince,
+                                 @Optional Date unmodifiedSince,
+                                 @Optional String matchingETag,
+                                 @Optional String nonMatchingETag)
     {
-        return client.getObjectContent(new S3ObjectId(bucketName, key, versionId),
-                ConditionalConstraints.from(modifiedSince, unmodifiedSince));
+        File destination = new File(destinationPath);
+        if (client.downloadObject(new S3ObjectId(bucketName, key, versionId), ConditionalConstraints.from(
+            modifiedSince, unmodifiedSince, matchingETag, nonMatchingETag), destination))
+        {
+            return destination;
+        }
+        return NotModified.INSTANCE;
     }
 
     /**
      * Gets the object stored in Amazon S3 under the specified bucket and key.
-     * Returns null if the specified constraints weren't met. To get an object from
+     * Returns {@link NotModified#INSTANCE} if the specified constraints weren't
+     * met. To get an object from
      * Amazon S3, the caller must have {@link Permission#Read} access to the object.
      * Callers should be very careful when using this method; the returned Amazon S3
      * object contains a direct stream of data from the HTTP connection. The
@@ -542,17 +1353,26 @@ public class S3Connector
      * @param unmodifiedSince The unmodified constraint that restricts this request
      *            to executing only if the object has not been modified after this
      *            date.
-     * @return the S3Object, or null, if conditional get constraints did not match
+     * @param matchingETag The constraint that restricts this request to executing
+     *            only if the object has this ETag.
+     * @param nonMatchingETag The constraint that restricts this request to executing
+     *            only if the object does not have this ETag, usually the one of a
+     *            previously fetched copy of the object. This way, the object is only
+     *            transferred if it has changed.
+     * @return the S3Object, or {@link NotModified#INSTANCE}, if conditional get
+     *         constraints did not match - that is, the object was not modified
      */
     @Processor
-    public S3Object getObject(String bucketName,
-                              String key,
-                              @Optional String versionId,
-                              @Optional Date modifiedSince,
-                              @Optional Date unmodifiedSince)
+    public Object getObject(String bucketName,
+                            String key,
+                            @Optional String versionId,
+                            @Optional Date modifiedSince,
+                            @Optional Date unmodifiedSince,
+                            @Optional String matchingETag,
+                            @Optional String nonMatchingETag)
     {
-        return client.getObject(new S3ObjectId(bucketName, key, versionId),
-                ConditionalConstraints.from(modifiedSince, unmodifiedSince));
+        return notModifiedIfNull(client.getObject(new S3ObjectId(bucketName, key, versionId),
+                ConditionalConstraints.from(modifiedSince, unmodifiedSince, matchingETag, nonMatchingETag)));
     }
 
     /**
@@ -576,126 +1396,782 @@ public class S3Connector
     }
 
     /**
-     * Sets the versioning status for the given bucket. A bucket's versioning
-     * configuration can be in one of three possible states: Off, Enabled and
-     * Suspended. By default, new buckets are in the Off state. Once versioning is
-     * enabled for a bucket the status can never be reverted to Off.
+     * Uploads an object to S3 like createObject, but without waiting for the
+     * upload to complete. The upload is run by a bounded pool of threads - see
+     * asyncConcurrency and asyncQueueSize - so that many uploads can be started
+     * from a single flow thread.
      *
-     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:set-bucket-versioning-status}
-     * 
-     * @param bucketName the target bucket name
-     * @param versioningStatus the version status to set
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:create-object-async}
+     *
+     * @param bucketName the object's bucket
+     * @param key the object's key
+     * @param content the content to be uploaded to S3, capable of creating a {@link PutObjectRequest}.
+     * @param contentLength the content length, as in createObject
+     * @param contentMd5 the content md5, encoded in base 64. Contents uploaded in
+     *            parts, including files, are sent along with the md5 of each part,
+     *            and the upload fails, without creating the object, if the whole
+     *            content does not match the given md5.
+     * @param contentType the content type of the new object.
+     * @param acl the access control list of the new object
+     * @param storageClass the storage class of the new object
+     * @param userMetadata a map of arbitrary object properties keys and values
+     * @return a {@link Future} of the id of the created object, or null, if
+     *         versioning is not enabled
      */
     @Processor
-    public void setBucketVersioningStatus(String bucketName,
-                                          VersioningStatus versioningStatus)
+    public Future<String> createObjectAsync(String bucketName,
+                                            String key,
+                                            @Payload Object content,
+                                            @Optional Long contentLength,
+                                            @Optional String contentMd5,
+                                            @Optional String contentType,
+                                            @Optional @Default("PRIVATE") AccessControlList acl,
+                                            @Optional @Default("STANDARD") StorageClass storageClass,
+                                            @Optional Map<String, String> userMetadata)
     {
-        client.setBucketVersioningStatus(bucketName, versioningStatus);
+        return getAsyncClient().createObject(new S3ObjectId(bucketName, key), S3ContentUtils.createContent(
+            content, contentLength, contentMd5, isStreamingUpload()), contentType, acl.toS3Equivalent(),
+            storageClass.toS3Equivalent(), userMetadata);
     }
 
     /**
-     * Creates an http URI for the given object id. The useDefaultServer option
-     * enables using default US Amazon server subdomain in the URI regardless of the
-     * region. The main benefit of such feature is that this operation does not need
-     * to hit the Amazon servers, but the drawback is that using the given URI as an
-     * URL to the resource have unnecessary latency penalties for standard regions
-     * other than US_STANDARD.
+     * Gets an object like getObject, but without waiting for it to be retrieved.
+     * See createObjectAsync.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:get-object-async}
      *
-     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:create-object-uri}
-     * 
      * @param bucketName the object's bucket
      * @param key the object's key
-     * @param useDefaultServer if the default US Amazon server subdomain should be
-     *            used in the URI regardless of the region.
-     * @param secure whether to use http or https
-     * @return a non secure http URI to the object. Unlike the presigned URI, object
-     *         must have PUBLIC_READ or PUBLIC_READ_WRITE permission
+     * @param versionId the specific version of the object to get its contents, if
+     *            versioning is enabled. Left unspecified if the latest version is
+     *            desired, or versioning is not enabled.
+     * @param modifiedSince The modified constraint, as in getObject
+     * @param unmodifiedSince The unmodified constraint, as in getObject
+     * @param matchingETag The ETag constraint, as in getObject
+     * @param nonMatchingETag The non matching ETag constraint, as in getObject
+     * @return a {@link Future} of the S3Object, or {@link NotModified#INSTANCE},
+     *         if conditional get constraints did not match
      */
     @Processor
-    public URI createObjectUri(String bucketName,
-                               String key,
-                               @Optional @Default("false") boolean useDefaultServer,
-                               @Optional @Default("false") boolean secure)
+    public Future<Object> getObjectAsync(String bucketName,
+                                         String key,
+                                         @Optional String versionId,
+                                         @Optional Date modifiedSince,
+                                         @Optional Date unmodifiedSince,
+                                         @Optional String matchingETag,
+                                         @Optional String nonMatchingETag)
     {
-        if (useDefaultServer)
-        {
-            return client.createObjectUriUsingDefaultServer(new S3ObjectId(bucketName, key), secure);
-        }
-        else
+        return new MappedFuture<S3Object, Object>(getAsyncClient().getObject(
+            new S3ObjectId(bucketName, key, versionId),
+            ConditionalConstraints.from(modifiedSince, unmodifiedSince, matchingETag, nonMatchingETag)))
         {
-            return client.createObjectUri(new S3ObjectId(bucketName, key), secure);
-        }
+            protected Object map(S3Object result)
+            {
+                return notModifiedIfNull(result);
+            }
+        };
     }
 
     /**
-     * Login to Amazon S3
+     * Gets the metadata of an object like getObjectMetadata, but without waiting
+     * for it to be retrieved. See createObjectAsync.
      *
-     * @param accessKey The access key provided by Amazon, needed for non annoynous operations
-     * @param secretKey The secrete key provided by Amazon, needed for non annoynous operations
-     * @throws ConnectionException
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:get-object-metadata-async}
+     *
+     * @param bucketName the object's bucket
+     * @param key the object's key
+     * @param versionId the object metadata for the given bucketName and key
+     * @return a {@link Future} of the non null object metadata
      */
-    @Connect
-    public synchronized void connect(@ConnectionKey String accessKey, String secretKey) throws ConnectionException
+    @Processor
+    public Future<ObjectMetadata> getObjectMetadataAsync(String bucketName,
+                                                         String key,
+                                                         @Optional String versionId)
     {
-        if (client == null)
-        {
-            client = new SimpleAmazonS3AmazonDevKitImpl(createAmazonS3(accessKey, secretKey));
-        }
-    }
-
-    @Disconnect
-    public synchronized void disconnect() {
-        if( client != null ) {
-            client = null;
-        }
-    }
-
-    @ValidateConnection
-    public boolean isConnected() {
-        return client != null;
+        return getAsyncClient().getObjectMetadata(new S3ObjectId(bucketName, key, versionId));
     }
 
-    @ConnectionIdentifier
-    public String connectionId() {
-        return "unknown";
+    /**
+     * Copies all the objects under a prefix of a bucket to another prefix, of the
+     * same or another bucket, using server-side copies. Objects are copied while
+     * the following ones are still being listed, several of them at the same time
+     * - see copyConcurrency. As in copyObject, object metadata is copied too.
+     * Unlike copying objects one by one, failures do not interrupt the operation,
+     * but are reported in the result.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:copy-objects}
+     *
+     * @param sourceBucketName the source objects' bucket
+     * @param sourcePrefix the prefix of the objects to copy. An empty prefix copies
+     *            all the objects of the bucket
+     * @param destinationBucketName the destination objects' bucket. If none
+     *            provided, objects are copied within the same bucket.
+     * @param destinationPrefix the prefix that replaces the source prefix in the
+     *            keys of the copies
+     * @param keyPattern an optional regular expression that the keys of the
+     *            objects to copy, without the source prefix, must contain. Objects
+     *            whose keys do not contain it are skipped
+     * @param keyReplacement the replacement for the matches of the keyPattern in
+     *            the keys of the copies. If unspecified, keys are not changed
+     * @param destinationAcl the acl of the destination objects.
+     * @param destinationStorageClass one of {@link StorageClass} enumerated values, defaults to {@link StorageClass#STANDARD}
+     * @return the number of copied and skipped objects, and the detail of those
+     *         that could not be copied
+     */
+    @Processor
+    public BulkCopyResult copyObjects(String sourceBucketName,
+                                      String sourcePrefix,
+                                      @Optional String destinationBucketName,
+                                      String destinationPrefix,
+                                      @Optional String keyPattern,
+                                      @Optional String keyReplacement,
+                                      @Optional @Default("PRIVATE") AccessControlList destinationAcl,
+                                      @Optional @Default("STANDARD") StorageClass destinationStorageClass)
+    {
+        return client.copyObjects(sourceBucketName, sourcePrefix, coalesce(destinationBucketName,
+            sourceBucketName), new PrefixKeyMapping(sourcePrefix, destinationPrefix, keyPattern != null
+            ? Pattern.compile(keyPattern) : null, keyReplacement), destinationAcl.toS3Equivalent(),
+            destinationStorageClass.toS3Equivalent());
     }
 
     /**
-     * Creates an {@link AmazonS3} client. If accessKey and secretKey are not set,
-     * the resulting client is anonymous
-     * 
-     * @return a new {@link AmazonS3}
+     * Copies an object like copyObject, but without waiting for the copy to
+     * complete. See createObjectAsync.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:copy-object-async}
+     *
+     * @param sourceBucketName the source object's bucket
+     * @param sourceKey the source object's key
+     * @param sourceVersionId the specific version of the source object to copy, if
+     *            versioning is enabled. Left unspecified if the latest version is
+     *            desired, or versioning is not enabled.
+     * @param destinationBucketName the destination object's bucket. If none
+     *            provided, a local copy is performed, that is, it is copied within
+     *            the same bucket.
+     * @param destinationKey the destination object's key
+     * @param destinationAcl the acl of the destination object.
+     * @param destinationStorageClass one of {@link StorageClass} enumerated values, defaults to {@link StorageClass#STANDARD}
+     * @param destinationUserMetadata the new metadata of the destination object,
+     *            that if specified, overrides that copied from the source object
+     * @param modifiedSince The modified constraint, as in copyObject
+     * @param unmodifiedSince The unmodified constraint, as in copyObject
+     * @param matchingETag The ETag constraint, as in copyObject
+     * @param nonMatchingETag The non matching ETag constraint, as in copyObject
+     * @return a {@link Future} of the version id of the new object, or null, if
+     *         versioning is not enabled. {@link NotModified#INSTANCE} if
+     *         constraints did not match
      */
-    private AmazonS3  createAmazonS3(String accessKey, String secretKey)
+    @Processor
+    public Future<Object> copyObjectAsync(String sourceBucketName,
+                                          String sourceKey,
+                                          @Optional String sourceVersionId,
+                                          @Optional String destinationBucketName,
+                                          String destinationKey,
+                                          @Optional @Default("PRIVATE") AccessControlList destinationAcl,
+                                          @Optional @Default("STANDARD") StorageClass destinationStorageClass,
+                                          @Optional Map<String, String> destinationUserMetadata,
+                                          @Optional Date modifiedSince,
+                                          @Optional Date unmodifiedSince,
+                                          @Optional String matchingETag,
+                                          @Optional String nonMatchingETag)
     {
-        ClientConfiguration clientConfig = new ClientConfiguration();
-        if (proxyUsername != null)
-        {
-            clientConfig.setProxyUsername(proxyUsername);
-        }
-        if (proxyPort != null)
+        return new MappedFuture<CopyObjectResult, Object>(getAsyncClient().copyObject(
+                new S3ObjectId(sourceBucketName, sourceKey, sourceVersionId),
+                new S3ObjectId(coalesce(destinationBucketName, sourceBucketName), destinationKey),
+                ConditionalConstraints.from(modifiedSince, unmodifiedSince, matchingETag, nonMatchingETag),
+                destinationAcl.toS3Equivalent(),
+                destinationStorageClass.toS3Equivalent(),
+                destinationUserMetadata))
         {
-            clientConfig.setProxyPort(proxyPort);
-        }
-        if (proxyPassword != null)
+            protected Object map(CopyObjectResult result)
+            {
+                return versionIdOrNotModified(result);
+            }
+        };
+    }
+
+    /**
+     * Deletes an object like deleteObject, but without waiting for the deletion
+     * to complete. See createObjectAsync.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:delete-object-async}
+     *
+     * @param bucketName the object's bucket
+     * @param key the object's key
+     * @param versionId the specific version of the object to delete, if versioning
+     *            is enabled. Left unspecified if the latest version is desired, or
+     *            versioning is not enabled.
+     * @return a {@link Future} that completes once the object is deleted
+     */
+    @Processor
+    public Future<Void> deleteObjectAsync(String bucketName,
+                                          String key,
+                                          @Optional String versionId)
+    {
+        return getAsyncClient().deleteObject(new S3ObjectId(bucketName, key, versionId));
+    }
+
+    /**
+     * Answers the usage statistics of the object metadata cache - the number of
+     * metadata lookups answered with and without hitting S3, and the number of
+     * entries discarded for making room for new ones. Statistics are all zero if
+     * the cache is disabled - see metadataCacheMaxEntries.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:get-metadata-cache-statistics}
+     *
+     * @return the non null cache statistics
+     */
+    @Processor
+    public CacheStatistics getMetadataCacheStatistics()
+    {
+        return client.getMetadataCacheStatistics();
+    }
+
+    /**
+     * Answers the usage statistics of the object content cache - the number of
+     * reads answered from the cache, either because contents had not changed or
+     * because they are of a specific version, the number of reads that had to
+     * transfer contents, and the number of contents discarded for making room for
+     * new ones. Statistics are all zero if the cache is disabled - see
+     * contentCacheDirectory.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:get-content-cache-statistics}
+     *
+     * @return the non null cache statistics
+     */
+    @Processor
+    public CacheStatistics getContentCacheStatistics()
+    {
+        return client.getContentCacheStatistics();
+    }
+
+    /**
+     * Answers the usage statistics of the pre-signed URI cache - the number of
+     * URIs reused and signed, and the number of URIs discarded for making room for
+     * new ones. Statistics are all zero if the cache is disabled - see
+     * presignedUriCacheMaxEntries.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:get-presigned-uri-cache-statistics}
+     *
+     * @return the non null cache statistics
+     */
+    @Processor
+    public CacheStatistics getPresignedUriCacheStatistics()
+    {
+        return client.getPresignedUriCacheStatistics();
+    }
+
+    /**
+     * Answers the activity of the retries of failed operations - the number of
+     * throttled calls, retries, and calls that failed without being retried
+     * again, either because they ran out of retries or out of the retry budget of
+     * their operation. Statistics are all zero if retries are disabled - see
+     * maxRetries.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:get-retry-statistics}
+     *
+     * @return the non null retry statistics
+     */
+    @Processor
+    public RetryStatistics getRetryStatistics()
+    {
+        RetryingSimpleAmazonS3 retrying = retryingClient;
+        return retrying != null ? retrying.getStatistics() : new RetryStatistics(0, 0, 0, 0);
+    }
+
+    /**
+     * Answers the activity of the rate limits of requests - the number of
+     * permitted, delayed and rejected requests, and the number of requests
+     * currently waiting for their limits, along with its maximum so far, across
+     * all the pooled connections. Statistics are all
+     * zero if rates are not limited - see readRateLimits and writeRateLimits.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:get-rate-limit-statistics}
+     *
+     * @return the non null rate limit statistics
+     */
+    @Processor
+    public RateLimitStatistics getRateLimitStatistics()
+    {
+        RateLimitingAmazonS3 rateLimiting = rateLimitingClient;
+        return rateLimiting != null ? rateLimiting.getStatistics() : new RateLimitStatistics(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Answers the state of the limit of requests in flight at the same time - its
+     * current value, the number of requests in flight and waiting for others to
+     * finish, and the number of times the limit was lowered, across all the pooled
+     * connections. Statistics are all zero if requests are not limited - see
+     * maxConcurrency.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:get-concurrency-limit-statistics}
+     *
+     * @return the non null concurrency limit statistics
+     */
+    @Processor
+    public ConcurrencyLimitStatistics getConcurrencyLimitStatistics()
+    {
+        ConcurrencyLimitingAmazonS3 concurrencyLimiting = concurrencyLimitingClient;
+        return concurrencyLimiting != null
+            ? concurrencyLimiting.getStatistics() : new ConcurrencyLimitStatistics(0, 0, 0, 0);
+    }
+
+    /**
+     * Answers the usage statistics of the pool of HTTP connections - the maximum
+     * number of connections, those currently leased by requests and those open
+     * and available for them, and the number of idle connections closed so far.
+     * If leased connections stay close to the maximum under load, requests are
+     * waiting for connections and maxConnections should be increased. Statistics
+     * are all zero if there is no connection.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:get-connection-pool-statistics}
+     *
+     * @return the non null pool statistics
+     */
+    @Processor
+    public ConnectionPoolStatistics getConnectionPoolStatistics()
+    {
+        SharedAmazonS3Clients.SharedClient shared = sharedClient;
+        return shared != null ? shared.getMonitor().getStatistics() : new ConnectionPoolStatistics(0, 0, 0, 0);
+    }
+
+    /**
+     * Sets the versioning status for the given bucket. A bucket's versioning
+     * configuration can be in one of three possible states: Off, Enabled and
+     * Suspended. By default, new buckets are in the Off state. Once versioning is
+     * enabled for a bucket the status can never be reverted to Off.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:set-bucket-versioning-status}
+     * 
+     * @param bucketName the target bucket name
+     * @param versioningStatus the version status to set
+     */
+    @Processor
+    public void setBucketVersioningStatus(String bucketName,
+                                          VersioningStatus versioningStatus)
+    {
+        client.setBucketVersioningStatus(bucketName, versioningStatus);
+    }
+
+    /**
+     * Creates an http URI for the given object id. The useDefaultServer option
+     * enables using default US Amazon server subdomain in the URI regardless of the
+     * region. The main benefit of such feature is that this operation does not need
+     * to hit the Amazon servers, but the drawback is that using the given URI as an
+     * URL to the resource have unnecessary latency penalties for standard regions
+     * other than US_STANDARD. Otherwise, the bucket region is only fetched the
+     * first time, as it is cached afterwards - see bucketRegionCacheTtl and
+     * bucketRegions.
+     *
+     * {@sample.xml ../../../doc/mule-module-s3.xml.sample s3:create-object-uri}
+     * 
+     * @param bucketName the object's bucket
+     * @param key the object's key
+     * @param useDefaultServer if the default US Amazon server subdomain should be
+     *            used in the URI regardless of the region.
+     * @param secure whether to use http or https
+     * @return a non secure http URI to the object. Unlike the presigned URI, object
+     *         must have PUBLIC_READ or PUBLIC_READ_WRITE permission
+     */
+    @Processor
+    public URI createObjectUri(String bucketName,
+                               String key,
+                               @Optional @Default("false") boolean useDefaultServer,
+                               @Optional @Default("false") boolean secure)
+    {
+        if (useDefaultServer)
+        {
+            return client.createObjectUriUsingDefaultServer(new S3ObjectId(bucketName, key), secure);
+        }
+        else
+        {
+            return client.createObjectUri(new S3ObjectId(bucketName, key), secure);
+        }
+    }
+
+    /**
+     * Login to Amazon S3. Connections with the same credentials and client
+     * settings share the same underlying client, and so its pool of HTTP
+     * connections, which is shut down once all of them are disconnected.
+     *
+     * @param accessKey The access key provided by Amazon, needed for non annoynous operations
+     * @param secretKey The secrete key provided by Amazon, needed for non annoynous operations
+     * @throws ConnectionException
+     */
+    @Connect
+    public synchronized void connect(@ConnectionKey String accessKey, String secretKey) throws ConnectionException
+    {
+        if (client == null)
+        {
+            SharedS3Metrics.SharedMetrics metrics = null;
+            SharedContentCaches.SharedContentCache contentCache = null;
+            SharedAmazonS3Clients.SharedClient shared = null;
+            try
+            {
+                if (metricsName != null)
+                {
+                    metrics = SharedS3Metrics.acquire(metricsName);
+                }
+                if (contentCacheDirectory != null)
+                {
+                    contentCache = SharedContentCaches.acquire(new File(contentCacheDirectory),
+                        contentCacheMaxSize != null ? contentCacheMaxSize
+                                                    : SimpleAmazonS3AmazonDevKitImpl.DEFAULT_CONTENT_CACHE_MAX_SIZE);
+                }
+                shared = SharedAmazonS3Clients.acquire(accessKey, secretKey, createClientConfiguration(),
+                    idleConnectionTimeout != null ? idleConnectionTimeout * 1000L : 0);
+                SimpleAmazonS3 simpleS3 = createSimpleAmazonS3(shared, contentCache, metrics);
+                sharedMetrics = metrics;
+                sharedContentCache = contentCache;
+                sharedClient = shared;
+                connectionId = StringUtils.isEmpty(accessKey) ? "anonymous" : maskAccessKey(accessKey);
+                client = simpleS3;
+            }
+            catch (RuntimeException e)
+            {
+                // the connection fields are only assigned once everything has
+                // been built, so only what was built so far must be discarded
+                retryingClient = null;
+                rateLimitingClient = null;
+                concurrencyLimitingClient = null;
+                releaseShared(shared, contentCache, metrics);
+                throw e;
+            }
+        }
+    }
+
+    private static void releaseShared(SharedAmazonS3Clients.SharedClient shared,
+                                      SharedContentCaches.SharedContentCache contentCache,
+                                      SharedS3Metrics.SharedMetrics metrics)
+    {
+        if (shared != null)
+        {
+            SharedAmazonS3Clients.release(shared);
+        }
+        if (contentCache != null)
+        {
+            SharedContentCaches.release(contentCache);
+        }
+        if (metrics != null)
+        {
+            SharedS3Metrics.release(metrics);
+        }
+    }
+
+    @Disconnect
+    public synchronized void disconnect() {
+        if( client != null ) {
+            client = null;
+        }
+        retryingClient = null;
+        rateLimitingClient = null;
+        concurrencyLimitingClient = null;
+        if (asyncClient != null)
+        {
+            asyncClient.shutdown();
+            asyncClient = null;
+        }
+        releaseShared(sharedClient, sharedContentCache, sharedMetrics);
+        sharedClient = null;
+        sharedContentCache = null;
+        sharedMetrics = null;
+    }
+
+    @ValidateConnection
+    public boolean isConnected() {
+        return client != null;
+    }
+
+    /**
+     * @return the masked access key of the connection, or anonymous if it has no
+     *         credentials
+     */
+    @ConnectionIdentifier
+    public String connectionId() {
+        return connectionId != null ? connectionId : "unknown";
+    }
+
+    /**
+     * Masks all but the last characters of an access key, like the AWS console
+     * does, as connection identifiers are logged
+     */
+    private static String maskAccessKey(String accessKey)
+    {
+        return "****" + StringUtils.right(accessKey, 4);
+    }
+
+    /**
+     * Creates the configuration of the {@link AmazonS3} client, with the proxy and
+     * HTTP connection pool settings
+     * 
+     * @return a new {@link ClientConfiguration}
+     */
+    private ClientConfiguration createClientConfiguration()
+    {
+        ClientConfiguration clientConfig = new ClientConfiguration();
+        if (proxyUsername != null)
+        {
+            clientConfig.setProxyUsername(proxyUsername);
+        }
+        if (proxyPort != null)
+        {
+            clientConfig.setProxyPort(proxyPort);
+        }
+        if (proxyPassword != null)
         {
             clientConfig.setProxyPassword(proxyPassword);
         }
-        if (proxyHost != null)
+        if (proxyHost != null)
+        {
+            clientConfig.setProxyHost(proxyHost);
+        }
+        if (maxConnections != null)
+        {
+            clientConfig.setMaxConnections(maxConnections);
+        }
+        if (connectionTimeout != null)
+        {
+            clientConfig.setConnectionTimeout(connectionTimeout);
+        }
+        if (socketTimeout != null)
+        {
+            clientConfig.setSocketTimeout(socketTimeout);
+        }
+        if (socketSendBufferSize != null || socketReceiveBufferSize != null)
+        {
+            clientConfig.setSocketBufferSizeHints(coalesce(socketSendBufferSize, 0),
+                coalesce(socketReceiveBufferSize, 0));
+        }
+        if (maxErrorRetry != null)
+        {
+            clientConfig.setMaxErrorRetry(maxErrorRetry);
+        }
+        return clientConfig;
+    }
+
+    private SimpleAmazonS3 createSimpleAmazonS3(SharedAmazonS3Clients.SharedClient shared,
+                                                SharedContentCaches.SharedContentCache contentCache,
+                                                SharedS3Metrics.SharedMetrics metrics)
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(limit(shared));
+        if (multipartUploadThreshold != null)
+        {
+            simpleS3.setMultipartUploadThreshold(multipartUploadThreshold);
+        }
+        if (multipartUploadPartSize != null)
+        {
+            simpleS3.setMultipartUploadPartSize(multipartUploadPartSize);
+        }
+        if (multipartUploadConcurrency != null)
+        {
+            simpleS3.setMultipartUploadConcurrency(multipartUploadConcurrency);
+        }
+        if (multipartCopyThreshold != null)
+        {
+            simpleS3.setMultipartCopyThreshold(multipartCopyThreshold);
+        }
+        if (multipartCopyPartSize != null)
+        {
+            simpleS3.setMultipartCopyPartSize(multipartCopyPartSize);
+        }
+        if (multipartCopyConcurrency != null)
+        {
+            simpleS3.setMultipartCopyConcurrency(multipartCopyConcurrency);
+        }
+        if (downloadPartSize != null)
+        {
+            simpleS3.setDownloadPartSize(downloadPartSize);
+        }
+        if (downloadConcurrency != null)
+        {
+            simpleS3.setDownloadConcurrency(downloadConcurrency);
+        }
+        if (deleteConcurrency != null)
+        {
+            simpleS3.setDeleteConcurrency(deleteConcurrency);
+        }
+        if (copyConcurrency != null)
+        {
+            simpleS3.setCopyConcurrency(copyConcurrency);
+        }
+        if (maxConnections != null)
+        {
+            simpleS3.setMaxConnections(maxConnections);
+        }
+        if (listingPrefetchPages != null)
+        {
+            simpleS3.setListingPrefetchPages(listingPrefetchPages);
+        }
+        if (listingConcurrency != null)
+        {
+            simpleS3.setListingConcurrency(listingConcurrency);
+        }
+        if (bucketRegionCacheTtl != null)
+        {
+            simpleS3.setBucketRegionCacheTtl(bucketRegionCacheTtl);
+        }
+        if (bucketRegions != null)
+        {
+            for (Map.Entry<String, String> bucketRegion : bucketRegions.entrySet())
+            {
+                simpleS3.seedBucketRegion(bucketRegion.getKey(), Region.valueOf(bucketRegion.getValue()));
+            }
+        }
+        if (contentCache != null)
+        {
+            // shared by the pooled connections, so that they are bounded by the
+            // same size and do not delete the files cached by each other
+            simpleS3.setContentCache(contentCache.getCache());
+        }
+        if (metadataCacheMaxEntries != null && metadataCacheMaxEntries != 0)
+        {
+            // shared by the pooled connections, so that writes through any of them
+            // invalidate the metadata cached by all of them
+            simpleS3.setMetadataCache(shared.getMetadataCache(metadataCacheMaxEntries, metadataCacheTtl != null
+                ? metadataCacheTtl : SimpleAmazonS3AmazonDevKitImpl.DEFAULT_METADATA_CACHE_TTL));
+        }
+        if (presignedUriCacheMaxEntries != null)
+        {
+            simpleS3.setPresignedUriCache(presignedUriCacheMaxEntries, presignedUriCacheMargin != null
+                ? presignedUriCacheMargin : SimpleAmazonS3AmazonDevKitImpl.DEFAULT_PRESIGNED_URI_CACHE_MARGIN);
+        }
+        return decorate(simpleS3, shared, metrics);
+    }
+
+    /**
+     * Wraps the shared client with the optional behaviors that apply to each of its
+     * requests. They are shared by the pooled connections, through the shared
+     * client, so that their limits apply to the whole pool
+     */
+    private AmazonS3 limit(SharedAmazonS3Clients.SharedClient shared)
+    {
+        AmazonS3 s3 = shared.getS3();
+        // rate limits wrap the concurrency limit, so that requests do not hold a
+        // slot while they wait for their rate
+        List<Object> concurrencySettings = Arrays.<Object> asList("concurrencyLimit", maxConcurrency,
+            minConcurrency);
+        if (maxConcurrency != null)
+        {
+            final AmazonS3 delegate = s3;
+            concurrencyLimitingClient = shared.getComponent(concurrencySettings,
+                new SharedAmazonS3Clients.ComponentFactory<ConcurrencyLimitingAmazonS3>()
+                {
+                    public ConcurrencyLimitingAmazonS3 create()
+                    {
+                        ConcurrencyLimitingAmazonS3 concurrencyLimiting = new ConcurrencyLimitingAmazonS3(delegate,
+                            maxConcurrency);
+                        if (minConcurrency != null)
+                        {
+                            concurrencyLimiting.setMinLimit(minConcurrency);
+                        }
+                        return concurrencyLimiting;
+                    }
+                });
+            s3 = concurrencyLimitingClient.toAmazonS3();
+        }
+        if (readRateLimits != null || writeRateLimits != null)
+        {
+            final AmazonS3 delegate = s3;
+            rateLimitingClient = shared.getComponent(Arrays.<Object> asList("rateLimits", readRateLimits,
+                writeRateLimits, rateLimitMaxWait, concurrencySettings),
+                new SharedAmazonS3Clients.ComponentFactory<RateLimitingAmazonS3>()
+                {
+                    public RateLimitingAmazonS3 create()
+                    {
+                        return createRateLimitingClient(delegate);
+                    }
+                });
+            s3 = rateLimitingClient.toAmazonS3();
+        }
+        return s3;
+    }
+
+    private RateLimitingAmazonS3 createRateLimitingClient(AmazonS3 s3)
+    {
+        RateLimitingAmazonS3 rateLimiting = new RateLimitingAmazonS3(s3);
+        if (readRateLimits != null)
+        {
+            for (Map.Entry<String, String> rateLimit : readRateLimits.entrySet())
+            {
+                rateLimiting.setReadRateLimit(StringUtils.substringBefore(rateLimit.getKey(), "/"),
+                    StringUtils.substringAfter(rateLimit.getKey(), "/"), Double.parseDouble(rateLimit.getValue()));
+            }
+        }
+        if (writeRateLimits != null)
+        {
+            for (Map.Entry<String, String> rateLimit : writeRateLimits.entrySet())
+            {
+                rateLimiting.setWriteRateLimit(StringUtils.substringBefore(rateLimit.getKey(), "/"),
+                    StringUtils.substringAfter(rateLimit.getKey(), "/"), Double.parseDouble(rateLimit.getValue()));
+            }
+        }
+        if (rateLimitMaxWait != null)
+        {
+            rateLimiting.setMaxWait(rateLimitMaxWait);
+        }
+        return rateLimiting;
+    }
+
+    /**
+     * Wraps the given client with the optional behaviors that apply to all of its
+     * operations
+     */
+    private SimpleAmazonS3 decorate(SimpleAmazonS3 simpleS3, SharedAmazonS3Clients.SharedClient shared,
+                                    SharedS3Metrics.SharedMetrics metrics)
+    {
+        SimpleAmazonS3 decorated = simpleS3;
+        if (maxRetries != null)
+        {
+            retryingClient = new RetryingSimpleAmazonS3(decorated);
+            retryingClient.setMaxRetries(maxRetries);
+            if (retryBaseDelay != null)
+            {
+                retryingClient.setBaseDelay(retryBaseDelay);
+            }
+            if (retryMaxDelay != null)
+            {
+                retryingClient.setMaxDelay(retryMaxDelay);
+            }
+            // shared by the pooled connections, so that a retry storm is bounded
+            // across the whole pool
+            final int budget = retryBudget != null ? retryBudget : RetryingSimpleAmazonS3.DEFAULT_RETRY_BUDGET;
+            retryingClient.setRetryBudgets(shared.getComponent(Arrays.<Object> asList("retryBudgets", budget),
+                new SharedAmazonS3Clients.ComponentFactory<RetryBudgets>()
+                {
+                    public RetryBudgets create()
+                    {
+                        return new RetryBudgets(budget);
+                    }
+                }));
+            decorated = retryingClient.toSimpleAmazonS3();
+        }
+        if (metrics != null)
         {
-            clientConfig.setProxyHost(proxyHost);
+            decorated = new MetricsSimpleAmazonS3(decorated, metrics.getMetrics()).toSimpleAmazonS3();
         }
-        return new AmazonS3Client(createCredentials(accessKey, secretKey),
-            clientConfig);
+        return decorated;
     }
 
-    private AWSCredentials createCredentials(String accessKey, String secretKey)
+    /**
+     * Answers the async variant of the current client, creating it if necessary
+     */
+    private synchronized AsyncSimpleAmazonS3 getAsyncClient()
     {
-        if (StringUtils.isEmpty(accessKey) && StringUtils.isEmpty(secretKey))
+        if (asyncClient == null || asyncClient.getDelegate() != client)
         {
-            return null;
+            if (asyncClient != null)
+            {
+                asyncClient.shutdown();
+            }
+            asyncClient = new AsyncSimpleAmazonS3(client,
+                coalesce(asyncConcurrency, AsyncSimpleAmazonS3.DEFAULT_CONCURRENCY),
+                coalesce(asyncQueueSize, AsyncSimpleAmazonS3.DEFAULT_QUEUE_SIZE));
+            if (asyncShutdownTimeout != null)
+            {
+                asyncClient.setShutdownTimeout(asyncShutdownTimeout);
+            }
         }
-        return new BasicAWSCredentials(accessKey, secretKey);
+        return asyncClient;
     }
 
     public void setClient(SimpleAmazonS3 client)
@@ -742,6 +2218,426 @@ public class S3Connector
     {
         this.proxyHost = proxyHost;
     }
+
+    public Integer getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(Integer maxConnections)
+    {
+        this.maxConnections = maxConnections;
+    }
+
+    public Integer getConnectionTimeout()
+    {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(Integer connectionTimeout)
+    {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public Integer getSocketTimeout()
+    {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(Integer socketTimeout)
+    {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public Integer getSocketSendBufferSize()
+    {
+        return socketSendBufferSize;
+    }
+
+    public void setSocketSendBufferSize(Integer socketSendBufferSize)
+    {
+        this.socketSendBufferSize = socketSendBufferSize;
+    }
+
+    public Integer getSocketReceiveBufferSize()
+    {
+        return socketReceiveBufferSize;
+    }
+
+    public void setSocketReceiveBufferSize(Integer socketReceiveBufferSize)
+    {
+        this.socketReceiveBufferSize = socketReceiveBufferSize;
+    }
+
+    public Integer getMaxErrorRetry()
+    {
+        return maxErrorRetry;
+    }
+
+    public void setMaxErrorRetry(Integer maxErrorRetry)
+    {
+        this.maxErrorRetry = maxErrorRetry;
+    }
+
+    public Integer getIdleConnectionTimeout()
+    {
+        return idleConnectionTimeout;
+    }
+
+    public void setIdleConnectionTimeout(Integer idleConnectionTimeout)
+    {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public Long getMultipartUploadThreshold()
+    {
+        return multipartUploadThreshold;
+    }
+
+    public void setMultipartUploadThreshold(Long multipartUploadThreshold)
+    {
+        this.multipartUploadThreshold = multipartUploadThreshold;
+    }
+
+    public Long getMultipartUploadPartSize()
+    {
+        return multipartUploadPartSize;
+    }
+
+    public void setMultipartUploadPartSize(Long multipartUploadPartSize)
+    {
+        this.multipartUploadPartSize = multipartUploadPartSize;
+    }
+
+    public Integer getMultipartUploadConcurrency()
+    {
+        return multipartUploadConcurrency;
+    }
+
+    public void setMultipartUploadConcurrency(Integer multipartUploadConcurrency)
+    {
+        this.multipartUploadConcurrency = multipartUploadConcurrency;
+    }
+
+    public Long getMultipartCopyThreshold()
+    {
+        return multipartCopyThreshold;
+    }
+
+    public void setMultipartCopyThreshold(Long multipartCopyThreshold)
+    {
+        this.multipartCopyThreshold = multipartCopyThreshold;
+    }
+
+    public Long getMultipartCopyPartSize()
+    {
+        return multipartCopyPartSize;
+    }
+
+    public void setMultipartCopyPartSize(Long multipartCopyPartSize)
+    {
+        this.multipartCopyPartSize = multipartCopyPartSize;
+    }
+
+    public Integer getMultipartCopyConcurrency()
+    {
+        return multipartCopyConcurrency;
+    }
+
+    public void setMultipartCopyConcurrency(Integer multipartCopyConcurrency)
+    {
+        this.multipartCopyConcurrency = multipartCopyConcurrency;
+    }
+
+    public boolean isStreamingUpload()
+    {
+        return streamingUpload != null && streamingUpload;
+    }
+
+    public void setStreamingUpload(Boolean streamingUpload)
+    {
+        this.streamingUpload = streamingUpload;
+    }
+
+    public boolean isParallelDownload()
+    {
+        return parallelDownload != null && parallelDownload;
+    }
+
+    public void setParallelDownload(Boolean parallelDownload)
+    {
+        this.parallelDownload = parallelDownload;
+    }
+
+    public Long getDownloadPartSize()
+    {
+        return downloadPartSize;
+    }
+
+    public void setDownloadPartSize(Long downloadPartSize)
+    {
+        this.downloadPartSize = downloadPartSize;
+    }
+
+    public Integer getDownloadConcurrency()
+    {
+        return downloadConcurrency;
+    }
+
+    public void setDownloadConcurrency(Integer downloadConcurrency)
+    {
+        this.downloadConcurrency = downloadConcurrency;
+    }
+
+    public Integer getDeleteConcurrency()
+    {
+        return deleteConcurrency;
+    }
+
+    public void setDeleteConcurrency(Integer deleteConcurrency)
+    {
+        this.deleteConcurrency = deleteConcurrency;
+    }
+
+    public Integer getCopyConcurrency()
+    {
+        return copyConcurrency;
+    }
+
+    public void setCopyConcurrency(Integer copyConcurrency)
+    {
+        this.copyConcurrency = copyConcurrency;
+    }
+
+    public Integer getListingPrefetchPages()
+    {
+        return listingPrefetchPages;
+    }
+
+    public void setListingPrefetchPages(Integer listingPrefetchPages)
+    {
+        this.listingPrefetchPages = listingPrefetchPages;
+    }
+
+    public Integer getListingConcurrency()
+    {
+        return listingConcurrency;
+    }
+
+    public void setListingConcurrency(Integer listingConcurrency)
+    {
+        this.listingConcurrency = listingConcurrency;
+    }
+
+    public Integer getMetadataCacheMaxEntries()
+    {
+        return metadataCacheMaxEntries;
+    }
+
+    public void setMetadataCacheMaxEntries(Integer metadataCacheMaxEntries)
+    {
+        this.metadataCacheMaxEntries = metadataCacheMaxEntries;
+    }
+
+    public Integer getMetadataCacheTtl()
+    {
+        return metadataCacheTtl;
+    }
+
+    public void setMetadataCacheTtl(Integer metadataCacheTtl)
+    {
+        this.metadataCacheTtl = metadataCacheTtl;
+    }
+
+    public Integer getBucketRegionCacheTtl()
+    {
+        return bucketRegionCacheTtl;
+    }
+
+    public void setBucketRegionCacheTtl(Integer bucketRegionCacheTtl)
+    {
+        this.bucketRegionCacheTtl = bucketRegionCacheTtl;
+    }
+
+    public Map<String, String> getBucketRegions()
+    {
+        return bucketRegions;
+    }
+
+    public void setBucketRegions(Map<String, String> bucketRegions)
+    {
+        this.bucketRegions = bucketRegions;
+    }
+
+    public String getContentCacheDirectory()
+    {
+        return contentCacheDirectory;
+    }
+
+    public void setContentCacheDirectory(String contentCacheDirectory)
+    {
+        this.contentCacheDirectory = contentCacheDirectory;
+    }
+
+    public Long getContentCacheMaxSize()
+    {
+        return contentCacheMaxSize;
+    }
+
+    public void setContentCacheMaxSize(Long contentCacheMaxSize)
+    {
+        this.contentCacheMaxSize = contentCacheMaxSize;
+    }
+
+    public Integer getPresignedUriCacheMaxEntries()
+    {
+        return presignedUriCacheMaxEntries;
+    }
+
+    public void setPresignedUriCacheMaxEntries(Integer presignedUriCacheMaxEntries)
+    {
+        this.presignedUriCacheMaxEntries = presignedUriCacheMaxEntries;
+    }
+
+    public Integer getPresignedUriCacheMargin()
+    {
+        return presignedUriCacheMargin;
+    }
+
+    public void setPresignedUriCacheMargin(Integer presignedUriCacheMargin)
+    {
+        this.presignedUriCacheMargin = presignedUriCacheMargin;
+    }
+
+    public Integer getAsyncConcurrency()
+    {
+        return asyncConcurrency;
+    }
+
+    public void setAsyncConcurrency(Integer asyncConcurrency)
+    {
+        this.asyncConcurrency = asyncConcurrency;
+    }
+
+    public Integer getAsyncQueueSize()
+    {
+        return asyncQueueSize;
+    }
+
+    public void setAsyncQueueSize(Integer asyncQueueSize)
+    {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+    public Long getAsyncShutdownTimeout()
+    {
+        return asyncShutdownTimeout;
+    }
+
+    public void setAsyncShutdownTimeout(Long asyncShutdownTimeout)
+    {
+        this.asyncShutdownTimeout = asyncShutdownTimeout;
+    }
+
+    public Integer getMaxRetries()
+    {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(Integer maxRetries)
+    {
+        this.maxRetries = maxRetries;
+    }
+
+    public Long getRetryBaseDelay()
+    {
+        return retryBaseDelay;
+    }
+
+    public void setRetryBaseDelay(Long retryBaseDelay)
+    {
+        this.retryBaseDelay = retryBaseDelay;
+    }
+
+    public Long getRetryMaxDelay()
+    {
+        return retryMaxDelay;
+    }
+
+    public void setRetryMaxDelay(Long retryMaxDelay)
+    {
+        this.retryMaxDelay = retryMaxDelay;
+    }
+
+    public Integer getRetryBudget()
+    {
+        return retryBudget;
+    }
+
+    public void setRetryBudget(Integer retryBudget)
+    {
+        this.retryBudget = retryBudget;
+    }
+
+    public Map<String, String> getReadRateLimits()
+    {
+        return readRateLimits;
+    }
+
+    public void setReadRateLimits(Map<String, String> readRateLimits)
+    {
+        this.readRateLimits = readRateLimits;
+    }
+
+    public Map<String, String> getWriteRateLimits()
+    {
+        return writeRateLimits;
+    }
+
+    public void setWriteRateLimits(Map<String, String> writeRateLimits)
+    {
+        this.writeRateLimits = writeRateLimits;
+    }
+
+    public Long getRateLimitMaxWait()
+    {
+        return rateLimitMaxWait;
+    }
+
+    public void setRateLimitMaxWait(Long rateLimitMaxWait)
+    {
+        this.rateLimitMaxWait = rateLimitMaxWait;
+    }
+
+    public Integer getMaxConcurrency()
+    {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(Integer maxConcurrency)
+    {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public Integer getMinConcurrency()
+    {
+        return minConcurrency;
+    }
+
+    public void setMinConcurrency(Integer minConcurrency)
+    {
+        this.minConcurrency = minConcurrency;
+    }
+
+    public String getMetricsName()
+    {
+        return metricsName;
+    }
+
+    public void setMetricsName(String metricsName)
+    {
+        this.metricsName = metricsName;
+    }
     
     
 
@@ -33,10 +33,25 @@ public final class S3ContentUtils
     
     /**
      * Creates the {@link S3ObjectContent}. If content is a String or file, the
-     * content length parameter is ignored. Also contentMD5 is ignored if content is
-     * a file, too.
+     * content length parameter is ignored. InputStreams of unknown length are
+     * copied to a temporary file.
      */
     public static S3ObjectContent createContent(Object content, Long contentLength, String contentMd5)
+    {
+        return createContent(content, contentLength, contentMd5, false);
+    }
+
+    /**
+     * Creates the {@link S3ObjectContent}, like
+     * {@link #createContent(Object, Long, String)}. If streaming is true,
+     * InputStreams of unknown length are not copied to a temporary file, but
+     * answered as a content of unspecified length, that will be uploaded while it
+     * is read.
+     */
+    public static S3ObjectContent createContent(Object content,
+                                                Long contentLength,
+                                                String contentMd5,
+                                                boolean streaming)
     {
         if (content instanceof InputStream)
         {
@@ -51,7 +66,11 @@ public final class S3ContentUtils
                 return createContent(streamContent, Long.parseLong(contentLengthHeader.getValue()),
                     contentMd5);
             }
-            return createContent(toTempFile(streamContent));
+            if (streaming)
+            {
+                return createContent(streamContent, null, contentMd5);
+            }
+            return createContent(toTempFile(streamContent), contentMd5);
         }
         if (content instanceof String)
         {
@@ -63,7 +82,7 @@ public final class S3ContentUtils
         }
         if (content instanceof File)
         {
-            return createContent((File) content);
+            return createContent((File) content, contentMd5);
         }
         throw new IllegalArgumentException("Wrong input");
     }
@@ -82,9 +101,9 @@ public final class S3ContentUtils
         }
     }
 
-    private static S3ObjectContent createContent(File content)
+    private static S3ObjectContent createContent(File content, String contentMd5)
     {
-        return new FileS3ObjectContent(content);
+        return new FileS3ObjectContent(content, contentMd5);
     }
 
     private static Header getContentLengthHeader(Object content)
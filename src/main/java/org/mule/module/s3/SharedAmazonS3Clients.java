@@ -0,0 +1,238 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3;
+
+import org.mule.module.s3.simpleapi.MetadataCache;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.util.BinaryUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+/**
+ * The {@link AmazonS3} clients shared by all the connections with the same
+ * credentials and client configuration. Each client owns a pool of HTTP
+ * connections, so sharing them saves both redundant pools and the handshakes of
+ * their connections. Clients are reference counted, and shut down once the last
+ * connection that uses them is released.
+ * <p>
+ * Each shared client also holds the object metadata caches of its connections,
+ * so that pooled connections of the same configuration share them, and writes
+ * through any connection invalidate the metadata cached by all of them. Likewise,
+ * it holds the components that limit the requests of its connections, so that
+ * limits apply to the whole pool rather than to each of its connections.
+ * </p>
+ */
+final class SharedAmazonS3Clients
+{
+    private static final Map<List<Object>, SharedClient> CLIENTS = new HashMap<List<Object>, SharedClient>();
+
+    private SharedAmazonS3Clients()
+    {
+    }
+
+    /**
+     * Answers the client for the given credentials and configuration, creating it
+     * if no connection is using it. Each acquired client must be eventually
+     * released.
+     *
+     * @param accessKey the access key, or null or empty if the client is anonymous
+     * @param secretKey the secret key, or null or empty if the client is anonymous
+     * @param clientConfig the configuration of the client
+     * @param idleTimeoutMillis the time a pooled connection can be idle before it
+     *            is closed, or zero for never closing idle connections
+     */
+    public static synchronized SharedClient acquire(String accessKey,
+                                                    String secretKey,
+                                                    final ClientConfiguration clientConfig,
+                                                    long idleTimeoutMillis)
+    {
+        List<Object> key = createKey(accessKey, secretKey, clientConfig, idleTimeoutMillis);
+        SharedClient client = CLIENTS.get(key);
+        if (client == null)
+        {
+            final AWSCredentials credentials = createCredentials(accessKey, secretKey);
+            client = new SharedClient(key, new ConnectionPoolMonitor(new ComponentFactory<AmazonS3Client>()
+            {
+                public AmazonS3Client create()
+                {
+                    return new AmazonS3Client(credentials, clientConfig);
+                }
+            }, clientConfig.getMaxConnections(), idleTimeoutMillis));
+            CLIENTS.put(key, client);
+        }
+        client.references++;
+        return client;
+    }
+
+    /**
+     * Releases a client acquired by a connection, shutting it down if no other
+     * connection is using it
+     */
+    public static synchronized void release(SharedClient client)
+    {
+        if (client.references == 0)
+        {
+            return;
+        }
+        client.references--;
+        if (client.references == 0)
+        {
+            CLIENTS.remove(client.key);
+            client.monitor.close();
+        }
+    }
+
+    /**
+     * @return the number of clients currently in use
+     */
+    static synchronized int size()
+    {
+        return CLIENTS.size();
+    }
+
+    private static AWSCredentials createCredentials(String accessKey, String secretKey)
+    {
+        if (StringUtils.isEmpty(accessKey) && StringUtils.isEmpty(secretKey))
+        {
+            return null;
+        }
+        return new BasicAWSCredentials(accessKey, secretKey);
+    }
+
+    /**
+     * The key of the clients. Secrets are only held as digests, so that the
+     * registry does not keep them in plain text
+     */
+    private static List<Object> createKey(String accessKey,
+                                          String secretKey,
+                                          ClientConfiguration clientConfig,
+                                          long idleTimeoutMillis)
+    {
+        int[] socketBufferSizeHints = clientConfig.getSocketBufferSizeHints();
+        return Arrays.<Object> asList(StringUtils.defaultString(accessKey), digest(secretKey),
+            clientConfig.getProtocol(), clientConfig.getUserAgent(), clientConfig.getProxyHost(),
+            clientConfig.getProxyPort(), clientConfig.getProxyUsername(), digest(clientConfig.getProxyPassword()),
+            clientConfig.getMaxConnections(), clientConfig.getConnectionTimeout(), clientConfig.getSocketTimeout(),
+            socketBufferSizeHints[0], socketBufferSizeHints[1], clientConfig.getMaxErrorRetry(),
+            idleTimeoutMillis);
+    }
+
+    /**
+     * @return the SHA-256 digest of the given secret, encoded in hex, or empty if
+     *         there is no secret
+     */
+    private static String digest(String secret)
+    {
+        if (StringUtils.isEmpty(secret))
+        {
+            return "";
+        }
+        try
+        {
+            return BinaryUtils.toHex(MessageDigest.getInstance("SHA-256").digest(secret.getBytes("UTF-8")));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new AmazonClientException("SHA-256 is not available", e);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new AmazonClientException("UTF-8 is not available", e);
+        }
+    }
+
+    /**
+     * A client shared by several connections
+     */
+    static final class SharedClient
+    {
+        private final List<Object> key;
+        private final ConnectionPoolMonitor monitor;
+        private final Map<List<Object>, MetadataCache> metadataCaches = new HashMap<List<Object>, MetadataCache>();
+        private final Map<List<Object>, Object> components = new HashMap<List<Object>, Object>();
+        private int references;
+
+        private SharedClient(List<Object> key, ConnectionPoolMonitor monitor)
+        {
+            this.key = key;
+            this.monitor = monitor;
+        }
+
+        public AmazonS3 getS3()
+        {
+            return monitor.getS3();
+        }
+
+        public ConnectionPoolMonitor getMonitor()
+        {
+            return monitor;
+        }
+
+        /**
+         * Answers the metadata cache of the connections of this client with the
+         * given cache settings, creating it if necessary
+         */
+        public synchronized MetadataCache getMetadataCache(int maxEntries, long ttlSeconds)
+        {
+            Validate.isTrue(maxEntries > 0, "Metadata cache max entries must not be negative");
+            Validate.isTrue(ttlSeconds > 0, "Metadata cache TTL must be greater than zero");
+            List<Object> key = Arrays.<Object> asList(maxEntries, ttlSeconds);
+            MetadataCache cache = metadataCaches.get(key);
+            if (cache == null)
+            {
+                cache = new MetadataCache(maxEntries, ttlSeconds * 1000);
+                metadataCaches.put(key, cache);
+            }
+            return cache;
+        }
+
+        /**
+         * Answers the component of the connections of this client with the given
+         * settings, creating it if necessary. Settings must tell apart components
+         * of different kinds, as well as components of the same kind that behave
+         * differently
+         */
+        @SuppressWarnings("unchecked")
+        public synchronized <T> T getComponent(List<Object> settings, ComponentFactory<T> factory)
+        {
+            T component = (T) components.get(settings);
+            if (component == null)
+            {
+                component = factory.create();
+                components.put(settings, component);
+            }
+            return component;
+        }
+    }
+
+    /**
+     * Creates a component shared by the connections of a client
+     */
+    interface ComponentFactory<T>
+    {
+        T create();
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3;
+
+import org.mule.module.s3.simpleapi.ContentCache;
+
+import com.amazonaws.AmazonClientException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * The {@link ContentCache}s shared by all the connections that cache contents in
+ * the same directory. Pooled connections of the same configuration thus share a
+ * single size limit, and do not delete the files cached by each other. Caches are
+ * reference counted, and cleared once the last connection that uses them is
+ * released.
+ */
+final class SharedContentCaches
+{
+    private static final Map<File, SharedContentCache> CACHES = new HashMap<File, SharedContentCache>();
+
+    private SharedContentCaches()
+    {
+    }
+
+    /**
+     * Answers the cache of the given directory, creating it - and so deleting the
+     * files left in the directory - if no connection is using it. Each acquired
+     * cache must be eventually released.
+     *
+     * @throws IllegalArgumentException if the cache of the directory is in use
+     *             with a different max size
+     */
+    public static synchronized SharedContentCache acquire(File directory, long maxBytes)
+    {
+        Validate.isTrue(maxBytes > 0, "Content cache max size must be greater than zero");
+        File canonicalDirectory = canonicalize(directory);
+        SharedContentCache cache = CACHES.get(canonicalDirectory);
+        if (cache == null)
+        {
+            cache = new SharedContentCache(canonicalDirectory, maxBytes, new ContentCache(canonicalDirectory,
+                maxBytes));
+            CACHES.put(canonicalDirectory, cache);
+        }
+        Validate.isTrue(cache.maxBytes == maxBytes, "Content cache directory " + directory
+                                                    + " is already in use with a different max size");
+        cache.references++;
+        return cache;
+    }
+
+    /**
+     * Releases a cache acquired by a connection, clearing it if no other
+     * connection is using it
+     */
+    public static synchronized void release(SharedContentCache cache)
+    {
+        if (cache.references == 0)
+        {
+            return;
+        }
+        cache.references--;
+        if (cache.references == 0)
+        {
+            CACHES.remove(cache.directory);
+            cache.cache.clear();
+        }
+    }
+
+    private static File canonicalize(File directory)
+    {
+        try
+        {
+            return directory.getCanonicalFile();
+        }
+        catch (IOException e)
+        {
+            throw new AmazonClientException("Could not resolve content cache directory " + directory, e);
+        }
+    }
+
+    /**
+     * A content cache shared by several connections
+     */
+    static final class SharedContentCache
+    {
+        private final File directory;
+        private final long maxBytes;
+        private final ContentCache cache;
+        private int references;
+
+        private SharedContentCache(File directory, long maxBytes, ContentCache cache)
+        {
+            this.directory = directory;
+            this.maxBytes = maxBytes;
+            this.cache = cache;
+        }
+
+        public ContentCache getCache()
+        {
+            return cache;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3;
+
+import org.mule.module.s3.simpleapi.S3Metrics;
+
+import com.amazonaws.AmazonClientException;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+
+/**
+ * The {@link S3Metrics} shared by all the connections with the same metrics name,
+ * published in the platform MBean server. Pooled connections of the same
+ * configuration thus record their calls in the same MBeans. Metrics are reference
+ * counted, and unpublished once the last connection that uses them is released.
+ */
+final class SharedS3Metrics
+{
+    private static final Map<String, SharedMetrics> METRICS = new HashMap<String, SharedMetrics>();
+
+    private SharedS3Metrics()
+    {
+    }
+
+    /**
+     * Answers the metrics of the given name, creating and publishing them if no
+     * connection is using them. Each acquired metrics must be eventually released.
+     */
+    public static synchronized SharedMetrics acquire(String name)
+    {
+        SharedMetrics metrics = METRICS.get(name);
+        if (metrics == null)
+        {
+            S3Metrics s3Metrics = new S3Metrics();
+            try
+            {
+                s3Metrics.register(ManagementFactory.getPlatformMBeanServer(), name);
+            }
+            catch (JMException e)
+            {
+                throw new AmazonClientException("Could not publish metrics " + name + " over JMX", e);
+            }
+            metrics = new SharedMetrics(name, s3Metrics);
+            METRICS.put(name, metrics);
+        }
+        metrics.references++;
+        return metrics;
+    }
+
+    /**
+     * Releases metrics acquired by a connection, unpublishing them if no other
+     * connection is using them
+     */
+    public static synchronized void release(SharedMetrics metrics)
+    {
+        if (metrics.references == 0)
+        {
+            return;
+        }
+        metrics.references--;
+        if (metrics.references == 0)
+        {
+            METRICS.remove(metrics.name);
+            metrics.metrics.unregister();
+        }
+    }
+
+    /**
+     * Metrics shared by several connections
+     */
+    static final class SharedMetrics
+    {
+        private final String name;
+        private final S3Metrics metrics;
+        private int references;
+
+        private SharedMetrics(String name, S3Metrics metrics)
+        {
+            this.name = name;
+            this.metrics = metrics;
+        }
+
+        public S3Metrics getMetrics()
+        {
+            return metrics;
+        }
+    }
+}
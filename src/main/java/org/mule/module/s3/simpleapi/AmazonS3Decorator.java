@@ -0,0 +1,240 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ListVersionsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.VersionListing;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+/**
+ * A behavior that applies uniformly to every request made to S3 through an
+ * {@link AmazonS3} client, such as throttling it. Unlike a
+ * {@link SimpleAmazonS3Decorator}, which handles each call of the simple API as a
+ * whole, it handles each of the requests a call makes - the batches of a bulk
+ * delete, the parts of a multipart upload or the pages of a listing - along with
+ * the bucket and key they target. It is meant to decorate the client given to
+ * {@link SimpleAmazonS3AmazonDevKitImpl}, see {@link #toAmazonS3()}.
+ * <p>
+ * Operations of the client that make no requests, such as generatePresignedUrl,
+ * are not handled.
+ * </p>
+ */
+public abstract class AmazonS3Decorator implements InvocationHandler
+{
+    private static final Set<String> LOCAL_OPERATIONS = new HashSet<String>(Arrays.asList("setEndpoint",
+        "setRegion", "setS3ClientOptions", "generatePresignedUrl", "getCachedResponseMetadata", "getUrl",
+        "getResourceUrl", "shutdown"));
+
+    private final AmazonS3 delegate;
+
+    protected AmazonS3Decorator(@NotNull AmazonS3 delegate)
+    {
+        Validate.notNull(delegate);
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return an {@link AmazonS3} whose requests are handled by this decorator
+     */
+    public AmazonS3 toAmazonS3()
+    {
+        return (AmazonS3) Proxy.newProxyInstance(AmazonS3.class.getClassLoader(),
+            new Class<?>[]{AmazonS3.class}, this);
+    }
+
+    public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        if (method.getDeclaringClass() == Object.class)
+        {
+            if (method.getName().equals("equals"))
+            {
+                return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode"))
+            {
+                return System.identityHashCode(proxy);
+            }
+            return getClass().getSimpleName() + "[" + delegate + "]";
+        }
+        if (!makesRequest(method))
+        {
+            return proceed(method, args);
+        }
+        return invoke(method, args, getTarget(method, args));
+    }
+
+    /**
+     * Answers whether an operation of {@link AmazonS3} makes requests to S3, unlike
+     * generatePresignedUrl, for example
+     */
+    public static boolean makesRequest(Method method)
+    {
+        return !LOCAL_OPERATIONS.contains(method.getName());
+    }
+
+    /**
+     * Handles a request, which is performed by invoking
+     * {@link #proceed(Method, Object[])}
+     *
+     * @param method the operation of the client that makes the request
+     * @param args the arguments of the operation, or null if it has none
+     * @param target the bucket and key targeted by the request, or null if it
+     *            does not target a single bucket, like listing buckets
+     * @return the result of the operation
+     */
+    protected abstract Object invoke(Method method, Object[] args, Target target) throws Throwable;
+
+    /**
+     * Performs an operation on the decorated {@link AmazonS3}, throwing its
+     * exceptions unwrapped.
+     */
+    protected final Object proceed(Method method, Object[] args) throws Throwable
+    {
+        try
+        {
+            return method.invoke(delegate, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Answers the bucket and key targeted by a request: the destination of
+     * copies, the prefix of listings, the first key of multi-object deletes, and
+     * the bucket and key of any other request, either given as its first
+     * arguments or as the properties of its request object
+     */
+    private static Target getTarget(Method method, Object[] args)
+    {
+        if (args == null || args.length == 0)
+        {
+            return null;
+        }
+        Object request = args[0];
+        if (request instanceof String)
+        {
+            if (method.getName().equals("copyObject"))
+            {
+                return new Target((String) args[2], (String) args[3]);
+            }
+            // the second argument of bucket operations, such as a policy, is not a key
+            boolean keyed = args.length > 1 && args[1] instanceof String && !method.getName().contains("Bucket");
+            return new Target((String) request, keyed ? (String) args[1] : null);
+        }
+        if (request instanceof CopyObjectRequest)
+        {
+            CopyObjectRequest copyRequest = (CopyObjectRequest) request;
+            return new Target(copyRequest.getDestinationBucketName(), copyRequest.getDestinationKey());
+        }
+        if (request instanceof CopyPartRequest)
+        {
+            CopyPartRequest copyRequest = (CopyPartRequest) request;
+            return new Target(copyRequest.getDestinationBucketName(), copyRequest.getDestinationKey());
+        }
+        if (request instanceof DeleteObjectsRequest)
+        {
+            DeleteObjectsRequest deleteRequest = (DeleteObjectsRequest) request;
+            return new Target(deleteRequest.getBucketName(), deleteRequest.getKeys().isEmpty()
+                ? null : deleteRequest.getKeys().get(0).getKey());
+        }
+        if (request instanceof ListObjectsRequest)
+        {
+            ListObjectsRequest listRequest = (ListObjectsRequest) request;
+            return new Target(listRequest.getBucketName(), listRequest.getPrefix());
+        }
+        if (request instanceof ListVersionsRequest)
+        {
+            ListVersionsRequest listRequest = (ListVersionsRequest) request;
+            return new Target(listRequest.getBucketName(), listRequest.getPrefix());
+        }
+        if (request instanceof ObjectListing)
+        {
+            ObjectListing listing = (ObjectListing) request;
+            return new Target(listing.getBucketName(), listing.getPrefix());
+        }
+        if (request instanceof VersionListing)
+        {
+            VersionListing listing = (VersionListing) request;
+            return new Target(listing.getBucketName(), listing.getPrefix());
+        }
+        String bucketName = (String) getProperty(request, "getBucketName");
+        return bucketName != null ? new Target(bucketName, (String) getProperty(request, "getKey")) : null;
+    }
+
+    private static Object getProperty(Object request, String getterName)
+    {
+        try
+        {
+            return request.getClass().getMethod(getterName).invoke(request);
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+        catch (IllegalAccessException e)
+        {
+            return null;
+        }
+        catch (InvocationTargetException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * The bucket and key targeted by a request
+     */
+    protected static final class Target
+    {
+        private final String bucketName;
+        private final String key;
+
+        private Target(String bucketName, String key)
+        {
+            this.bucketName = bucketName;
+            this.key = StringUtils.defaultString(key);
+        }
+
+        public String getBucketName()
+        {
+            return bucketName;
+        }
+
+        /**
+         * @return the targeted key, the listed prefix, or empty if the request
+         *         targets the whole bucket
+         */
+        public String getKey()
+        {
+            return key;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import org.mule.module.s3.simpleapi.SimpleAmazonS3.S3ObjectContent;
+import org.mule.module.s3.util.DaemonThreadFactory;
+
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CopyObjectResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.StorageClass;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.lang.Validate;
+import org.apache.log4j.Logger;
+
+/**
+ * Asynchronous variants of the object operations of a {@link SimpleAmazonS3},
+ * which answer immediately a {@link Future} of their result, so that callers can
+ * issue many operations at the same time without blocking one of their threads
+ * per operation.
+ * <p>
+ * Operations are run by a bounded pool of I/O threads, which is the only one
+ * that waits for S3 to respond. Up to a bounded number of operations wait for a
+ * thread of the pool; once that limit is reached, further operations are run by
+ * the calling thread, which slows down callers instead of piling up work.
+ * Failures are reported by the returned futures, wrapped in an
+ * {@link java.util.concurrent.ExecutionException}.
+ * </p>
+ */
+public final class AsyncSimpleAmazonS3
+{
+    public static final int DEFAULT_CONCURRENCY = 16;
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT = 30000;
+
+    private static final Logger logger = Logger.getLogger(AsyncSimpleAmazonS3.class);
+
+    private final SimpleAmazonS3 delegate;
+    private final ThreadPoolExecutor executor;
+    private volatile long shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+
+    /**
+     * @param delegate the client that performs the operations
+     * @param concurrency the maximum number of operations run at the same time
+     * @param queueSize the maximum number of operations waiting to be run
+     */
+    public AsyncSimpleAmazonS3(@NotNull SimpleAmazonS3 delegate, int concurrency, int queueSize)
+    {
+        Validate.notNull(delegate);
+        Validate.isTrue(concurrency > 0, "Async concurrency must be greater than zero");
+        Validate.isTrue(queueSize > 0, "Async queue size must be greater than zero");
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize), new DaemonThreadFactory("mule-s3-async"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the client that performs the operations
+     */
+    public SimpleAmazonS3 getDelegate()
+    {
+        return delegate;
+    }
+
+    /**
+     * @see SimpleAmazonS3#createObject(S3ObjectId, S3ObjectContent, String,
+     *      CannedAccessControlList, StorageClass, Map)
+     */
+    public Future<String> createObject(@NotNull final S3ObjectId objectId,
+                                       @NotNull final S3ObjectContent content,
+                                       final String contentType,
+                                       final CannedAccessControlList acl,
+                                       final StorageClass storageClass,
+                                       final Map<String, String> userMetadata)
+    {
+        return executor.submit(new Callable<String>()
+        {
+            public String call()
+            {
+                return delegate.createObject(objectId, content, contentType, acl, storageClass, userMetadata);
+            }
+        });
+    }
+
+    /**
+     * @see SimpleAmazonS3#getObject(S3ObjectId, ConditionalConstraints)
+     */
+    public Future<S3Object> getObject(@NotNull final S3ObjectId objectId,
+                                      @NotNull final ConditionalConstraints conditionalConstraints)
+    {
+        return executor.submit(new Callable<S3Object>()
+        {
+            public S3Object call()
+            {
+                return delegate.getObject(objectId, conditionalConstraints);
+            }
+        });
+    }
+
+    /**
+     * @see SimpleAmazonS3#getObjectMetadata(S3ObjectId)
+     */
+    public Future<ObjectMetadata> getObjectMetadata(@NotNull final S3ObjectId objectId)
+    {
+        return executor.submit(new Callable<ObjectMetadata>()
+        {
+            public ObjectMetadata call()
+            {
+                return delegate.getObjectMetadata(objectId);
+            }
+        });
+    }
+
+    /**
+     * @see SimpleAmazonS3#copyObject(S3ObjectId, S3ObjectId,
+     *      ConditionalConstraints, CannedAccessControlList, StorageClass, Map)
+     */
+    public Future<CopyObjectResult> copyObject(@NotNull final S3ObjectId source,
+                                               @NotNull final S3ObjectId destination,
+                                               @NotNull final ConditionalConstraints conditionalConstraints,
+                                               final CannedAccessControlList acl,
+                                               final StorageClass storageClass,
+                                               final Map<String, String> destinationUserMetadata)
+    {
+        return executor.submit(new Callable<CopyObjectResult>()
+        {
+            public CopyObjectResult call()
+            {
+                return delegate.copyObject(source, destination, conditionalConstraints, acl, storageClass,
+                    destinationUserMetadata);
+            }
+        });
+    }
+
+    /**
+     * @see SimpleAmazonS3#deleteObject(S3ObjectId)
+     */
+    public Future<Void> deleteObject(@NotNull final S3ObjectId objectId)
+    {
+        return executor.submit(new Callable<Void>()
+        {
+            public Void call()
+            {
+                delegate.deleteObject(objectId);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Sets the maximum time, in milliseconds, that {@link #shutdown()} waits for
+     * the accepted operations to complete. Defaults to
+     * {@link #DEFAULT_SHUTDOWN_TIMEOUT}
+     */
+    public void setShutdownTimeout(long shutdownTimeout)
+    {
+        Validate.isTrue(shutdownTimeout >= 0, "Async shutdown timeout must not be negative");
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    /**
+     * Stops accepting operations, and waits up to the shutdown timeout for the
+     * already accepted ones to complete, so that the delegate can be released
+     * afterwards. Operations that are still pending after that, or when the
+     * calling thread is interrupted, are abandoned: running ones are interrupted,
+     * and waiting ones are cancelled, so that their futures do not block forever.
+     */
+    public void shutdown()
+    {
+        executor.shutdown();
+        try
+        {
+            if (executor.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS))
+            {
+                return;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        int running = executor.getActiveCount();
+        List<Runnable> waiting = executor.shutdownNow();
+        for (Runnable operation : waiting)
+        {
+            ((Future<?>) operation).cancel(false);
+        }
+        logger.warn("Abandoned " + running + " running and " + waiting.size()
+                    + " waiting async S3 operations after waiting " + shutdownTimeout
+                    + " ms for them to complete");
+    }
+}
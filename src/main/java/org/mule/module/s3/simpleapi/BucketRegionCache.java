@@ -0,0 +1,87 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A cache of the regions buckets are located at. As a bucket's region can not be
+ * changed, entries only become stale if buckets are deleted and created again
+ * elsewhere, so by default they never expire.
+ */
+class BucketRegionCache
+{
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final long ttlMillis;
+
+    /**
+     * @param ttlMillis the time entries are valid since they are cached, or zero
+     *            if they never expire
+     */
+    public BucketRegionCache(long ttlMillis)
+    {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return the cached region of the given bucket, or null if it is not cached or
+     *         it has expired
+     */
+    public Region get(String bucketName)
+    {
+        Entry entry = entries.get(bucketName);
+        if (entry == null)
+        {
+            return null;
+        }
+        if (entry.expiration < System.currentTimeMillis())
+        {
+            entries.remove(bucketName, entry);
+            return null;
+        }
+        return entry.region;
+    }
+
+    /**
+     * Caches the region of the given bucket, subject to expiration
+     */
+    public void put(String bucketName, Region region)
+    {
+        long expiration = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        entries.put(bucketName, new Entry(region, expiration));
+    }
+
+    /**
+     * Caches the region of the given bucket, for as long as this cache lives
+     */
+    public void seed(String bucketName, Region region)
+    {
+        entries.put(bucketName, new Entry(region, Long.MAX_VALUE));
+    }
+
+    public void invalidate(String bucketName)
+    {
+        entries.remove(bucketName);
+    }
+
+    private static final class Entry
+    {
+        private final Region region;
+        private final long expiration;
+
+        public Entry(Region region, long expiration)
+        {
+            this.region = region;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of copying several objects: how many objects were copied or
+ * skipped, and which ones could not be copied, along with the reason of each
+ * failure
+ */
+public class BulkCopyResult
+{
+    private long copiedCount;
+    private long skippedCount;
+    private final List<Failure> failures = new ArrayList<Failure>();
+
+    /**
+     * @return the number of successfully copied objects
+     */
+    public long getCopiedCount()
+    {
+        return copiedCount;
+    }
+
+    /**
+     * @return the number of objects that were not copied because their keys were
+     *         not mapped to a destination key
+     */
+    public long getSkippedCount()
+    {
+        return skippedCount;
+    }
+
+    /**
+     * @return the non null list of objects that could not be copied
+     */
+    public List<Failure> getFailures()
+    {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @return whether all the objects were copied
+     */
+    public boolean isSuccessful()
+    {
+        return failures.isEmpty();
+    }
+
+    void addCopied(long count)
+    {
+        copiedCount += count;
+    }
+
+    void addSkipped(long count)
+    {
+        skippedCount += count;
+    }
+
+    void addFailure(Failure failure)
+    {
+        failures.add(failure);
+    }
+
+    void addAll(BulkCopyResult other)
+    {
+        copiedCount += other.copiedCount;
+        skippedCount += other.skippedCount;
+        failures.addAll(other.failures);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BulkCopyResult[copied=" + copiedCount + ", skipped=" + skippedCount + ", failed="
+               + failures.size() + "]";
+    }
+
+    /**
+     * An object that could not be copied
+     */
+    public static final class Failure
+    {
+        private final String sourceKey;
+        private final String destinationKey;
+        private final String code;
+        private final String message;
+
+        public Failure(String sourceKey, String destinationKey, String code, String message)
+        {
+            this.sourceKey = sourceKey;
+            this.destinationKey = destinationKey;
+            this.code = code;
+            this.message = message;
+        }
+
+        public String getSourceKey()
+        {
+            return sourceKey;
+        }
+
+        public String getDestinationKey()
+        {
+            return destinationKey;
+        }
+
+        /**
+         * @return the S3 error code, like AccessDenied, or null, if the copy
+         *         could not be sent, for example because the connection was lost
+         */
+        public String getCode()
+        {
+            return code;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        @Override
+        public String toString()
+        {
+            return sourceKey + " -> " + destinationKey + ": " + code + " - " + message;
+        }
+    }
+}
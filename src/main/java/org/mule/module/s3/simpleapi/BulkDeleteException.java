@@ -0,0 +1,39 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Thrown when some of the objects of a bulk deletion could not be deleted, and
+ * such deletion was required for the operation to proceed.
+ */
+public class BulkDeleteException extends AmazonClientException
+{
+    private static final long serialVersionUID = 4180326398478315024L;
+
+    private final BulkDeleteResult result;
+
+    public BulkDeleteException(String message, BulkDeleteResult result)
+    {
+        super(message + ". " + result.getFailures().size() + " objects could not be deleted, first one was "
+              + result.getFailures().get(0));
+        this.result = result;
+    }
+
+    /**
+     * @return the result of the bulk deletion, with the detail of each failure
+     */
+    public BulkDeleteResult getResult()
+    {
+        return result;
+    }
+}
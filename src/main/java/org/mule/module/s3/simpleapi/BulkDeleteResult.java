@@ -0,0 +1,126 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of deleting several objects in batches: how many objects were
+ * deleted, and which ones could not be deleted, along with the reason of each
+ * failure
+ */
+public class BulkDeleteResult
+{
+    private long deletedCount;
+    private final List<Failure> failures = new ArrayList<Failure>();
+
+    /**
+     * @return the number of successfully deleted objects
+     */
+    public long getDeletedCount()
+    {
+        return deletedCount;
+    }
+
+    /**
+     * @return the non null list of objects that could not be deleted
+     */
+    public List<Failure> getFailures()
+    {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @return whether all the objects were deleted
+     */
+    public boolean isSuccessful()
+    {
+        return failures.isEmpty();
+    }
+
+    void addDeleted(long count)
+    {
+        deletedCount += count;
+    }
+
+    void addFailure(Failure failure)
+    {
+        failures.add(failure);
+    }
+
+    void addAll(BulkDeleteResult other)
+    {
+        deletedCount += other.deletedCount;
+        failures.addAll(other.failures);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BulkDeleteResult[deleted=" + deletedCount + ", failed=" + failures.size() + "]";
+    }
+
+    /**
+     * An object that could not be deleted
+     */
+    public static final class Failure
+    {
+        private final String key;
+        private final String versionId;
+        private final String code;
+        private final String message;
+
+        public Failure(String key, String versionId, String code, String message)
+        {
+            this.key = key;
+            this.versionId = versionId;
+            this.code = code;
+            this.message = message;
+        }
+
+        public String getKey()
+        {
+            return key;
+        }
+
+        /**
+         * @return the version that could not be deleted, or null, if versioning
+         *         was not involved
+         */
+        public String getVersionId()
+        {
+            return versionId;
+        }
+
+        /**
+         * @return the S3 error code, like AccessDenied, or null, if the batch
+         *         could not be sent, for example because the connection was lost
+         */
+        public String getCode()
+        {
+            return code;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        @Override
+        public String toString()
+        {
+            return key + (versionId != null ? " (version " + versionId + ")" : "") + ": " + code + " - "
+                   + message;
+        }
+    }
+}
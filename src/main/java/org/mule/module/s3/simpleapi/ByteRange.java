@@ -0,0 +1,79 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A range of bytes of an object content, which can be specified in three ways:
+ * <ul>
+ * <li>an offset and a length: the bytes from offset to offset + length - 1</li>
+ * <li>just an offset: the bytes from offset to the end of the object</li>
+ * <li>just a length: the last length bytes of the object - a suffix range</li>
+ * </ul>
+ * Ranges exceeding the object length are truncated to it.
+ */
+public final class ByteRange
+{
+    private final Long offset;
+    private final Long length;
+
+    private ByteRange(Long offset, Long length)
+    {
+        Validate.isTrue(offset != null || length != null, "Specify either offset, length or both");
+        Validate.isTrue(offset == null || offset >= 0, "Offset must not be negative");
+        Validate.isTrue(length == null || length > 0, "Length must be greater than zero");
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Whether this range is relative to the end of the object, so that its length
+     * is needed in order to locate it
+     */
+    public boolean isSuffix()
+    {
+        return offset == null;
+    }
+
+    /**
+     * @param objectLength the length of the object, or {@link Long#MAX_VALUE} if
+     *            unknown and this range is not a suffix
+     * @return the position of the first byte of the range
+     */
+    public long getFirstByte(long objectLength)
+    {
+        if (isSuffix())
+        {
+            return Math.max(0, objectLength - length);
+        }
+        return offset;
+    }
+
+    /**
+     * @param objectLength the length of the object, or {@link Long#MAX_VALUE} if
+     *            unknown and this range is not a suffix
+     * @return the position of the last byte of the range, inclusive
+     */
+    public long getLastByte(long objectLength)
+    {
+        if (isSuffix() || length == null || length >= objectLength - offset)
+        {
+            return objectLength - 1;
+        }
+        return offset + length - 1;
+    }
+
+    public static ByteRange from(Long offset, Long length)
+    {
+        return new ByteRange(offset, length);
+    }
+}
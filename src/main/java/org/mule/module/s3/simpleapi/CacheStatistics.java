@@ -0,0 +1,80 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+/**
+ * A snapshot of the usage statistics of one of the connector caches
+ */
+public class CacheStatistics
+{
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+
+    public CacheStatistics(long hits, long misses, long evictions, int size)
+    {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of lookups answered by the cache
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to be answered by S3
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return the number of entries discarded in order to make room for new ones
+     */
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * @return the number of entries currently held, including expired ones that
+     *         have not been looked up since they expired
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return the ratio of lookups answered by the cache, or 0 if there were no
+     *         lookups
+     */
+    public double getHitRatio()
+    {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CacheStatistics[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size="
+               + size + "]";
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+/**
+ * A snapshot of the activity of a {@link ConcurrencyLimitingAmazonS3}
+ */
+public final class ConcurrencyLimitStatistics
+{
+    private final int limit;
+    private final int inFlight;
+    private final int waiting;
+    private final long decreases;
+
+    public ConcurrencyLimitStatistics(int limit, int inFlight, int waiting, long decreases)
+    {
+        this.limit = limit;
+        this.inFlight = inFlight;
+        this.waiting = waiting;
+        this.decreases = decreases;
+    }
+
+    /**
+     * @return the current maximum number of requests in flight at the same time
+     */
+    public int getLimit()
+    {
+        return limit;
+    }
+
+    /**
+     * @return the number of requests currently in flight
+     */
+    public int getInFlight()
+    {
+        return inFlight;
+    }
+
+    /**
+     * @return the number of requests currently waiting for others to finish
+     */
+    public int getWaiting()
+    {
+        return waiting;
+    }
+
+    /**
+     * @return the number of times the limit was lowered because of raising
+     *         latencies or throttling
+     */
+    public long getDecreases()
+    {
+        return decreases;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ConcurrencyLimitStatistics[limit " + limit + ", in flight " + inFlight + ", waiting " + waiting
+               + ", decreases " + decreases + "]";
+    }
+}
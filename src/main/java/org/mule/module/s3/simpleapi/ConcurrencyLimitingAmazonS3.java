@@ -0,0 +1,315 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3Object;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Limits the number of requests made to S3 through an {@link AmazonS3} client
+ * that are in flight at the same time, tuning the limit to the load S3 can take:
+ * requests beyond the limit wait for others to finish, and the limit is adjusted
+ * with additive increase and multiplicative decrease.
+ * <ul>
+ * <li>While the limit is being used and latencies stay flat, it grows by one
+ * each time as many requests as the limit finish.</li>
+ * <li>When requests are throttled, or the latency of an operation rises well
+ * above the lowest it has been recently, the limit shrinks by a fraction, at
+ * most once per request latency.</li>
+ * </ul>
+ * <p>
+ * Limits apply to each request, so bulk and parallel operations take a slot for
+ * each of the requests they make. Latencies are tracked per operation of the
+ * client, as they vary widely between, for example, getting metadata and copying
+ * objects. Got objects keep their slot until their content is read to its end or
+ * closed, as their transfer is still in flight until then, but their latency is
+ * that of their response.
+ * </p>
+ */
+public final class ConcurrencyLimitingAmazonS3 extends AmazonS3Decorator
+{
+    public static final int DEFAULT_INITIAL_LIMIT = 16;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final double DEFAULT_LATENCY_TOLERANCE = 2;
+    private static final double BACKOFF_RATIO = 0.8;
+    private static final double LATENCY_SMOOTHING = 0.1;
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final Object lock = new Object();
+    private final Map<String, Latency> latencies = new HashMap<String, Latency>();
+    private final int maxLimit;
+    private int minLimit = DEFAULT_MIN_LIMIT;
+    private double latencyTolerance = DEFAULT_LATENCY_TOLERANCE;
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long decreases;
+    private long lastDecrease;
+
+    /**
+     * @param delegate the decorated client
+     * @param maxLimit the maximum number of requests in flight at the same time
+     */
+    public ConcurrencyLimitingAmazonS3(@NotNull AmazonS3 delegate, int maxLimit)
+    {
+        super(delegate);
+        Validate.isTrue(maxLimit > 0, "Max concurrency must be greater than zero");
+        this.maxLimit = maxLimit;
+        this.limit = Math.min(maxLimit, DEFAULT_INITIAL_LIMIT);
+        this.lastDecrease = System.nanoTime();
+    }
+
+    @Override
+    protected Object invoke(Method method, Object[] args, Target target) throws Throwable
+    {
+        acquire();
+        long start = System.nanoTime();
+        Object result;
+        try
+        {
+            result = proceed(method, args);
+        }
+        catch (Throwable e)
+        {
+            release(method.getName(), System.nanoTime() - start, false, RetryingSimpleAmazonS3.isThrottling(e));
+            throw e;
+        }
+        long latency = System.nanoTime() - start;
+        if (result instanceof S3Object && ((S3Object) result).getObjectContent() != null)
+        {
+            S3Object object = (S3Object) result;
+            object.setObjectContent(new ReleasingInputStream(object.getObjectContent(), method.getName(),
+                latency));
+        }
+        else
+        {
+            release(method.getName(), latency, true, false);
+        }
+        return result;
+    }
+
+    public ConcurrencyLimitStatistics getStatistics()
+    {
+        synchronized (lock)
+        {
+            return new ConcurrencyLimitStatistics((int) limit, inFlight, waiting, decreases);
+        }
+    }
+
+    private void acquire()
+    {
+        synchronized (lock)
+        {
+            waiting++;
+            try
+            {
+                while (inFlight >= (int) limit)
+                {
+                    lock.wait();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException("Interrupted while waiting for a concurrency limit slot", e);
+            }
+            finally
+            {
+                waiting--;
+            }
+            inFlight++;
+        }
+    }
+
+    private void release(String operation, long latencyNanos, boolean succeeded, boolean throttled)
+    {
+        synchronized (lock)
+        {
+            boolean limited = inFlight >= (int) limit;
+            inFlight--;
+            if (throttled)
+            {
+                decrease(latencyNanos);
+            }
+            else if (succeeded)
+            {
+                if (getLatency(operation).sample(latencyNanos, latencyTolerance))
+                {
+                    decrease(latencyNanos);
+                }
+                else if (limited || waiting > 0)
+                {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Shrinks the limit, unless it was already shrunk during the given latency,
+     * as requests that were already in flight do not reflect the previous decrease
+     */
+    private void decrease(long latencyNanos)
+    {
+        long now = System.nanoTime();
+        if (now - lastDecrease >= latencyNanos)
+        {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            lastDecrease = now;
+            decreases++;
+        }
+    }
+
+    private Latency getLatency(String operation)
+    {
+        Latency latency = latencies.get(operation);
+        if (latency == null)
+        {
+            latency = new Latency();
+            latencies.put(operation, latency);
+        }
+        return latency;
+    }
+
+    /**
+     * Sets the minimum number of requests in flight at the same time, no matter
+     * how latencies rise. Defaults to {@link #DEFAULT_MIN_LIMIT}
+     */
+    public void setMinLimit(int minLimit)
+    {
+        Validate.isTrue(minLimit > 0 && minLimit <= maxLimit,
+            "Min concurrency must be greater than zero and not greater than the max concurrency");
+        synchronized (lock)
+        {
+            this.minLimit = minLimit;
+            this.limit = Math.max(minLimit, limit);
+        }
+    }
+
+    /**
+     * Sets how many times the lowest recent latency of an operation its current
+     * latency may be before the limit shrinks. Defaults to
+     * {@link #DEFAULT_LATENCY_TOLERANCE}
+     */
+    public void setLatencyTolerance(double latencyTolerance)
+    {
+        Validate.isTrue(latencyTolerance > 1, "Latency tolerance must be greater than one");
+        synchronized (lock)
+        {
+            this.latencyTolerance = latencyTolerance;
+        }
+    }
+
+    /**
+     * The content of a got object, which releases the slot of its request once it
+     * is read to its end or closed
+     */
+    private final class ReleasingInputStream extends FilterInputStream
+    {
+        private final String operation;
+        private final long latencyNanos;
+        private boolean released;
+
+        public ReleasingInputStream(InputStream in, String operation, long latencyNanos)
+        {
+            super(in);
+            this.operation = operation;
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b == -1)
+            {
+                releaseOnce();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int count = super.read(b, off, len);
+            if (count == -1)
+            {
+                releaseOnce();
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                releaseOnce();
+            }
+        }
+
+        private synchronized void releaseOnce()
+        {
+            if (!released)
+            {
+                released = true;
+                release(operation, latencyNanos, true, false);
+            }
+        }
+    }
+
+    /**
+     * The smoothed latency of an operation, along with a baseline that follows its
+     * lowest values, and slowly drifts towards higher ones, so that it adapts when
+     * they are sustained
+     */
+    private static final class Latency
+    {
+        private double smoothed = -1;
+        private double baseline;
+
+        /**
+         * Records the latency of a request
+         *
+         * @return whether the smoothed latency exceeds the baseline by more than
+         *         the given tolerance
+         */
+        public boolean sample(long latencyNanos, double tolerance)
+        {
+            if (smoothed < 0)
+            {
+                smoothed = latencyNanos;
+                baseline = latencyNanos;
+                return false;
+            }
+            smoothed += (latencyNanos - smoothed) * LATENCY_SMOOTHING;
+            baseline = smoothed < baseline ? smoothed : baseline + (smoothed - baseline) * BASELINE_DRIFT;
+            return smoothed > baseline * tolerance;
+        }
+    }
+}
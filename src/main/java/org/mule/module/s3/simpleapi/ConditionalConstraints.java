@@ -12,7 +12,9 @@ package org.mule.module.s3.simpleapi;
 
 import com.amazonaws.services.s3.model.CopyObjectRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 
+import java.util.Collections;
 import java.util.Date;
 
 import javax.validation.constraints.NotNull;
@@ -25,37 +27,150 @@ import org.apache.commons.lang.Validate;
 public final class ConditionalConstraints
 {
     /**A constant constraint for a common scenario where no constraints are specified at all*/
-    private static final ConditionalConstraints EMPTY_CONSTRAINTS = new ConditionalConstraints(null, null);
+    private static final ConditionalConstraints EMPTY_CONSTRAINTS = new ConditionalConstraints(null, null, null,
+        null);
     private final Date modifiedSince;
     private final Date unmodifiedSince;
+    private final String matchingETag;
+    private final String nonMatchingETag;
 
-    private ConditionalConstraints(Date modifiedSince, Date unmodifiedSince)
+    private ConditionalConstraints(Date modifiedSince,
+                                   Date unmodifiedSince,
+                                   String matchingETag,
+                                   String nonMatchingETag)
     {
         Validate.isTrue(modifiedSince == null || unmodifiedSince == null,
             "Specify either modifiedSince or umodifiedSince");
+        Validate.isTrue(matchingETag == null || nonMatchingETag == null,
+            "Specify either matchingETag or nonMatchingETag");
         this.modifiedSince = modifiedSince;
         this.unmodifiedSince = unmodifiedSince;
+        this.matchingETag = matchingETag;
+        this.nonMatchingETag = nonMatchingETag;
+    }
+
+    /**
+     * @return whether no constraints are specified at all
+     */
+    boolean isEmpty()
+    {
+        return this == EMPTY_CONSTRAINTS;
     }
 
     public void populate(@NotNull GetObjectRequest request)
     {
         request.setModifiedSinceConstraint(modifiedSince);
         request.setUnmodifiedSinceConstraint(unmodifiedSince);
+        if (matchingETag != null)
+        {
+            request.setMatchingETagConstraints(Collections.singletonList(matchingETag));
+        }
+        if (nonMatchingETag != null)
+        {
+            request.setNonmatchingETagConstraints(Collections.singletonList(nonMatchingETag));
+        }
     }
 
     public void populate(@NotNull CopyObjectRequest request)
     {
         request.setModifiedSinceConstraint(modifiedSince);
         request.setUnmodifiedSinceConstraint(unmodifiedSince);
+        if (matchingETag != null)
+        {
+            request.setMatchingETagConstraints(Collections.singletonList(matchingETag));
+        }
+        if (nonMatchingETag != null)
+        {
+            request.setNonmatchingETagConstraints(Collections.singletonList(nonMatchingETag));
+        }
+    }
+
+    /**
+     * Populates the given request with these constraints, and additionally
+     * constrains it to an object with the given ETag, as the one of a previously
+     * fetched part of the object.
+     * 
+     * @return false if an object with the given ETag can not meet these constraints,
+     *         in which case the request does not need to be sent
+     */
+    boolean populatePinned(@NotNull GetObjectRequest request, @NotNull String eTag)
+    {
+        if (matchingETag != null && !unquote(matchingETag).equals(unquote(eTag)))
+        {
+            return false;
+        }
+        if (nonMatchingETag != null && unquote(nonMatchingETag).equals(unquote(eTag)))
+        {
+            return false;
+        }
+        request.setModifiedSinceConstraint(modifiedSince);
+        request.setUnmodifiedSinceConstraint(unmodifiedSince);
+        request.setMatchingETagConstraints(Collections.singletonList(eTag));
+        return true;
+    }
+
+    /**
+     * Answers whether an object with the given metadata, as that of a previous
+     * metadata request, meets these constraints, so that they do not need to be
+     * sent along with the requests of the object.
+     */
+    boolean matches(@NotNull ObjectMetadata metadata)
+    {
+        Date lastModified = metadata.getLastModified();
+        if (modifiedSince != null && lastModified != null && !lastModified.after(modifiedSince))
+        {
+            return false;
+        }
+        if (unmodifiedSince != null && lastModified != null && lastModified.after(unmodifiedSince))
+        {
+            return false;
+        }
+        String eTag = metadata.getETag() != null ? unquote(metadata.getETag()) : "";
+        if (matchingETag != null && !unquote(matchingETag).equals(eTag))
+        {
+            return false;
+        }
+        if (nonMatchingETag != null && unquote(nonMatchingETag).equals(eTag))
+        {
+            return false;
+        }
+        return true;
     }
 
     public static ConditionalConstraints from(Date modifiedSince, Date unmodifiedSince)
     {
-        if (modifiedSince == null && unmodifiedSince == null)
+        return from(modifiedSince, unmodifiedSince, null, null);
+    }
+
+    /**
+     * Creates constraints on the modification date and the ETag of an object. Either
+     * of the dates and either of the ETags may be specified.
+     * 
+     * @param modifiedSince the date the object must have been modified after
+     * @param unmodifiedSince the date the object must not have been modified after
+     * @param matchingETag the ETag the object must have
+     * @param nonMatchingETag the ETag the object must not have, usually the one of a
+     *            previously fetched copy of it
+     */
+    public static ConditionalConstraints from(Date modifiedSince,
+                                              Date unmodifiedSince,
+                                              String matchingETag,
+                                              String nonMatchingETag)
+    {
+        if (modifiedSince == null && unmodifiedSince == null && matchingETag == null && nonMatchingETag == null)
         {
             return EMPTY_CONSTRAINTS;
         }
-        return new ConditionalConstraints(modifiedSince, unmodifiedSince);
+        return new ConditionalConstraints(modifiedSince, unmodifiedSince, matchingETag, nonMatchingETag);
+    }
+
+    private static String unquote(String eTag)
+    {
+        if (eTag.length() > 1 && eTag.startsWith("\"") && eTag.endsWith("\""))
+        {
+            return eTag.substring(1, eTag.length() - 1);
+        }
+        return eTag;
     }
 
 }
@@ -0,0 +1,214 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import com.amazonaws.AmazonClientException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A disk cache of object contents, bounded by the total size of the cached
+ * contents, that discards least recently used contents first. Each content is
+ * stored in its own file, along with the ETag it had when it was fetched, so that
+ * it can be revalidated with a conditional GET.
+ * <p>
+ * Entries are only held in memory, so files left by previous instances over the
+ * same directory are deleted when the cache is created. Thus, a directory must
+ * be used by a single cache at a time, which may be shared by several clients -
+ * see {@link SimpleAmazonS3AmazonDevKitImpl#setContentCache(ContentCache)}.
+ * </p>
+ */
+public class ContentCache
+{
+    private static final String FILE_PREFIX = "mule-s3-";
+    private static final String FILE_SUFFIX = ".content";
+
+    private final File directory;
+    private final long maxBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param directory the directory where contents are stored
+     * @param maxBytes the maximum total size of the stored contents
+     */
+    public ContentCache(File directory, long maxBytes)
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new AmazonClientException("Could not create content cache directory " + directory);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        File[] leftovers = directory.listFiles(new FilenameFilter()
+        {
+            public boolean accept(File dir, String name)
+            {
+                return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+            }
+        });
+        for (File leftover : leftovers)
+        {
+            leftover.delete();
+        }
+    }
+
+    /**
+     * @return the cached entry for the given object, or null if there is none
+     */
+    synchronized Entry get(S3ObjectId objectId)
+    {
+        return entries.get(objectId.toCacheKey());
+    }
+
+    /**
+     * @return whether contents of the given length can be cached at all
+     */
+    boolean accepts(long length)
+    {
+        return length <= maxBytes;
+    }
+
+    /**
+     * Opens the cached content of the given entry
+     * 
+     * @return the content, or null if the entry has been discarded since it was
+     *         answered by {@link #get(S3ObjectId)}
+     */
+    InputStream open(Entry entry)
+    {
+        try
+        {
+            InputStream content = new FileInputStream(entry.file);
+            synchronized (this)
+            {
+                hits++;
+            }
+            return content;
+        }
+        catch (FileNotFoundException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Answers a new file for storing a content that will be cached afterwards
+     */
+    File newFile()
+    {
+        try
+        {
+            return File.createTempFile(FILE_PREFIX, FILE_SUFFIX, directory);
+        }
+        catch (IOException e)
+        {
+            throw new AmazonClientException("Could not create content cache file", e);
+        }
+    }
+
+    /**
+     * Caches the content stored in the given file, replacing any previous content
+     * of the same object, and discarding least recently used contents until the
+     * total size of the contents fits the cache
+     */
+    synchronized void put(S3ObjectId objectId, File file, String eTag)
+    {
+        misses++;
+        Entry entry = new Entry(file, eTag);
+        discard(entries.put(objectId.toCacheKey(), entry));
+        totalBytes += entry.length;
+        for (Iterator<Entry> iter = entries.values().iterator(); totalBytes > maxBytes && iter.hasNext();)
+        {
+            Entry eldest = iter.next();
+            if (eldest != entry)
+            {
+                iter.remove();
+                discard(eldest);
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Discards the cached content of an object that has been changed. Besides the
+     * content of the given version, if any, the content of the latest version is
+     * discarded too.
+     */
+    synchronized void invalidate(S3ObjectId objectId)
+    {
+        discard(entries.remove(objectId.toUnversioned().toCacheKey()));
+        if (objectId.isVersioned())
+        {
+            discard(entries.remove(objectId.toCacheKey()));
+        }
+    }
+
+    /**
+     * Discards all the cached contents
+     */
+    public synchronized void clear()
+    {
+        for (Entry entry : entries.values())
+        {
+            discard(entry);
+        }
+        entries.clear();
+    }
+
+    public synchronized CacheStatistics getStatistics()
+    {
+        return new CacheStatistics(hits, misses, evictions, entries.size());
+    }
+
+    private void discard(Entry entry)
+    {
+        if (entry != null)
+        {
+            totalBytes -= entry.length;
+            if (!entry.file.delete())
+            {
+                entry.file.deleteOnExit();
+            }
+        }
+    }
+
+
+    static final class Entry
+    {
+        private final File file;
+        private final String eTag;
+        private final long length;
+
+        public Entry(File file, String eTag)
+        {
+            this.file = file;
+            this.eTag = eTag;
+            this.length = file.length();
+        }
+
+        public String getETag()
+        {
+            return eTag;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies, with buckets that grow exponentially - four per
+ * power of two microseconds - so that percentiles are answered with an error
+ * below a fifth of their value, using a fixed amount of memory
+ */
+final class LatencyHistogram
+{
+    private static final int BUCKETS_PER_POWER = 4;
+    private static final int BUCKETS = 40 * BUCKETS_PER_POWER;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos)
+    {
+        long micros = Math.max(1, nanos / 1000);
+        int bucket = (int) (Math.log(micros) / Math.log(2) * BUCKETS_PER_POWER);
+        counts.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        for (;;)
+        {
+            long max = maxNanos.get();
+            if (nanos <= max || maxNanos.compareAndSet(max, nanos))
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 1
+     * @return the latency, in milliseconds, that the given percentile of the
+     *         recorded latencies do not exceed, or 0 if none was recorded
+     */
+    public double getPercentile(double percentile)
+    {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long accumulated = 0;
+        int bucket = 0;
+        for (; bucket < BUCKETS - 1; bucket++)
+        {
+            accumulated += snapshot[bucket];
+            if (accumulated >= rank)
+            {
+                break;
+            }
+        }
+        double upperBoundMicros = Math.pow(2, (bucket + 1) / (double) BUCKETS_PER_POWER);
+        return Math.min(upperBoundMicros / 1000, getMax());
+    }
+
+    /**
+     * @return the mean of the recorded latencies, in milliseconds, or 0 if none
+     *         was recorded
+     */
+    public double getMean()
+    {
+        long recorded = count.get();
+        return recorded == 0 ? 0 : totalNanos.get() / 1e6 / recorded;
+    }
+
+    /**
+     * @return the maximum recorded latency, in milliseconds
+     */
+    public double getMax()
+    {
+        return maxNanos.get() / 1e6;
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import java.io.Closeable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An iterable whose elements are fetched lazily while it is iterated, such as
+ * the listings answered by {@link SimpleAmazonS3AmazonDevKitImpl}.
+ * <p>
+ * Iterators may fetch elements in background, ahead of the consumer. They stop
+ * once they are exhausted or no longer referenced, and closing the collection
+ * stops the ones that are still in progress right away - which is worth doing
+ * when an iteration is abandoned before its end.
+ * </p>
+ * <p>
+ * Warning: this class is not a proper collection, just it implements it in order
+ * to be compatible with some mule's collection splitting
+ * </p>
+ */
+abstract class LazyCollection<T> extends AbstractCollection<T> implements Closeable
+{
+    private final Map<CloseableIterator<T>, Boolean> openIterators = new WeakHashMap<CloseableIterator<T>, Boolean>();
+
+    /**
+     * Stops the background fetches of the iterators answered so far, which must
+     * not be in use at the same time. Closed iterators answer no more elements
+     */
+    public void close()
+    {
+        List<CloseableIterator<T>> iterators;
+        synchronized (openIterators)
+        {
+            iterators = new ArrayList<CloseableIterator<T>>(openIterators.keySet());
+            openIterators.clear();
+        }
+        for (CloseableIterator<T> iterator : iterators)
+        {
+            iterator.close();
+        }
+    }
+
+    /**
+     * Registers an iterator, so that it is closed along with this collection. It
+     * is only weakly referenced, so that abandoning it can still be noticed.
+     *
+     * @return the given iterator
+     */
+    protected Iterator<T> open(CloseableIterator<T> iterator)
+    {
+        synchronized (openIterators)
+        {
+            openIterators.put(iterator, Boolean.TRUE);
+        }
+        return iterator;
+    }
+
+    /**Hack for enabling collection splitter to work, which forces evaluation of whole iterable.
+     * This will not work with huge lists, but there is no better solution*/
+    @Override
+    public Object[] toArray()
+    {
+        LinkedList<Object> l = new LinkedList<Object>();
+        for (Object o : this)
+        {
+            l.add(o);
+        }
+        return l.toArray();
+    }
+
+    @Override
+    public int size()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * An iterator whose background fetches can be stopped
+     */
+    interface CloseableIterator<T> extends Iterator<T>, Closeable
+    {
+        void close();
+    }
+}
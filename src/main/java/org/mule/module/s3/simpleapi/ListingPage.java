@@ -0,0 +1,97 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A single page of a listing, which holds at most as many entries as requested -
+ * and never more than 1000 - and the markers for listing the following page. Such
+ * markers can be used to resume a listing after this page at any time.
+ *
+ * @param <T> the type of the listed entries
+ */
+public final class ListingPage<T> implements Iterable<T>
+{
+    private final List<T> items;
+    private final List<String> commonPrefixes;
+    private final String nextMarker;
+    private final String nextVersionIdMarker;
+
+    public ListingPage(List<T> items, List<String> commonPrefixes, String nextMarker)
+    {
+        this(items, commonPrefixes, nextMarker, null);
+    }
+
+    public ListingPage(List<T> items, List<String> commonPrefixes, String nextMarker, String nextVersionIdMarker)
+    {
+        this.items = Collections.unmodifiableList(items);
+        this.commonPrefixes = Collections.unmodifiableList(commonPrefixes);
+        this.nextMarker = nextMarker;
+        this.nextVersionIdMarker = nextVersionIdMarker;
+    }
+
+    /**
+     * @return the entries of this page
+     */
+    public List<T> getItems()
+    {
+        return items;
+    }
+
+    /**
+     * @return the common prefixes found in this page, if listed with a delimiter
+     */
+    public List<String> getCommonPrefixes()
+    {
+        return commonPrefixes;
+    }
+
+    /**
+     * @return the marker the following page starts after, or null if this is the
+     *         last page
+     */
+    public String getNextMarker()
+    {
+        return nextMarker;
+    }
+
+    /**
+     * @return the version id marker the following page starts after, along with
+     *         {@link #getNextMarker()}, if this is a page of versions. Null otherwise
+     */
+    public String getNextVersionIdMarker()
+    {
+        return nextVersionIdMarker;
+    }
+
+    /**
+     * @return whether there are more pages after this one
+     */
+    public boolean isTruncated()
+    {
+        return nextMarker != null;
+    }
+
+    public Iterator<T> iterator()
+    {
+        return items.iterator();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ListingPage[" + items.size() + " items, " + commonPrefixes.size() + " common prefixes, next marker "
+               + nextMarker + "]";
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used, cache of object metadata, whose entries expire
+ * after a fixed time to live. Entries are keyed by object id, so metadata of
+ * specific versions - which never change - is cached apart from the metadata of
+ * the latest version. Cached metadata is copied in and out, so callers can not
+ * alter cached entries.
+ * <p>
+ * A cache can be shared by several {@link SimpleAmazonS3AmazonDevKitImpl}, so that
+ * writes through any of them invalidate the metadata cached by all of them.
+ * </p>
+ */
+public class MetadataCache
+{
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries the maximum number of cached entries
+     * @param ttlMillis the time entries are valid since they are cached
+     */
+    public MetadataCache(final int maxEntries, long ttlMillis)
+    {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                if (size() > MetadataCache.this.maxEntries)
+                {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the cached metadata of the given object, or null if it is
+     *         not cached or it has expired
+     */
+    synchronized ObjectMetadata get(S3ObjectId objectId)
+    {
+        String cacheKey = objectId.toCacheKey();
+        Entry entry = entries.get(cacheKey);
+        if (entry != null && entry.expiration < System.currentTimeMillis())
+        {
+            entries.remove(cacheKey);
+            entry = null;
+        }
+        if (entry == null)
+        {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copyOf(entry.metadata);
+    }
+
+    /**
+     * Caches a copy of the given metadata, replacing any previous entry
+     */
+    synchronized void put(S3ObjectId objectId, ObjectMetadata metadata)
+    {
+        entries.put(objectId.toCacheKey(), new Entry(copyOf(metadata), System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Discards the cached metadata of an object that has been changed. Besides
+     * the entry of the given version, if any, the entry of the latest version is
+     * discarded too, as it may have changed.
+     */
+    synchronized void invalidate(S3ObjectId objectId)
+    {
+        entries.remove(objectId.toUnversioned().toCacheKey());
+        if (objectId.isVersioned())
+        {
+            entries.remove(objectId.toCacheKey());
+        }
+    }
+
+    public synchronized CacheStatistics getStatistics()
+    {
+        return new CacheStatistics(hits, misses, evictions, entries.size());
+    }
+
+
+    private static ObjectMetadata copyOf(ObjectMetadata metadata)
+    {
+        ObjectMetadata copy = new ObjectMetadata();
+        for (Map.Entry<String, Object> header : metadata.getRawMetadata().entrySet())
+        {
+            Object value = header.getValue();
+            copy.setHeader(header.getKey(), value instanceof Date ? new Date(((Date) value).getTime()) : value);
+        }
+        copy.setUserMetadata(new HashMap<String, String>(metadata.getUserMetadata()));
+        return copy;
+    }
+
+    private static final class Entry
+    {
+        private final ObjectMetadata metadata;
+        private final long expiration;
+
+        public Entry(ObjectMetadata metadata, long expiration)
+        {
+            this.metadata = metadata;
+            this.expiration = expiration;
+        }
+    }
+}
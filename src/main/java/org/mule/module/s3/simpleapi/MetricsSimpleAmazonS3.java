@@ -0,0 +1,215 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import org.mule.module.s3.simpleapi.SimpleAmazonS3.S3ObjectContent;
+
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Records the latency, outcome and transferred bytes of the calls of a
+ * {@link SimpleAmazonS3} in a given {@link S3Metrics}.
+ * <p>
+ * Transferred bytes are counted as they are read: uploaded bytes are those read
+ * from the content streams of the created objects, and downloaded bytes those
+ * read from the answered objects and content streams. Bytes read again when a
+ * stream is reset are not counted twice. Files are read by the S3 client itself,
+ * so their lengths are counted once they are successfully uploaded or
+ * downloaded.
+ * </p>
+ */
+public final class MetricsSimpleAmazonS3 extends SimpleAmazonS3Decorator
+{
+    private final S3Metrics metrics;
+
+    public MetricsSimpleAmazonS3(@NotNull SimpleAmazonS3 delegate, @NotNull S3Metrics metrics)
+    {
+        super(delegate);
+        Validate.notNull(metrics);
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected Object invoke(Method method, Object[] args) throws Throwable
+    {
+        OperationMetrics operation = metrics.getOperationMetrics(method.getName());
+        CountingS3ObjectContent content = null;
+        if (method.getName().equals("createObject"))
+        {
+            content = new CountingS3ObjectContent((S3ObjectContent) args[1]);
+            args[1] = content;
+        }
+        operation.started();
+        long start = System.nanoTime();
+        Throwable error = null;
+        try
+        {
+            Object result = proceed(method, args);
+            if (content != null && content.file != null)
+            {
+                metrics.addBytesUploaded(content.file.length());
+            }
+            return recordDownload(method, args, result);
+        }
+        catch (Throwable e)
+        {
+            error = e;
+            throw e;
+        }
+        finally
+        {
+            operation.finished(System.nanoTime() - start, error);
+        }
+    }
+
+    private Object recordDownload(Method method, Object[] args, Object result)
+    {
+        if (method.getName().equals("downloadObject") && Boolean.TRUE.equals(result))
+        {
+            metrics.addBytesDownloaded(((File) args[2]).length());
+        }
+        else if (result instanceof S3Object)
+        {
+            S3Object object = (S3Object) result;
+            if (object.getObjectContent() != null)
+            {
+                object.setObjectContent(new CountingInputStream(object.getObjectContent(), false));
+            }
+        }
+        else if (result instanceof InputStream)
+        {
+            return new CountingInputStream((InputStream) result, false);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the bytes read from the stream of the requests of a content, and
+     * remembers its file, if any
+     */
+    private final class CountingS3ObjectContent implements S3ObjectContent
+    {
+        private final S3ObjectContent content;
+        private File file;
+
+        public CountingS3ObjectContent(S3ObjectContent content)
+        {
+            this.content = content;
+        }
+
+        public PutObjectRequest createPutObjectRequest()
+        {
+            PutObjectRequest request = content.createPutObjectRequest();
+            file = request.getFile();
+            if (request.getInputStream() != null)
+            {
+                request.setInputStream(new CountingInputStream(request.getInputStream(), true));
+            }
+            return request;
+        }
+
+        public boolean isRepeatable()
+        {
+            return content.isRepeatable();
+        }
+    }
+
+    /**
+     * Adds the bytes read from a stream to the uploaded or downloaded bytes. Bytes
+     * read again after a reset are only counted once.
+     */
+    private final class CountingInputStream extends FilterInputStream
+    {
+        private final boolean upload;
+        private long position;
+        private long markedPosition;
+        private long countedPosition;
+
+        public CountingInputStream(InputStream in, boolean upload)
+        {
+            super(in);
+            this.upload = upload;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b != -1)
+            {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int count = super.read(b, off, len);
+            if (count > 0)
+            {
+                advance(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = super.skip(n);
+            advance(skipped);
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit)
+        {
+            super.mark(readlimit);
+            markedPosition = position;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException
+        {
+            super.reset();
+            position = markedPosition;
+        }
+
+        private void advance(long bytes)
+        {
+            position += bytes;
+            if (position > countedPosition)
+            {
+                long counted = position - countedPosition;
+                countedPosition = position;
+                if (upload)
+                {
+                    metrics.addBytesUploaded(counted);
+                }
+                else
+                {
+                    metrics.addBytesDownloaded(counted);
+                }
+            }
+        }
+    }
+}
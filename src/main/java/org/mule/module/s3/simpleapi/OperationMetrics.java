@@ -0,0 +1,138 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import com.amazonaws.AmazonServiceException;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics of the calls to a {@link SimpleAmazonS3} operation
+ */
+public final class OperationMetrics implements OperationMetricsMXBean
+{
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> errorsByType = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    void started()
+    {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records a finished call
+     *
+     * @param latencyNanos the time the call took
+     * @param error the failure of the call, or null if it succeeded
+     */
+    void finished(long latencyNanos, Throwable error)
+    {
+        inFlight.decrementAndGet();
+        requests.incrementAndGet();
+        latencies.record(latencyNanos);
+        if (error != null)
+        {
+            errors.incrementAndGet();
+            String type = getErrorType(error);
+            AtomicLong count = errorsByType.get(type);
+            if (count == null)
+            {
+                AtomicLong newCount = new AtomicLong();
+                count = errorsByType.putIfAbsent(type, newCount);
+                if (count == null)
+                {
+                    count = newCount;
+                }
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    private static String getErrorType(Throwable error)
+    {
+        if (error instanceof AmazonServiceException)
+        {
+            AmazonServiceException serviceException = (AmazonServiceException) error;
+            if (serviceException.getErrorCode() != null)
+            {
+                return serviceException.getErrorCode();
+            }
+            return String.valueOf(serviceException.getStatusCode());
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    public long getRequests()
+    {
+        return requests.get();
+    }
+
+    public long getErrors()
+    {
+        return errors.get();
+    }
+
+    public Map<String, Long> getErrorsByType()
+    {
+        Map<String, Long> snapshot = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : errorsByType.entrySet())
+        {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return snapshot;
+    }
+
+    public int getInFlight()
+    {
+        return inFlight.get();
+    }
+
+    public double getMeanLatency()
+    {
+        return latencies.getMean();
+    }
+
+    public double getLatencyP50()
+    {
+        return latencies.getPercentile(0.5);
+    }
+
+    public double getLatencyP95()
+    {
+        return latencies.getPercentile(0.95);
+    }
+
+    public double getLatencyP99()
+    {
+        return latencies.getPercentile(0.99);
+    }
+
+    public double getMaxLatency()
+    {
+        return latencies.getMax();
+    }
+
+    public void reset()
+    {
+        latencies.reset();
+        requests.set(0);
+        errors.set(0);
+        errorsByType.clear();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import java.util.Map;
+
+/**
+ * The management interface of the metrics of a {@link SimpleAmazonS3} operation.
+ * Latencies are in milliseconds, and measured until operations answer, so they do
+ * not include the time spent reading the streams or listings they answer.
+ */
+public interface OperationMetricsMXBean
+{
+    /**
+     * @return the number of calls, either successful or not
+     */
+    long getRequests();
+
+    /**
+     * @return the number of failed calls
+     */
+    long getErrors();
+
+    /**
+     * @return the number of failed calls, by S3 error code, like SlowDown, or by
+     *         exception name, for errors that are not answered by S3
+     */
+    Map<String, Long> getErrorsByType();
+
+    /**
+     * @return the number of calls currently being performed
+     */
+    int getInFlight();
+
+    double getMeanLatency();
+
+    double getLatencyP50();
+
+    double getLatencyP95();
+
+    double getLatencyP99();
+
+    double getMaxLatency();
+
+    /**
+     * Clears all the recorded calls
+     */
+    void reset();
+}
@@ -0,0 +1,193 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import org.mule.module.s3.util.DaemonThreadFactory;
+
+import com.amazonaws.AmazonClientException;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the pages of a listing that follow a given one in background, keeping
+ * up to a bounded number of them buffered ahead of the consumer. As each page can
+ * only be requested once the previous one is known, pages are fetched one at a
+ * time, in order, by a single background thread.
+ * <p>
+ * Background fetches only hold a weak reference to the prefetcher, so that once
+ * the consumer abandons it, they stop requesting pages and shut the thread down.
+ * Consumers that abandon it on purpose should {@link #cancel()} it instead.
+ * </p>
+ *
+ * @param <PageType> the type of the listing pages
+ */
+abstract class PagePrefetcher<PageType>
+{
+    private final int maxPages;
+    private final ThreadPoolExecutor executor;
+    private final LinkedList<Future<PageType>> fetching = new LinkedList<Future<PageType>>();
+    private Future<PageType> last;
+
+    /**
+     * @param currentPage the already fetched page
+     * @param maxPages the maximum number of pages fetched ahead of the consumer
+     */
+    public PagePrefetcher(final PageType currentPage, int maxPages)
+    {
+        this.maxPages = maxPages;
+        this.executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new DaemonThreadFactory("mule-s3-listing"));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.last = executor.submit(constant(currentPage));
+        fetchAhead();
+    }
+
+    /**
+     * Answers whether there are more pages after the given one
+     */
+    protected abstract boolean isTruncated(PageType page);
+
+    /**
+     * Fetches the page that follows the given one
+     */
+    protected abstract PageType fetchNext(PageType page);
+
+    /**
+     * Answers the page that follows the last returned one, waiting for it if it
+     * has not been fetched yet.
+     *
+     * @return the next page, or null if there are no more pages
+     */
+    public PageType next()
+    {
+        if (fetching.isEmpty())
+        {
+            return null;
+        }
+        PageType page = get(fetching.removeFirst());
+        if (page == null || !isTruncated(page))
+        {
+            cancel();
+        }
+        else
+        {
+            fetchAhead();
+        }
+        return page;
+    }
+
+    /**
+     * Discards the pages fetched ahead, if any
+     */
+    public void cancel()
+    {
+        for (Future<PageType> future : fetching)
+        {
+            future.cancel(true);
+        }
+        fetching.clear();
+        executor.shutdownNow();
+    }
+
+    private void fetchAhead()
+    {
+        while (fetching.size() < maxPages)
+        {
+            last = executor.submit(new FetchTask<PageType>(this, executor, last));
+            fetching.add(last);
+        }
+    }
+
+    private static <PageType> Callable<PageType> constant(final PageType page)
+    {
+        return new Callable<PageType>()
+        {
+            public PageType call()
+            {
+                return page;
+            }
+        };
+    }
+
+    /**
+     * Fetches the page that follows the previous one, unless the prefetcher has
+     * been abandoned. Being static, it does not keep the prefetcher reachable
+     */
+    private static final class FetchTask<PageType> implements Callable<PageType>
+    {
+        private final WeakReference<PagePrefetcher<PageType>> prefetcher;
+        private final ExecutorService executor;
+        private Future<PageType> previous;
+
+        public FetchTask(PagePrefetcher<PageType> prefetcher, ExecutorService executor, Future<PageType> previous)
+        {
+            this.prefetcher = new WeakReference<PagePrefetcher<PageType>>(prefetcher);
+            this.executor = executor;
+            this.previous = previous;
+        }
+
+        public PageType call() throws Exception
+        {
+            // tasks run in submission order, so the previous page is already
+            // available
+            PageType page = previous.get();
+            // releases the earlier pages, which the previous task may refer to
+            previous = null;
+            PagePrefetcher<PageType> consumer = prefetcher.get();
+            if (consumer == null)
+            {
+                executor.shutdownNow();
+                return null;
+            }
+            return page != null && consumer.isTruncated(page) ? consumer.fetchNext(page) : null;
+        }
+    }
+
+    private PageType get(Future<PageType> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new AmazonClientException("Interrupted while listing", e);
+        }
+        catch (ExecutionException e)
+        {
+            cancel();
+            Throwable cause = e.getCause();
+            while (cause instanceof ExecutionException)
+            {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new AmazonClientException("Could not list", cause);
+        }
+    }
+}
@@ -0,0 +1,484 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import org.mule.module.s3.util.DaemonThreadFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A lazy listing of objects that is split in shards of the key space, which are
+ * listed at the same time and merged into a single iteration. Each shard is a
+ * regular, marker-based, chain of pages, and no more than the given concurrency
+ * of pages are either being fetched or fetched and waiting for the consumer, no
+ * matter the number of shards.
+ * <p>
+ * Summaries are either answered in key order - which needs the current page of
+ * every not exhausted shard to be merged, so memory usage also grows with the
+ * number of shards - or as soon as any page arrives.
+ * </p>
+ * <p>
+ * Each iterator fetches pages with threads of its own, which are shut down once
+ * it is exhausted or closed. Background fetches only hold a weak reference to
+ * the iterator, so that if it is abandoned without being closed, they stop
+ * fetching pages and shut the threads down.
+ * </p>
+ */
+class ParallelListing extends LazyCollection<S3ObjectSummary>
+{
+    private static final Comparator<OrderedIterator.ShardCursor> BY_HEAD_KEY =
+        new Comparator<OrderedIterator.ShardCursor>()
+    {
+        public int compare(OrderedIterator.ShardCursor c1, OrderedIterator.ShardCursor c2)
+        {
+            return c1.head.getKey().compareTo(c2.head.getKey());
+        }
+    };
+
+    private final AmazonS3 s3;
+    private final List<Shard> shards;
+    private final boolean ordered;
+    private final int concurrency;
+
+    /**
+     * @param s3 the client used for listing
+     * @param shards the shards of the key space to list
+     * @param ordered whether summaries must be answered in key order
+     * @param concurrency the maximum number of pages either being fetched or
+     *            fetched and not consumed yet
+     */
+    public ParallelListing(AmazonS3 s3, List<Shard> shards, boolean ordered, int concurrency)
+    {
+        this.s3 = s3;
+        this.shards = shards;
+        this.ordered = ordered;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Creates the shards for listing the given prefix, split at the given keys.
+     * Each boundary is the last key of a shard, and the last shard has no upper
+     * bound.
+     */
+    public static List<Shard> splitAt(String bucketName, String prefix, List<String> boundaries)
+    {
+        List<String> sortedBoundaries = new ArrayList<String>(boundaries);
+        Collections.sort(sortedBoundaries);
+        List<Shard> shards = new ArrayList<Shard>(sortedBoundaries.size() + 1);
+        String marker = null;
+        for (String boundary : sortedBoundaries)
+        {
+            if (!boundary.equals(marker))
+            {
+                shards.add(new Shard(new ListObjectsRequest(bucketName, prefix, marker, null, null), boundary));
+                marker = boundary;
+            }
+        }
+        shards.add(new Shard(new ListObjectsRequest(bucketName, prefix, marker, null, null), null));
+        return shards;
+    }
+
+    /**
+     * Creates the shards for listing the given prefix, split at its common
+     * prefixes for the given delimiter: one shard per common prefix, plus one for
+     * the objects that are directly under the given prefix. Discovering the
+     * common prefixes requires listing the first level of the key space, so this
+     * is effective only when keys are hierarchical.
+     */
+    public static List<Shard> splitAtCommonPrefixes(AmazonS3 s3,
+                                                    String bucketName,
+                                                    String prefix,
+                                                    String delimiter)
+    {
+        List<Shard> shards = new ArrayList<Shard>();
+        shards.add(new Shard(new ListObjectsRequest(bucketName, prefix, null, delimiter, null), null));
+        ObjectListing listing = s3.listObjects(new ListObjectsRequest(bucketName, prefix, null, delimiter, null));
+        while (true)
+        {
+            for (String commonPrefix : listing.getCommonPrefixes())
+            {
+                shards.add(new Shard(new ListObjectsRequest(bucketName, commonPrefix, null, null, null), null));
+            }
+            if (!listing.isTruncated())
+            {
+                return shards;
+            }
+            listing = s3.listNextBatchOfObjects(listing);
+        }
+    }
+
+    public Iterator<S3ObjectSummary> iterator()
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("mule-s3-listing"));
+        executor.allowCoreThreadTimeOut(true);
+        return open(ordered ? new OrderedIterator(executor) : new UnorderedIterator(executor));
+    }
+
+    private Callable<ShardPage> fetchTask(final WeakReference<?> consumer,
+                                          final ExecutorService executor,
+                                          final Shard shard,
+                                          final ObjectListing previous)
+    {
+        return new Callable<ShardPage>()
+        {
+            public ShardPage call()
+            {
+                if (consumer.get() == null)
+                {
+                    executor.shutdownNow();
+                    return null;
+                }
+                ObjectListing listing = previous == null
+                    ? s3.listObjects(shard.request) : s3.listNextBatchOfObjects(previous);
+                List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+                boolean last = !listing.isTruncated();
+                if (shard.lastKey != null)
+                {
+                    int inShard = 0;
+                    while (inShard < summaries.size()
+                           && summaries.get(inShard).getKey().compareTo(shard.lastKey) <= 0)
+                    {
+                        inShard++;
+                    }
+                    if (inShard < summaries.size())
+                    {
+                        summaries = summaries.subList(0, inShard);
+                        last = true;
+                    }
+                }
+                return new ShardPage(shard, listing, summaries, last);
+            }
+        };
+    }
+
+    private static ShardPage get(ThreadPoolExecutor executor, Future<ShardPage> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while listing", e);
+        }
+        catch (ExecutionException e)
+        {
+            executor.shutdownNow();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new AmazonClientException("Could not list", cause);
+        }
+    }
+
+    /**
+     * A contiguous range of the key space, listed as a single chain of pages
+     */
+    static final class Shard
+    {
+        private final ListObjectsRequest request;
+        private final String lastKey;
+
+        /**
+         * @param request the request for the first page of the shard
+         * @param lastKey the last key of the shard, inclusive, or null if the shard
+         *            spans up to the last listed key
+         */
+        public Shard(ListObjectsRequest request, String lastKey)
+        {
+            this.request = request;
+            this.lastKey = lastKey;
+        }
+    }
+
+    private static final class ShardPage
+    {
+        private final Shard shard;
+        private final ObjectListing listing;
+        private final List<S3ObjectSummary> summaries;
+        private final boolean last;
+
+        public ShardPage(Shard shard, ObjectListing listing, List<S3ObjectSummary> summaries, boolean last)
+        {
+            this.shard = shard;
+            this.listing = listing;
+            this.summaries = summaries;
+            this.last = last;
+        }
+    }
+
+    private final class OrderedIterator implements CloseableIterator<S3ObjectSummary>
+    {
+        private final WeakReference<?> consumer = new WeakReference<Object>(this);
+        private final ThreadPoolExecutor executor;
+        private final List<ShardCursor> cursors = new ArrayList<ShardCursor>();
+        private final LinkedList<ShardCursor> unrequested = new LinkedList<ShardCursor>();
+        private int outstanding;
+        private PriorityQueue<ShardCursor> heads;
+        private boolean closed;
+
+        public OrderedIterator(ThreadPoolExecutor executor)
+        {
+            this.executor = executor;
+            for (Shard shard : shards)
+            {
+                cursors.add(new ShardCursor(shard));
+            }
+            unrequested.addAll(cursors);
+            prefetch();
+        }
+
+        public boolean hasNext()
+        {
+            if (closed)
+            {
+                return false;
+            }
+            if (heads == null)
+            {
+                heads = new PriorityQueue<ShardCursor>(cursors.size(), BY_HEAD_KEY);
+                for (ShardCursor cursor : cursors)
+                {
+                    if (cursor.advance())
+                    {
+                        heads.add(cursor);
+                    }
+                }
+            }
+            if (heads.isEmpty())
+            {
+                executor.shutdown();
+                return false;
+            }
+            return true;
+        }
+
+        public S3ObjectSummary next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            ShardCursor cursor = heads.poll();
+            S3ObjectSummary summary = cursor.head;
+            if (cursor.advance())
+            {
+                heads.add(cursor);
+            }
+            return summary;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close()
+        {
+            closed = true;
+            executor.shutdownNow();
+        }
+
+        /**
+         * Requests the next page of the shards that need one, in the order they
+         * needed it, leaving room for the page the consumer may have to wait for
+         */
+        private void prefetch()
+        {
+            while (outstanding < concurrency - 1 && !unrequested.isEmpty())
+            {
+                unrequested.removeFirst().request();
+            }
+        }
+
+        /**
+         * The position of the iteration within a shard
+         */
+        private final class ShardCursor
+        {
+            private final Shard shard;
+            private ObjectListing previous;
+            private Future<ShardPage> next;
+            private boolean exhausted;
+            private Iterator<S3ObjectSummary> current = Collections.<S3ObjectSummary> emptyList().iterator();
+            private S3ObjectSummary head;
+
+            public ShardCursor(Shard shard)
+            {
+                this.shard = shard;
+            }
+
+            public void request()
+            {
+                next = executor.submit(fetchTask(consumer, executor, shard, previous));
+                outstanding++;
+            }
+
+            /**
+             * Moves to the next summary of the shard, waiting for its page if
+             * necessary - requesting it first, if it was not prefetched.
+             *
+             * @return false if the shard has been exhausted
+             */
+            public boolean advance()
+            {
+                while (!current.hasNext())
+                {
+                    if (exhausted)
+                    {
+                        return false;
+                    }
+                    if (next == null)
+                    {
+                        unrequested.remove(this);
+                        request();
+                    }
+                    ShardPage page = get(executor, next);
+                    next = null;
+                    outstanding--;
+                    previous = page.listing;
+                    exhausted = page.last;
+                    if (!exhausted)
+                    {
+                        unrequested.add(this);
+                    }
+                    prefetch();
+                    current = page.summaries.iterator();
+                }
+                head = current.next();
+                return true;
+            }
+        }
+    }
+
+    private final class UnorderedIterator implements CloseableIterator<S3ObjectSummary>
+    {
+        private final WeakReference<?> consumer = new WeakReference<Object>(this);
+        private final ThreadPoolExecutor executor;
+        private final CompletionService<ShardPage> arrivals;
+        private final LinkedList<Callable<ShardPage>> unrequested = new LinkedList<Callable<ShardPage>>();
+        private int pending;
+        private Iterator<S3ObjectSummary> current = Collections.<S3ObjectSummary> emptyList().iterator();
+        private boolean closed;
+
+        public UnorderedIterator(ThreadPoolExecutor executor)
+        {
+            this.executor = executor;
+            this.arrivals = new ExecutorCompletionService<ShardPage>(executor);
+            for (Shard shard : shards)
+            {
+                unrequested.add(fetchTask(consumer, executor, shard, null));
+            }
+            request();
+        }
+
+        public boolean hasNext()
+        {
+            while (!closed && !current.hasNext())
+            {
+                if (pending == 0)
+                {
+                    executor.shutdown();
+                    return false;
+                }
+                ShardPage page = get(executor, take());
+                pending--;
+                if (!page.last)
+                {
+                    // continuing started shards first keeps few of them open
+                    unrequested.addFirst(fetchTask(consumer, executor, page.shard, page.listing));
+                }
+                request();
+                current = page.summaries.iterator();
+            }
+            return !closed;
+        }
+
+        public S3ObjectSummary next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close()
+        {
+            closed = true;
+            executor.shutdownNow();
+        }
+
+        /**
+         * Requests pages of the shards that need one, as long as there are less
+         * than concurrency pages either being fetched or waiting to be taken
+         */
+        private void request()
+        {
+            while (pending < concurrency && !unrequested.isEmpty())
+            {
+                arrivals.submit(unrequested.removeFirst());
+                pending++;
+            }
+        }
+
+        private Future<ShardPage> take()
+        {
+            try
+            {
+                return arrivals.take();
+            }
+            catch (InterruptedException e)
+            {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException("Interrupted while listing", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import org.mule.module.s3.util.DaemonThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link InputStream} over the contents of an object that are fetched in
+ * consecutive byte ranges of a fixed size. While a range is being read, up to
+ * <code>concurrency</code> following ranges are fetched in background, so memory
+ * usage is bounded by concurrency + 1 ranges, regardless of the object size.
+ * <p>
+ * Background fetches only hold a weak reference to the stream, so that if it is
+ * abandoned without being closed, they stop fetching ranges and shut their
+ * threads down.
+ * </p>
+ */
+abstract class ParallelRangeInputStream extends InputStream
+{
+    private final long length;
+    private final long rangeSize;
+    private final int concurrency;
+    private final ThreadPoolExecutor executor;
+    private final LinkedList<Future<byte[]>> fetching = new LinkedList<Future<byte[]>>();
+    private long nextRangeStart;
+    private byte[] current;
+    private int position;
+    private boolean closed;
+
+    /**
+     * @param firstRange the already fetched first range of the object
+     * @param length the length of the whole object
+     * @param rangeSize the size of each range to fetch
+     * @param concurrency the maximum number of ranges fetched at the same time
+     */
+    public ParallelRangeInputStream(byte[] firstRange, long length, long rangeSize, int concurrency)
+    {
+        this.current = firstRange;
+        this.nextRangeStart = firstRange.length;
+        this.length = length;
+        this.rangeSize = rangeSize;
+        this.concurrency = concurrency;
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("mule-s3-download"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Fetches the given range of the object
+     * 
+     * @param start the first byte of the range, inclusive
+     * @param end the last byte of the range, inclusive
+     * @return the range contents
+     */
+    protected abstract byte[] fetchRange(long start, long end);
+
+    @Override
+    public int read() throws IOException
+    {
+        byte[] buffer = new byte[1];
+        return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int len) throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0)
+        {
+            return 0;
+        }
+        fetchAhead();
+        while (position == current.length)
+        {
+            if (fetching.isEmpty())
+            {
+                executor.shutdown();
+                return -1;
+            }
+            current = get(fetching.removeFirst());
+            position = 0;
+            fetchAhead();
+        }
+        int read = Math.min(len, current.length - position);
+        System.arraycopy(current, position, buffer, offset, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        return closed ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (!closed)
+        {
+            closed = true;
+            for (Future<byte[]> future : fetching)
+            {
+                future.cancel(true);
+            }
+            fetching.clear();
+            executor.shutdownNow();
+        }
+    }
+
+    private void fetchAhead()
+    {
+        while (fetching.size() < concurrency && nextRangeStart < length)
+        {
+            final long start = nextRangeStart;
+            final long end = Math.min(length, start + rangeSize) - 1;
+            fetching.add(executor.submit(new RangeTask(this, executor, start, end)));
+            nextRangeStart = end + 1;
+        }
+    }
+
+    private byte[] get(Future<byte[]> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching object contents", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException("Could not fetch object contents", e.getCause());
+        }
+    }
+
+    /**
+     * Fetches a range, unless the stream has been abandoned. Being static, it
+     * does not keep the stream reachable
+     */
+    private static final class RangeTask implements Callable<byte[]>
+    {
+        private final WeakReference<ParallelRangeInputStream> stream;
+        private final ExecutorService executor;
+        private final long start;
+        private final long end;
+
+        public RangeTask(ParallelRangeInputStream stream, ExecutorService executor, long start, long end)
+        {
+            this.stream = new WeakReference<ParallelRangeInputStream>(stream);
+            this.executor = executor;
+            this.start = start;
+            this.end = end;
+        }
+
+        public byte[] call() throws Exception
+        {
+            ParallelRangeInputStream consumer = stream.get();
+            if (consumer == null)
+            {
+                executor.shutdownNow();
+                return null;
+            }
+            return consumer.fetchRange(start, end);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import org.mule.module.s3.util.DaemonThreadFactory;
+
+import com.amazonaws.AmazonClientException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Runs tasks on a fixed amount of threads, blocking submitters while all of them
+ * are busy. This way, no more than <code>concurrency</code> tasks - and whatever
+ * buffers they hold - are in flight at the same time. Results are collected in
+ * submission order, and the first failure found is rethrown to the submitter.
+ * <p>
+ * Instances are meant to be fed by a single thread, and are not reusable: they
+ * must be {@link #shutdown()} once done.
+ * </p>
+ */
+class ParallelTasks<T>
+{
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final LinkedList<Future<T>> pending = new LinkedList<Future<T>>();
+    private final List<T> results = new ArrayList<T>();
+
+    public ParallelTasks(int concurrency)
+    {
+        Validate.isTrue(concurrency > 0, "Concurrency must be greater than zero");
+        this.executor = Executors.newFixedThreadPool(concurrency, new DaemonThreadFactory("mule-s3-worker"));
+        this.slots = new Semaphore(concurrency);
+    }
+
+    /**
+     * Submits the given task, blocking until there is a free thread to run it.
+     * 
+     * @throws RuntimeException the failure of an already completed task, if any
+     */
+    public void submit(final Callable<T> task)
+    {
+        collectCompleted();
+        acquireSlot();
+        pending.add(executor.submit(new Callable<T>()
+        {
+            public T call() throws Exception
+            {
+                try
+                {
+                    return task.call();
+                }
+                finally
+                {
+                    slots.release();
+                }
+            }
+        }));
+    }
+
+    /**
+     * Waits for all the submitted tasks to complete
+     * 
+     * @return the results of the tasks, in submission order
+     * @throws RuntimeException the failure of the first failed task, if any
+     */
+    public List<T> awaitAll()
+    {
+        while (!pending.isEmpty())
+        {
+            completed(get(pending.removeFirst()));
+        }
+        return results;
+    }
+
+    /**
+     * Interrupts any running task and releases the threads of this instance
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Callback for each completed task, in submission order. By default results
+     * are accumulated and answered by {@link #awaitAll()}, subclasses may override
+     * it in order to process them without retaining them.
+     */
+    protected void completed(T result)
+    {
+        results.add(result);
+    }
+
+    private void collectCompleted()
+    {
+        while (!pending.isEmpty() && pending.getFirst().isDone())
+        {
+            completed(get(pending.removeFirst()));
+        }
+        for (Iterator<Future<T>> iter = pending.iterator(); iter.hasNext();)
+        {
+            Future<T> future = iter.next();
+            if (future.isDone())
+            {
+                // fail fast - just rethrows if failed
+                get(future);
+            }
+        }
+    }
+
+    private void acquireSlot()
+    {
+        try
+        {
+            slots.acquire();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while waiting for a running task to complete", e);
+        }
+    }
+
+    private T get(Future<T> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while waiting for a running task to complete", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new AmazonClientException(cause.getMessage(), cause);
+        }
+    }
+}
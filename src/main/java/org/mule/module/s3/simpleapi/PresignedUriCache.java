@@ -0,0 +1,113 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import com.amazonaws.HttpMethod;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used, cache of pre-signed URIs, keyed by object id
+ * and http method. A cached URI is reused only while it is still valid for at
+ * least a safety margin, and as long as it does not outlive the expiration
+ * requested for it, so reusing it never grants access for longer than requested.
+ */
+class PresignedUriCache
+{
+    private final int maxEntries;
+    private final long marginMillis;
+    private final Map<String, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries the maximum number of cached entries
+     * @param marginMillis the minimum time a cached URI must still be valid for in
+     *            order to be reused
+     */
+    public PresignedUriCache(final int maxEntries, long marginMillis)
+    {
+        this.maxEntries = maxEntries;
+        this.marginMillis = marginMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                if (size() > PresignedUriCache.this.maxEntries)
+                {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param expiration the time, in millis, the requested URI should expire at
+     * @return the cached URI for the given object and method, or null if there is
+     *         none, it is about to expire, or it expires after the given time
+     */
+    public synchronized URI get(S3ObjectId objectId, HttpMethod method, long expiration)
+    {
+        String cacheKey = toCacheKey(objectId, method);
+        Entry entry = entries.get(cacheKey);
+        if (entry != null && entry.expiration < System.currentTimeMillis() + marginMillis)
+        {
+            entries.remove(cacheKey);
+            entry = null;
+        }
+        if (entry == null || entry.expiration > expiration)
+        {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.uri;
+    }
+
+    /**
+     * Caches the given URI, that expires at the given time, replacing any
+     * previous entry
+     */
+    public synchronized void put(S3ObjectId objectId, HttpMethod method, URI uri, long expiration)
+    {
+        entries.put(toCacheKey(objectId, method), new Entry(uri, expiration));
+    }
+
+    public synchronized CacheStatistics getStatistics()
+    {
+        return new CacheStatistics(hits, misses, evictions, entries.size());
+    }
+
+    private static String toCacheKey(S3ObjectId objectId, HttpMethod method)
+    {
+        return method + "\n" + objectId.toCacheKey();
+    }
+
+    private static final class Entry
+    {
+        private final URI uri;
+        private final long expiration;
+
+        public Entry(URI uri, long expiration)
+        {
+            this.uri = uri;
+            this.expiration = expiration;
+        }
+    }
+}
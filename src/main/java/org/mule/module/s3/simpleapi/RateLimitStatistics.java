@@ -0,0 +1,82 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+/**
+ * A snapshot of the activity of a {@link RateLimitingAmazonS3}
+ */
+public final class RateLimitStatistics
+{
+    private final long permitted;
+    private final long delayed;
+    private final long rejected;
+    private final int waiting;
+    private final int maxWaiting;
+
+    public RateLimitStatistics(long permitted, long delayed, long rejected, int waiting, int maxWaiting)
+    {
+        this.permitted = permitted;
+        this.delayed = delayed;
+        this.rejected = rejected;
+        this.waiting = waiting;
+        this.maxWaiting = maxWaiting;
+    }
+
+    /**
+     * @return the number of rate limited requests that were performed, either
+     *         immediately or after waiting
+     */
+    public long getPermitted()
+    {
+        return permitted;
+    }
+
+    /**
+     * @return the number of permitted requests that had to wait for their rate limit
+     */
+    public long getDelayed()
+    {
+        return delayed;
+    }
+
+    /**
+     * @return the number of requests that failed because their rate limit would have
+     *         delayed them longer than the maximum wait
+     */
+    public long getRejected()
+    {
+        return rejected;
+    }
+
+    /**
+     * @return the number of requests currently waiting for their rate limit
+     */
+    public int getWaiting()
+    {
+        return waiting;
+    }
+
+    /**
+     * @return the maximum number of requests that have been waiting for their rate
+     *         limit at the same time
+     */
+    public int getMaxWaiting()
+    {
+        return maxWaiting;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RateLimitStatistics[permitted " + permitted + ", delayed " + delayed + ", rejected " + rejected
+               + ", waiting " + waiting + ", max waiting " + maxWaiting + "]";
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+/**
+ * Limits the rate of the requests made to S3 through an {@link AmazonS3} client
+ * to given buckets or key prefixes, so that they are paced below the rates S3
+ * throttles at, instead of being repeatedly answered with SlowDown errors.
+ * <p>
+ * Limits are token buckets, set separately for reads - requests that get or
+ * list - and writes - requests that put, copy, delete or set. A request is
+ * limited by the limit of its bucket with the longest prefix of its key, or of
+ * its listing prefix. Each limit allows bursts of up to a second worth of
+ * requests. Requests that exceed their limit wait for it, unless they would wait
+ * longer than the maximum wait, in which case they fail immediately.
+ * </p>
+ * <p>
+ * Limits apply to each request, so bulk and parallel operations are paced
+ * request by request: each delete batch, part upload or copy, range get and
+ * listing page takes its own permit, from the limit of the key it targets.
+ * Requests that are not targeted to a single bucket, such as listing buckets,
+ * are not limited.
+ * </p>
+ */
+public final class RateLimitingAmazonS3 extends AmazonS3Decorator
+{
+
+    private final List<RateLimit> readLimits = new CopyOnWriteArrayList<RateLimit>();
+    private final List<RateLimit> writeLimits = new CopyOnWriteArrayList<RateLimit>();
+    private final AtomicLong permitted = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger maxWaiting = new AtomicInteger();
+    private volatile long maxWait = Long.MAX_VALUE;
+
+    public RateLimitingAmazonS3(@NotNull AmazonS3 delegate)
+    {
+        super(delegate);
+    }
+
+    @Override
+    protected Object invoke(Method method, Object[] args, Target target) throws Throwable
+    {
+        RateLimit limit = target != null ? findRateLimit(isRead(method.getName()) ? readLimits : writeLimits,
+            target.getBucketName(), target.getKey()) : null;
+        if (limit != null)
+        {
+            acquire(limit);
+        }
+        return proceed(method, args);
+    }
+
+    public RateLimitStatistics getStatistics()
+    {
+        return new RateLimitStatistics(permitted.get(), delayed.get(), rejected.get(), waiting.get(),
+            maxWaiting.get());
+    }
+
+    private void acquire(RateLimit limit)
+    {
+        long wait = limit.reserve(TimeUnit.MILLISECONDS.toNanos(maxWait));
+        if (wait < 0)
+        {
+            rejected.incrementAndGet();
+            throw new AmazonClientException("Rate limit of " + limit + " exceeded");
+        }
+        if (wait > 0)
+        {
+            delayed.incrementAndGet();
+            int currentlyWaiting = waiting.incrementAndGet();
+            updateMaxWaiting(currentlyWaiting);
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException("Interrupted while waiting for rate limit of " + limit, e);
+            }
+            finally
+            {
+                waiting.decrementAndGet();
+            }
+        }
+        permitted.incrementAndGet();
+    }
+
+    private void updateMaxWaiting(int currentlyWaiting)
+    {
+        for (;;)
+        {
+            int max = maxWaiting.get();
+            if (currentlyWaiting <= max || maxWaiting.compareAndSet(max, currentlyWaiting))
+            {
+                return;
+            }
+        }
+    }
+
+    private static boolean isRead(String operation)
+    {
+        return operation.startsWith("get") || operation.startsWith("list") || operation.startsWith("does");
+    }
+
+    private static RateLimit findRateLimit(List<RateLimit> limits, String bucketName, String key)
+    {
+        RateLimit found = null;
+        for (RateLimit limit : limits)
+        {
+            if (limit.matches(bucketName, key)
+                && (found == null || limit.prefix.length() > found.prefix.length()))
+            {
+                found = limit;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Limits the rate of the reads of the given bucket, or of the keys of the
+     * bucket with the given prefix
+     *
+     * @param bucketName the limited bucket
+     * @param prefix the limited key prefix, or null if the limit applies to the
+     *            whole bucket
+     * @param requestsPerSecond the maximum sustained rate of requests
+     */
+    public void setReadRateLimit(@NotNull String bucketName, String prefix, double requestsPerSecond)
+    {
+        setRateLimit(readLimits, bucketName, prefix, requestsPerSecond);
+    }
+
+    /**
+     * Limits the rate of the writes of the given bucket, or of the keys of the
+     * bucket with the given prefix
+     *
+     * @param bucketName the limited bucket
+     * @param prefix the limited key prefix, or null if the limit applies to the
+     *            whole bucket
+     * @param requestsPerSecond the maximum sustained rate of requests
+     */
+    public void setWriteRateLimit(@NotNull String bucketName, String prefix, double requestsPerSecond)
+    {
+        setRateLimit(writeLimits, bucketName, prefix, requestsPerSecond);
+    }
+
+    private static void setRateLimit(List<RateLimit> limits, String bucketName, String prefix,
+                                     double requestsPerSecond)
+    {
+        Validate.notNull(bucketName);
+        Validate.isTrue(requestsPerSecond > 0, "Rate limit must be greater than zero");
+        RateLimit limit = new RateLimit(bucketName, StringUtils.defaultString(prefix), requestsPerSecond);
+        for (RateLimit existing : limits)
+        {
+            if (existing.bucketName.equals(limit.bucketName) && existing.prefix.equals(limit.prefix))
+            {
+                limits.remove(existing);
+            }
+        }
+        limits.add(limit);
+    }
+
+    /**
+     * Sets the maximum time, in milliseconds, that a request waits for its rate
+     * limit. Requests that would need to wait longer fail instead, without waiting.
+     * Defaults to waiting as long as necessary
+     */
+    public void setMaxWait(long maxWait)
+    {
+        Validate.isTrue(maxWait >= 0, "Rate limit max wait must not be negative");
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * A token bucket that is refilled at a constant rate. Permits are reserved in
+     * advance, so requests that wait for the same limit are performed in order
+     */
+    private static final class RateLimit
+    {
+        private final String bucketName;
+        private final String prefix;
+        private final double permitsPerSecond;
+        private final double maxPermits;
+        private double permits;
+        private long lastRefill = System.nanoTime();
+
+        public RateLimit(String bucketName, String prefix, double permitsPerSecond)
+        {
+            this.bucketName = bucketName;
+            this.prefix = prefix;
+            this.permitsPerSecond = permitsPerSecond;
+            this.maxPermits = Math.max(1, permitsPerSecond);
+            this.permits = maxPermits;
+        }
+
+        public boolean matches(String bucketName, String key)
+        {
+            return this.bucketName.equals(bucketName) && key.startsWith(prefix);
+        }
+
+        /**
+         * Reserves a permit
+         *
+         * @return the nanoseconds to wait until the permit is available, or -1 if
+         *         that is longer than the given maximum, in which case the permit
+         *         is not reserved
+         */
+        public synchronized long reserve(long maxWaitNanos)
+        {
+            long now = System.nanoTime();
+            permits = Math.min(maxPermits, permits + (now - lastRefill) * permitsPerSecond / 1e9);
+            lastRefill = now;
+            long wait = permits >= 1 ? 0 : (long) Math.ceil((1 - permits) * 1e9 / permitsPerSecond);
+            if (wait > maxWaitNanos)
+            {
+                return -1;
+            }
+            permits--;
+            return wait;
+        }
+
+        @Override
+        public String toString()
+        {
+            return permitsPerSecond + " requests per second to " + bucketName + "/" + prefix;
+        }
+    }
+}
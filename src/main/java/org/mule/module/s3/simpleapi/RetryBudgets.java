@@ -0,0 +1,85 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * The retry budgets of the operations of one or more
+ * {@link RetryingSimpleAmazonS3}s. Sharing them bounds the retries of all the
+ * clients together, so that a retry storm is not multiplied by the number of
+ * clients.
+ */
+public final class RetryBudgets
+{
+    private static final double RETRY_BUDGET_RATIO = 0.1;
+
+    private final ConcurrentMap<String, RetryBudget> budgets = new ConcurrentHashMap<String, RetryBudget>();
+    private final int size;
+
+    /**
+     * @param size the maximum number of retries of an operation that can be made
+     *            in a row without successful calls in between
+     */
+    public RetryBudgets(int size)
+    {
+        Validate.isTrue(size >= 0, "Retry budget must not be negative");
+        this.size = size;
+    }
+
+    RetryBudget get(String operation)
+    {
+        RetryBudget budget = budgets.get(operation);
+        if (budget == null)
+        {
+            RetryBudget newBudget = new RetryBudget(size);
+            budget = budgets.putIfAbsent(operation, newBudget);
+            if (budget == null)
+            {
+                budget = newBudget;
+            }
+        }
+        return budget;
+    }
+
+    /**
+     * The retries an operation can still make. It starts full
+     */
+    static final class RetryBudget
+    {
+        private final double maxTokens;
+        private double tokens;
+
+        public RetryBudget(int maxTokens)
+        {
+            this.maxTokens = maxTokens;
+            this.tokens = maxTokens;
+        }
+
+        public synchronized void deposit()
+        {
+            tokens = Math.min(maxTokens, tokens + RETRY_BUDGET_RATIO);
+        }
+
+        public synchronized boolean withdraw()
+        {
+            if (tokens < 1)
+            {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+}
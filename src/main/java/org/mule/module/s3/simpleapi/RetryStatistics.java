@@ -0,0 +1,71 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+/**
+ * A snapshot of the activity of a {@link RetryingSimpleAmazonS3}
+ */
+public final class RetryStatistics
+{
+    private final long throttled;
+    private final long retries;
+    private final long giveUps;
+    private final long budgetExhaustions;
+
+    public RetryStatistics(long throttled, long retries, long giveUps, long budgetExhaustions)
+    {
+        this.throttled = throttled;
+        this.retries = retries;
+        this.giveUps = giveUps;
+        this.budgetExhaustions = budgetExhaustions;
+    }
+
+    /**
+     * @return the number of calls that failed because S3 throttled them
+     */
+    public long getThrottled()
+    {
+        return throttled;
+    }
+
+    /**
+     * @return the number of retried calls
+     */
+    public long getRetries()
+    {
+        return retries;
+    }
+
+    /**
+     * @return the number of calls that failed with a retryable error, but were not
+     *         retried again, either because they ran out of retries or because
+     *         the retry budget of their operation was exhausted
+     */
+    public long getGiveUps()
+    {
+        return giveUps;
+    }
+
+    /**
+     * @return the number of give ups caused by an exhausted retry budget
+     */
+    public long getBudgetExhaustions()
+    {
+        return budgetExhaustions;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RetryStatistics[throttled " + throttled + ", retries " + retries + ", give ups " + giveUps
+               + ", budget exhaustions " + budgetExhaustions + "]";
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import org.mule.module.s3.simpleapi.SimpleAmazonS3.S3ObjectContent;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Retries the calls of a {@link SimpleAmazonS3} that fail with transient errors -
+ * throttling responses, server errors and I/O errors - waiting between attempts
+ * with exponential backoff and full jitter: each wait is a random time between
+ * zero and an exponentially growing limit, so clients throttled at the same time
+ * do not retry at the same time either.
+ * <p>
+ * Calls are retried according to their operation:
+ * </p>
+ * <ul>
+ * <li>Idempotent operations are retried on any transient error.</li>
+ * <li>Non idempotent operations, such as creating buckets, are retried only
+ * when throttled, as S3 does not perform throttled requests.</li>
+ * <li>Object creations are retried only if their content is repeatable, such
+ * as a file, as streams can not be read again.</li>
+ * </ul>
+ * <p>
+ * Retries of each operation are limited by a budget: each retry spends a
+ * token, and each successful call earns a tenth of one, up to the budget size.
+ * While an operation fails persistently, its budget runs out and its calls stop
+ * being retried, so retries do not multiply the load of an already overloaded
+ * service. Budgets can be shared by several clients, see
+ * {@link #setRetryBudgets(RetryBudgets)}.
+ * </p>
+ * <p>
+ * Operations that answer lazy listings or streams are retried only up to the
+ * point they answer; requests made while they are consumed are not.
+ * </p>
+ */
+public final class RetryingSimpleAmazonS3 extends SimpleAmazonS3Decorator
+{
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_BASE_DELAY = 100;
+    public static final long DEFAULT_MAX_DELAY = 20000;
+    public static final int DEFAULT_RETRY_BUDGET = 20;
+    private static final Set<String> NON_IDEMPOTENT_OPERATIONS = new HashSet<String>(Arrays.asList(
+        "createBucket", "copyObjects"));
+
+    private final Random random = new Random();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong giveUps = new AtomicLong();
+    private final AtomicLong budgetExhaustions = new AtomicLong();
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long baseDelay = DEFAULT_BASE_DELAY;
+    private long maxDelay = DEFAULT_MAX_DELAY;
+    private volatile RetryBudgets budgets = new RetryBudgets(DEFAULT_RETRY_BUDGET);
+
+    public RetryingSimpleAmazonS3(@NotNull SimpleAmazonS3 delegate)
+    {
+        super(delegate);
+    }
+
+    @Override
+    protected Object invoke(Method method, Object[] args) throws Throwable
+    {
+        RetryBudgets.RetryBudget budget = budgets.get(method.getName());
+        for (int attempt = 0;; attempt++)
+        {
+            try
+            {
+                Object result = proceed(method, args);
+                budget.deposit();
+                return result;
+            }
+            catch (AmazonClientException e)
+            {
+                if (isThrottling(e))
+                {
+                    throttled.incrementAndGet();
+                }
+                if (!isRetryable(method, args, e))
+                {
+                    throw e;
+                }
+                if (attempt >= maxRetries)
+                {
+                    giveUps.incrementAndGet();
+                    throw e;
+                }
+                if (!budget.withdraw())
+                {
+                    budgetExhaustions.incrementAndGet();
+                    giveUps.incrementAndGet();
+                    throw e;
+                }
+                retries.incrementAndGet();
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    public RetryStatistics getStatistics()
+    {
+        return new RetryStatistics(throttled.get(), retries.get(), giveUps.get(), budgetExhaustions.get());
+    }
+
+    /**
+     * Answers whether the given failure is a throttling response, which S3 answers
+     * when it is receiving requests faster than it can serve them
+     */
+    static boolean isThrottling(Throwable e)
+    {
+        if (!(e instanceof AmazonServiceException))
+        {
+            return false;
+        }
+        AmazonServiceException serviceException = (AmazonServiceException) e;
+        return serviceException.getStatusCode() == 503 || "SlowDown".equals(serviceException.getErrorCode());
+    }
+
+    private static boolean isTransient(AmazonClientException e)
+    {
+        if (isThrottling(e))
+        {
+            return true;
+        }
+        if (e instanceof AmazonServiceException)
+        {
+            AmazonServiceException serviceException = (AmazonServiceException) e;
+            return serviceException.getStatusCode() >= 500
+                   || "RequestTimeout".equals(serviceException.getErrorCode());
+        }
+        return e.getCause() instanceof IOException;
+    }
+
+    private static boolean isRetryable(Method method, Object[] args, AmazonClientException e)
+    {
+        if (method.getName().equals("createObject"))
+        {
+            return ((S3ObjectContent) args[1]).isRepeatable() && isTransient(e);
+        }
+        if (NON_IDEMPOTENT_OPERATIONS.contains(method.getName()))
+        {
+            return isThrottling(e);
+        }
+        return isTransient(e);
+    }
+
+    private void backOff(int attempt, AmazonClientException e)
+    {
+        long limit = Math.min(maxDelay, baseDelay * (1L << Math.min(attempt, 30)));
+        long delay;
+        synchronized (random)
+        {
+            delay = (long) (random.nextDouble() * limit);
+        }
+        try
+        {
+            Thread.sleep(delay);
+        }
+        catch (InterruptedException interrupted)
+        {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the maximum number of times a call is retried. Defaults to
+     * {@link #DEFAULT_MAX_RETRIES}
+     */
+    public void setMaxRetries(int maxRetries)
+    {
+        Validate.isTrue(maxRetries >= 0, "Max retries must not be negative");
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Sets the limit, in milliseconds, of the wait before the first retry, which
+     * doubles on each following one. Defaults to {@link #DEFAULT_BASE_DELAY}
+     */
+    public void setBaseDelay(long baseDelay)
+    {
+        Validate.isTrue(baseDelay > 0, "Retry base delay must be greater than zero");
+        this.baseDelay = baseDelay;
+    }
+
+    /**
+     * Sets the maximum wait, in milliseconds, before any retry. Defaults to
+     * {@link #DEFAULT_MAX_DELAY}
+     */
+    public void setMaxDelay(long maxDelay)
+    {
+        Validate.isTrue(maxDelay > 0, "Retry max delay must be greater than zero");
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Sets the maximum number of retries of an operation that can be made in a row
+     * without successful calls in between. Defaults to
+     * {@link #DEFAULT_RETRY_BUDGET}. Budgets of already called operations are
+     * reset
+     */
+    public void setRetryBudget(int retryBudget)
+    {
+        this.budgets = new RetryBudgets(retryBudget);
+    }
+
+    /**
+     * Sets the budgets the retries are spent from, so that they can be shared with
+     * other clients, and bound the retries of all of them
+     */
+    public void setRetryBudgets(@NotNull RetryBudgets budgets)
+    {
+        Validate.notNull(budgets);
+        this.budgets = budgets;
+    }
+}
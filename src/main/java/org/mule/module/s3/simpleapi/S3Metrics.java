@@ -0,0 +1,187 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * The metrics of the calls to the operations of a {@link SimpleAmazonS3}, as
+ * recorded by a {@link MetricsSimpleAmazonS3}. They can be published over JMX,
+ * as an MBean named org.mule.module.s3:type=S3Metrics,name=&lt;name&gt; for the
+ * whole client, along with one for each operation, with an additional operation
+ * key.
+ */
+public final class S3Metrics implements S3MetricsMXBean
+{
+    public static final String DOMAIN = "org.mule.module.s3";
+
+    private final Map<String, OperationMetrics> operations;
+    private final AtomicLong bytesUploaded = new AtomicLong();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private final List<ObjectName> registeredNames = new ArrayList<ObjectName>();
+    private MBeanServer server;
+
+    public S3Metrics()
+    {
+        Map<String, OperationMetrics> operations = new TreeMap<String, OperationMetrics>();
+        for (Method method : SimpleAmazonS3.class.getMethods())
+        {
+            if (!operations.containsKey(method.getName()))
+            {
+                operations.put(method.getName(), new OperationMetrics());
+            }
+        }
+        this.operations = Collections.unmodifiableMap(operations);
+    }
+
+    /**
+     * @return the metrics of the given operation, or null if there is no such
+     *         operation
+     */
+    public OperationMetrics getOperationMetrics(String operation)
+    {
+        return operations.get(operation);
+    }
+
+    /**
+     * @return the non null metrics of all the operations, by operation name
+     */
+    public Map<String, OperationMetrics> getOperationMetrics()
+    {
+        return operations;
+    }
+
+    public long getRequests()
+    {
+        long requests = 0;
+        for (OperationMetrics operation : operations.values())
+        {
+            requests += operation.getRequests();
+        }
+        return requests;
+    }
+
+    public long getErrors()
+    {
+        long errors = 0;
+        for (OperationMetrics operation : operations.values())
+        {
+            errors += operation.getErrors();
+        }
+        return errors;
+    }
+
+    public int getInFlight()
+    {
+        int inFlight = 0;
+        for (OperationMetrics operation : operations.values())
+        {
+            inFlight += operation.getInFlight();
+        }
+        return inFlight;
+    }
+
+    public long getBytesUploaded()
+    {
+        return bytesUploaded.get();
+    }
+
+    public long getBytesDownloaded()
+    {
+        return bytesDownloaded.get();
+    }
+
+    public void reset()
+    {
+        for (OperationMetrics operation : operations.values())
+        {
+            operation.reset();
+        }
+        bytesUploaded.set(0);
+        bytesDownloaded.set(0);
+    }
+
+    void addBytesUploaded(long bytes)
+    {
+        bytesUploaded.addAndGet(bytes);
+    }
+
+    void addBytesDownloaded(long bytes)
+    {
+        bytesDownloaded.addAndGet(bytes);
+    }
+
+    /**
+     * Publishes these metrics in the given server, under the given name. If
+     * publishing fails, no MBean is left registered.
+     */
+    public synchronized void register(@NotNull MBeanServer server, @NotNull String name) throws JMException
+    {
+        Validate.notNull(server);
+        Validate.notNull(name);
+        Validate.isTrue(this.server == null, "Metrics are already registered");
+        this.server = server;
+        String baseName = DOMAIN + ":type=S3Metrics,name=" + ObjectName.quote(name);
+        try
+        {
+            register(new ObjectName(baseName), this);
+            for (Map.Entry<String, OperationMetrics> operation : operations.entrySet())
+            {
+                register(new ObjectName(baseName + ",operation=" + operation.getKey()), operation.getValue());
+            }
+        }
+        catch (JMException e)
+        {
+            unregister();
+            throw e;
+        }
+    }
+
+    private void register(ObjectName objectName, Object mbean) throws JMException
+    {
+        server.registerMBean(mbean, objectName);
+        registeredNames.add(objectName);
+    }
+
+    /**
+     * Unpublishes these metrics, if they were published. MBeans that are no
+     * longer registered are ignored.
+     */
+    public synchronized void unregister()
+    {
+        for (ObjectName objectName : registeredNames)
+        {
+            try
+            {
+                server.unregisterMBean(objectName);
+            }
+            catch (JMException e)
+            {
+                // already unregistered
+            }
+        }
+        registeredNames.clear();
+        server = null;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+/**
+ * The management interface of the metrics of all the operations of a
+ * {@link SimpleAmazonS3}
+ */
+public interface S3MetricsMXBean
+{
+    /**
+     * @return the number of calls to all operations, either successful or not
+     */
+    long getRequests();
+
+    /**
+     * @return the number of failed calls to all operations
+     */
+    long getErrors();
+
+    /**
+     * @return the number of calls to all operations currently being performed
+     */
+    int getInFlight();
+
+    /**
+     * @return the number of bytes of the contents of successfully created objects
+     */
+    long getBytesUploaded();
+
+    /**
+     * @return the number of bytes read from object contents
+     */
+    long getBytesDownloaded();
+
+    /**
+     * Clears all the recorded calls and bytes
+     */
+    void reset();
+}
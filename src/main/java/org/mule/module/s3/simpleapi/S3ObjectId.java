@@ -80,4 +80,21 @@ public class S3ObjectId
     {
         return versionId != null;
     }
+
+    /**
+     * @return a string that identifies this object id, suitable for keying caches
+     */
+    String toCacheKey()
+    {
+        // neither bucket names nor version ids contain new lines
+        return bucketName + '\n' + (versionId != null ? versionId : "") + '\n' + key;
+    }
+
+    /**
+     * @return the id of the latest version of this object
+     */
+    S3ObjectId toUnversioned()
+    {
+        return isVersioned() ? new S3ObjectId(bucketName, key) : this;
+    }
 }
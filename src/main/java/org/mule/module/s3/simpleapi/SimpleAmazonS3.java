@@ -15,6 +15,7 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.Bucket;
 import com.amazonaws.services.s3.model.BucketWebsiteConfiguration;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CopyObjectResult;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
@@ -22,6 +23,7 @@ import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.model.S3VersionSummary;
 import com.amazonaws.services.s3.model.StorageClass;
 
+import java.io.File;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.Date;
@@ -78,18 +80,201 @@ public interface SimpleAmazonS3
     void deleteBucket(@NotNull String bucketName);
 
     /**
-     * Deletes a Bucket, deleting also all its contents if necessary
+     * Deletes a Bucket, deleting also all its contents if necessary. Contents are
+     * deleted in batches, using multi-object delete requests.
      * 
      * @see AmazonS3#deleteBucket(com.amazonaws.services.s3.model.DeleteBucketRequest)
      * @param bucketName
+     * @throws BulkDeleteException if any object could not be deleted, in which
+     *             case the bucket is not deleted either
      */
     void deleteBucketAndObjects(@NotNull String bucketName);
 
+    /**
+     * Deletes all the objects under the given prefix of a bucket, using
+     * multi-object delete requests. Listing of objects proceeds while already
+     * listed ones are being deleted.
+     * 
+     * @param bucketName
+     * @param prefix the prefix of the keys to delete. An empty prefix deletes all
+     *            the objects of the bucket
+     * @return the number of deleted objects, and the detail of those that could not
+     *         be deleted
+     */
+    @NotNull
+    BulkDeleteResult deleteObjects(@NotNull String bucketName, @NotNull String prefix);
+
+    /**
+     * Deletes the given objects, using multi-object delete requests. Ids are
+     * consumed while already consumed ones are being deleted.
+     * 
+     * @param objectIds the ids of the objects to delete. If versioned, the given
+     *            version is deleted
+     * @return the number of deleted objects, and the detail of those that could not
+     *         be deleted
+     */
+    @NotNull
+    BulkDeleteResult deleteObjects(@NotNull Iterable<S3ObjectId> objectIds);
+
+    /**
+     * Copies all the objects under the given prefix of a bucket, using
+     * server-side copies, several of them at the same time. Listing of objects
+     * proceeds while already listed ones are being copied. Each object is copied
+     * as in {@link #copyObject(S3ObjectId, S3ObjectId, ConditionalConstraints,
+     * CannedAccessControlList, StorageClass, Map)}, so its metadata is copied too.
+     * 
+     * @param sourceBucketName the bucket of the objects to copy
+     * @param sourcePrefix the prefix of the keys to copy. An empty prefix copies
+     *            all the objects of the bucket
+     * @param destinationBucketName the bucket to copy the objects to
+     * @param keyMapping the mapping of source keys to destination keys
+     * @param acl the acl of the destination objects
+     * @param storageClass the storage class of the destination objects
+     * @return the number of copied objects, and the detail of those that could not
+     *         be copied
+     */
+    @NotNull
+    BulkCopyResult copyObjects(@NotNull String sourceBucketName,
+                               @NotNull String sourcePrefix,
+                               @NotNull String destinationBucketName,
+                               @NotNull KeyMapping keyMapping,
+                               CannedAccessControlList acl,
+                               StorageClass storageClass);
+
     @NotNull
     Iterable<S3ObjectSummary> listObjects(@NotNull String bucketName, String prefix);
+
+    /**
+     * Lazily lists the objects for a given prefix, rolling up keys that contain the
+     * given delimiter after the prefix into common prefixes.
+     * 
+     * @param bucketName
+     * @param prefix the prefix of the objects to list, or null
+     * @param delimiter the delimiter of the key hierarchy, or null for listing all
+     *            the objects under the prefix
+     * @param marker the key to start listing after, or null for listing from the
+     *            beginning
+     * @return a lazy iterable of the objects that were not rolled up
+     * @see #listCommonPrefixes(String, String, String)
+     */
+    @NotNull
+    Iterable<S3ObjectSummary> listObjects(@NotNull String bucketName,
+                                          String prefix,
+                                          String delimiter,
+                                          String marker);
+
+    /**
+     * Lists a single page of the objects for a given prefix.
+     * 
+     * @param bucketName
+     * @param prefix the prefix of the objects to list, or null
+     * @param delimiter the delimiter of the key hierarchy, or null
+     * @param marker the key to start listing after, usually the next marker of a
+     *            previous page, or null for listing the first page
+     * @param maxKeys the maximum number of entries of the page, or null for the S3
+     *            default of 1000
+     * @return the page, and the marker of the following one
+     */
+    @NotNull
+    ListingPage<S3ObjectSummary> listObjectsPage(@NotNull String bucketName,
+                                                 String prefix,
+                                                 String delimiter,
+                                                 String marker,
+                                                 Integer maxKeys);
+
+    /**
+     * Lazily lists the objects for a given prefix, a page at a time. Unlike
+     * {@link #listObjects(String, String, String, String)}, the answered iterable is not a
+     * collection, and consumers only need to hold a page in memory at a time.
+     * 
+     * @param bucketName
+     * @param prefix the prefix of the objects to list, or null
+     * @param delimiter the delimiter of the key hierarchy, or null
+     * @param marker the key to start listing after, or null
+     * @param pageSize the maximum number of entries per page, or null for the S3
+     *            default of 1000
+     * @return a lazy iterable of pages
+     */
+    @NotNull
+    Iterable<ListingPage<S3ObjectSummary>> listObjectPages(@NotNull String bucketName,
+                                                           String prefix,
+                                                           String delimiter,
+                                                           String marker,
+                                                           Integer pageSize);
+
+    /**
+     * Lazily lists the common prefixes of the keys under a given prefix, that is,
+     * the distinct substrings of the keys from their beginning up to the first
+     * occurrence of the given delimiter after the prefix.
+     * 
+     * @param bucketName
+     * @param prefix the prefix of the keys, or null
+     * @param delimiter the delimiter of the key hierarchy
+     * @return a lazy iterable of common prefixes
+     */
+    @NotNull
+    Iterable<String> listCommonPrefixes(@NotNull String bucketName, String prefix, @NotNull String delimiter);
+
+    /**
+     * Lazily lists the objects for a given prefix, splitting the key space in
+     * shards that are listed at the same time.
+     * 
+     * @param bucketName
+     * @param prefix the prefix of the objects to list, or null
+     * @param boundaries the keys at which the key space is split, each of them being
+     *            the last key of a shard. If null, the key space is split at the
+     *            common prefixes of the given prefix, using / as delimiter
+     * @param ordered whether objects must be answered in key order. Otherwise they
+     *            are answered as soon as they are listed
+     * @return a lazy iterable
+     */
+    @NotNull
+    Iterable<S3ObjectSummary> listObjectsInParallel(@NotNull String bucketName,
+                                                    String prefix,
+                                                    List<String> boundaries,
+                                                    boolean ordered);
     
     @NotNull
     Iterable<S3VersionSummary> listObjectVersions(@NotNull String bucketName);
+
+    /**
+     * Lazily lists the versions of the objects of a bucket, starting after the given
+     * markers
+     * 
+     * @param bucketName
+     * @param prefix the prefix of the objects whose versions to list, or null
+     * @param keyMarker the key to start listing after, or null for listing from the
+     *            beginning
+     * @param versionIdMarker the version of the key marker to start listing after,
+     *            or null for listing all the versions of the keys after the key
+     *            marker
+     * @return a lazy iterable
+     */
+    @NotNull
+    Iterable<S3VersionSummary> listObjectVersions(@NotNull String bucketName,
+                                                  String prefix,
+                                                  String keyMarker,
+                                                  String versionIdMarker);
+
+    /**
+     * Lists a single page of the versions of the objects of a bucket.
+     * 
+     * @param bucketName
+     * @param prefix the prefix of the objects whose versions to list, or null
+     * @param keyMarker the key to start listing after, usually the next marker of
+     *            a previous page, or null for listing the first page
+     * @param versionIdMarker the version of the key marker to start listing after,
+     *            usually the next version id marker of a previous page, or null
+     * @param maxKeys the maximum number of entries of the page, or null for the S3
+     *            default of 1000
+     * @return the page, and the markers of the following one
+     */
+    @NotNull
+    ListingPage<S3VersionSummary> listObjectVersionsPage(@NotNull String bucketName,
+                                                         String prefix,
+                                                         String keyMarker,
+                                                         String versionIdMarker,
+                                                         Integer maxKeys);
     
     void deleteBucketPolicy(@NotNull String bucketName);
 
@@ -121,7 +306,12 @@ public interface SimpleAmazonS3
 
     /**
      * Creates an object, uploading its contents, and optionally setting its
-     * {@link CannedAccessControlList} and {@link StorageClass}
+     * {@link CannedAccessControlList} and {@link StorageClass}. Implementations may
+     * upload large contents in several parts, using an S3 multipart upload, which
+     * is transparent to callers: the md5 of each part is sent along with it, and
+     * the content md5, if any, is verified against the whole uploaded content
+     * before completing the upload. Contents of unknown length - that is, of null
+     * length - are uploaded while read, while a length of 0 is sent as such.
      * 
      * @param objectId the id of the object to be created. If its versioned, its
      *            version is ignored
@@ -159,10 +349,12 @@ public interface SimpleAmazonS3
      *          If not matched, no copy is performed
      * @param acl
      * @param destinationUserMetadata 
-     * @return the version id of the destination object, if versioning is enabled
+     * @return the result of the copy, whose version id is the one of the
+     *         destination object, if versioning is enabled. Null if conditional
+     *         constraints were not met
      * @see AmazonS3#copyObject(com.amazonaws.services.s3.model.CopyObjectRequest)
      */
-    String copyObject(@NotNull S3ObjectId source,
+    CopyObjectResult copyObject(@NotNull S3ObjectId source,
                       @NotNull S3ObjectId destination,
                       @NotNull ConditionalConstraints conditionalConstraints,
                       CannedAccessControlList acl, 
@@ -183,6 +375,25 @@ public interface SimpleAmazonS3
     @NotNull
     URI createObjectPresignedUri(@NotNull S3ObjectId objectId, Date expiration, HttpMethod method);
 
+    /**
+     * Creates presigned URLs for accessing the objects of the given ids, all of
+     * them with the same http method and date expiration. URLs are signed
+     * locally, but signing them in a single invocation - and reusing them if the
+     * presigned URI cache is enabled - saves most of the overhead of signing them
+     * one by one.
+     * 
+     * @param objectIds the ids of the objects
+     * @param expiration if no expiration is supplied, a default expiration of 15
+     *            minutes is used
+     * @param method if no method is supplied, PUT method is assumed
+     * @return the URIs, in the same order as the given object ids
+     * @see #createObjectPresignedUri(S3ObjectId, Date, HttpMethod)
+     */
+    @NotNull
+    List<URI> createObjectPresignedUris(@NotNull Iterable<S3ObjectId> objectIds,
+                                        Date expiration,
+                                        HttpMethod method);
+
     /**
      * Answers the object content a given {@link S3ObjectId}.
      * 
@@ -195,6 +406,54 @@ public interface SimpleAmazonS3
      */
     InputStream getObjectContent(@NotNull S3ObjectId objectId, @NotNull ConditionalConstraints conditionalConstraints);
 
+    /**
+     * Answers the object content of a given {@link S3ObjectId}, like
+     * {@link #getObjectContent(S3ObjectId, ConditionalConstraints)}, but fetching it
+     * in several byte ranges, on concurrent connections. Ranges are reassembled in
+     * order by the returned stream, which buffers only a bounded number of them.
+     * All ranges are requested for the same object ETag, so changes made to the
+     * object while it is being read make the stream fail instead of mixing both
+     * contents.
+     * 
+     * @param objectId
+     * @param conditionalConstraints
+     * @return an input stream to the contents of the object, or null, if the
+     *         conditional request constraints were not met
+     */
+    InputStream getObjectContentInParallel(@NotNull S3ObjectId objectId,
+                                           @NotNull ConditionalConstraints conditionalConstraints);
+
+    /**
+     * Answers a range of bytes of the object content of a given {@link S3ObjectId}.
+     * Suffix ranges need the object length in order to be located, so they require
+     * an extra request for retrieving the object metadata.
+     * 
+     * @param objectId
+     * @param range the range of bytes to retrieve
+     * @param conditionalConstraints
+     * @return an input stream to the given range of the object contents, or null,
+     *         if the conditional request constraints were not met
+     * @see AmazonS3#getObject(com.amazonaws.services.s3.model.GetObjectRequest)
+     */
+    InputStream getObjectRange(@NotNull S3ObjectId objectId,
+                               @NotNull ByteRange range,
+                               @NotNull ConditionalConstraints conditionalConstraints);
+
+    /**
+     * Downloads the object content of a given {@link S3ObjectId} to a local file,
+     * fetching several byte ranges of it on concurrent connections, and writing
+     * each one directly at its position in the file. The file is overwritten if it
+     * already exists.
+     * 
+     * @param objectId
+     * @param conditionalConstraints
+     * @param destination the file where to write the contents of the object
+     * @return true, or false, if the conditional request constraints were not met
+     */
+    boolean downloadObject(@NotNull S3ObjectId objectId,
+                           @NotNull ConditionalConstraints conditionalConstraints,
+                           @NotNull File destination);
+
     /**
      * Retrieves an object from S3 given its id. <strong>Warning: use this method
      * with caution</strong>, as the retrieved object has an already open inputStream
@@ -218,6 +477,33 @@ public interface SimpleAmazonS3
     @NotNull
     ObjectMetadata getObjectMetadata(@NotNull S3ObjectId objectId);
 
+    /**
+     * Answers the usage statistics of the object metadata cache, which are all zero
+     * if the cache is disabled
+     * 
+     * @return a snapshot of the statistics
+     */
+    @NotNull
+    CacheStatistics getMetadataCacheStatistics();
+
+    /**
+     * Answers the usage statistics of the object content cache, which are all zero
+     * if the cache is disabled
+     * 
+     * @return a snapshot of the statistics
+     */
+    @NotNull
+    CacheStatistics getContentCacheStatistics();
+
+    /**
+     * Answers the usage statistics of the presigned URI cache, which are all zero
+     * if the cache is disabled
+     * 
+     * @return a snapshot of the statistics
+     */
+    @NotNull
+    CacheStatistics getPresignedUriCacheStatistics();
+
     void setBucketVersioningStatus(@NotNull String bucketName, @NotNull VersioningStatus versioningStatus);
 
     @NotNull
@@ -239,6 +525,24 @@ public interface SimpleAmazonS3
          * @return a new {@link PutObjectRequest}
          */
         PutObjectRequest createPutObjectRequest();
+
+        /**
+         * Answers whether the content can be read again from the start by
+         * creating another request, so that a failed upload can be retried
+         */
+        boolean isRepeatable();
+    }
+
+    /**
+     * A mapping of the keys of copied objects to the keys of their copies
+     */
+    public interface KeyMapping
+    {
+        /**
+         * @param sourceKey the key of the object to copy
+         * @return the key of the copy, or null if the object must not be copied
+         */
+        String map(String sourceKey);
     }
 
 }
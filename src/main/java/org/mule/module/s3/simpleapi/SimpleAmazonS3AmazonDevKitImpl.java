@@ -11,44 +11,136 @@
 package org.mule.module.s3.simpleapi;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
 import com.amazonaws.services.s3.model.Bucket;
 import com.amazonaws.services.s3.model.BucketVersioningConfiguration;
 import com.amazonaws.services.s3.model.BucketWebsiteConfiguration;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyObjectResult;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.CopyPartResult;
 import com.amazonaws.services.s3.model.CreateBucketRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
 import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ListVersionsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.model.S3VersionSummary;
 import com.amazonaws.services.s3.model.SetBucketVersioningConfigurationRequest;
 import com.amazonaws.services.s3.model.StorageClass;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.model.VersionListing;
+import com.amazonaws.util.BinaryUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.AbstractCollection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.validation.constraints.NotNull;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.Validate;
 
 public class SimpleAmazonS3AmazonDevKitImpl implements SimpleAmazonS3
 {
+    /** 16 MB */
+    public static final long DEFAULT_MULTIPART_UPLOAD_THRESHOLD = 16 * 1024 * 1024;
+    /** 8 MB */
+    public static final long DEFAULT_MULTIPART_UPLOAD_PART_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_MULTIPART_UPLOAD_CONCURRENCY = 4;
+    /** 8 MB */
+    public static final long DEFAULT_DOWNLOAD_PART_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_DOWNLOAD_CONCURRENCY = 4;
+    public static final int DEFAULT_DELETE_CONCURRENCY = 4;
+    public static final int DEFAULT_COPY_CONCURRENCY = 8;
+    /** 5 GB, the largest object a single request can copy */
+    public static final long DEFAULT_MULTIPART_COPY_THRESHOLD = 5L * 1024 * 1024 * 1024;
+    public static final long DEFAULT_MULTIPART_COPY_PART_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_MULTIPART_COPY_CONCURRENCY = 4;
+    public static final int DEFAULT_LISTING_PREFETCH_PAGES = 0;
+    public static final int DEFAULT_LISTING_CONCURRENCY = 8;
+    public static final long DEFAULT_METADATA_CACHE_TTL = 60;
+    public static final long DEFAULT_CONTENT_CACHE_MAX_SIZE = 256 * 1024 * 1024;
+    public static final long DEFAULT_PRESIGNED_URI_CACHE_MARGIN = 60;
+    /** The expiration AmazonS3 uses for pre-signed URLs, if none is given */
+    private static final long DEFAULT_PRESIGNED_URI_EXPIRATION = 15 * 60 * 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** The maximum number of parts S3 accepts for a single multipart upload */
+    private static final int MAX_UPLOAD_PARTS = 10000;
+    /** The minimum size of any part of a multipart upload but the last one */
+    private static final long MIN_UPLOAD_PART_SIZE = 5 * 1024 * 1024;
+    /** The maximum length of the source object of a single request copy */
+    private static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+    /**
+     * The headers of an object that a multipart copy carries over, that is, all
+     * of those that can be set on upload but its length and md5, in lower case
+     */
+    private static final Set<String> COPIED_HEADERS = new HashSet<String>(Arrays.asList("cache-control",
+        "content-disposition", "content-encoding", "content-language", "content-type", "expires",
+        "x-amz-server-side-encryption", "x-amz-website-redirect-location"));
+    /** The number of parts after which the part size of contents of unknown length doubles */
+    private static final int STREAM_PART_SIZE_DOUBLING_PARTS = 2000;
+    /** The maximum number of keys S3 accepts in a single multi-object delete request */
+    private static final int MAX_DELETE_BATCH_SIZE = 1000;
+
     private final AmazonS3 s3;
+    private long multipartUploadThreshold = DEFAULT_MULTIPART_UPLOAD_THRESHOLD;
+    private long multipartUploadPartSize = DEFAULT_MULTIPART_UPLOAD_PART_SIZE;
+    private int multipartUploadConcurrency = DEFAULT_MULTIPART_UPLOAD_CONCURRENCY;
+    private long downloadPartSize = DEFAULT_DOWNLOAD_PART_SIZE;
+    private int downloadConcurrency = DEFAULT_DOWNLOAD_CONCURRENCY;
+    private int deleteConcurrency = DEFAULT_DELETE_CONCURRENCY;
+    private int copyConcurrency = DEFAULT_COPY_CONCURRENCY;
+    private long multipartCopyThreshold = DEFAULT_MULTIPART_COPY_THRESHOLD;
+    private long multipartCopyPartSize = DEFAULT_MULTIPART_COPY_PART_SIZE;
+    private int multipartCopyConcurrency = DEFAULT_MULTIPART_COPY_CONCURRENCY;
+    private int listingPrefetchPages = DEFAULT_LISTING_PREFETCH_PAGES;
+    private int listingConcurrency = DEFAULT_LISTING_CONCURRENCY;
+    private int maxConnections = ClientConfiguration.DEFAULT_MAX_CONNECTIONS;
+    private MetadataCache metadataCache;
+    private ContentCache contentCache;
+    private PresignedUriCache presignedUriCache;
+    private BucketRegionCache bucketRegionCache = new BucketRegionCache(0);
 
     public SimpleAmazonS3AmazonDevKitImpl(@NotNull AmazonS3 s3)
     {
@@ -56,269 +148,1917 @@ public class SimpleAmazonS3AmazonDevKitImpl implements SimpleAmazonS3
         this.s3 = s3;
     }
 
-    // 1.1
-    public List<Bucket> listBuckets()
+    // 1.1
+    public List<Bucket> listBuckets()
+    {
+        return s3.listBuckets();
+    }
+
+    // 2.1
+    public Bucket createBucket(@NotNull String bucketName, Region region, CannedAccessControlList acl)
+    {
+        Validate.notNull(bucketName);
+        CreateBucketRequest request = new CreateBucketRequest(bucketName, region.toS3Equivalent());
+        request.setCannedAcl(acl);
+        Bucket bucket = s3.createBucket(request);
+        bucketRegionCache.put(bucketName, region);
+        return bucket;
+    }
+
+    // 2.2
+    public void deleteBucket(@NotNull String bucketName)
+    {
+        Validate.notNull(bucketName);
+        s3.deleteBucket(bucketName);
+        bucketRegionCache.invalidate(bucketName);
+    }
+
+    public void deleteBucketAndObjects(@NotNull String bucketName)
+
+    {
+        Validate.notNull(bucketName);
+        BulkDeleteResult result;
+        if (!s3.getBucketVersioningConfiguration(bucketName).getStatus().equals(
+            BucketVersioningConfiguration.OFF))
+        {
+            result = deleteInBatches(versionIds(bucketName, listObjectVersions(bucketName).iterator()));
+        }
+        else
+        {
+            result = deleteInBatches(objectIds(bucketName, listObjects(bucketName, null).iterator()));
+        }
+        if (!result.isSuccessful())
+        {
+            throw new BulkDeleteException("Could not delete bucket " + bucketName, result);
+        }
+        deleteBucket(bucketName);
+    }
+
+    public BulkDeleteResult deleteObjects(@NotNull String bucketName, @NotNull String prefix)
+    {
+        Validate.notNull(bucketName);
+        Validate.notNull(prefix);
+        return deleteInBatches(objectIds(bucketName, listObjects(bucketName, prefix).iterator()));
+    }
+
+    public BulkDeleteResult deleteObjects(@NotNull Iterable<S3ObjectId> objectIds)
+    {
+        Validate.notNull(objectIds);
+        return deleteInBatches(objectIds.iterator());
+    }
+
+    /**
+     * Deletes the given objects using multi-object delete requests of up to
+     * {@link #MAX_DELETE_BATCH_SIZE} keys of the same bucket, sending up to
+     * {@link #deleteConcurrency} of them at the same time. Ids are consumed while
+     * batches are being deleted, so the given iterator may be lazily fetching them.
+     */
+    private BulkDeleteResult deleteInBatches(Iterator<S3ObjectId> objectIds)
+    {
+        final BulkDeleteResult result = new BulkDeleteResult();
+        ParallelTasks<BulkDeleteResult> tasks = new ParallelTasks<BulkDeleteResult>(deleteConcurrency)
+        {
+            @Override
+            protected void completed(BulkDeleteResult batchResult)
+            {
+                result.addAll(batchResult);
+            }
+        };
+        try
+        {
+            String bucketName = null;
+            List<KeyVersion> batch = new ArrayList<KeyVersion>();
+            while (objectIds.hasNext())
+            {
+                S3ObjectId objectId = objectIds.next();
+                if (!batch.isEmpty()
+                    && (batch.size() == MAX_DELETE_BATCH_SIZE || !objectId.getBucketName().equals(bucketName)))
+                {
+                    tasks.submit(deleteBatchTask(bucketName, batch));
+                    batch = new ArrayList<KeyVersion>();
+                }
+                bucketName = objectId.getBucketName();
+                batch.add(new KeyVersion(objectId.getKey(), objectId.getVersionId()));
+            }
+            if (!batch.isEmpty())
+            {
+                tasks.submit(deleteBatchTask(bucketName, batch));
+            }
+            tasks.awaitAll();
+            return result;
+        }
+        finally
+        {
+            tasks.shutdown();
+        }
+    }
+
+    private Callable<BulkDeleteResult> deleteBatchTask(final String bucketName, final List<KeyVersion> batch)
+    {
+        return new Callable<BulkDeleteResult>()
+        {
+            public BulkDeleteResult call()
+            {
+                BulkDeleteResult result = new BulkDeleteResult();
+                invalidateCaches(bucketName, batch);
+                try
+                {
+                    s3.deleteObjects(new DeleteObjectsRequest(bucketName).withKeys(batch).withQuiet(true));
+                    result.addDeleted(batch.size());
+                }
+                catch (MultiObjectDeleteException e)
+                {
+                    for (DeleteError error : e.getErrors())
+                    {
+                        result.addFailure(new BulkDeleteResult.Failure(error.getKey(), error.getVersionId(),
+                            error.getCode(), error.getMessage()));
+                    }
+                    result.addDeleted(batch.size() - e.getErrors().size());
+                }
+                catch (AmazonClientException e)
+                {
+                    for (KeyVersion key : batch)
+                    {
+                        result.addFailure(new BulkDeleteResult.Failure(key.getKey(), key.getVersion(),
+                            getErrorCode(e), e.getMessage()));
+                    }
+                }
+                finally
+                {
+                    invalidateCaches(bucketName, batch);
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Answers the S3 error code of a failed call, or null if it failed on the
+     * client side, for example because the connection was lost
+     */
+    private static String getErrorCode(AmazonClientException e)
+    {
+        return e instanceof AmazonServiceException ? ((AmazonServiceException) e).getErrorCode() : null;
+    }
+
+    public BulkCopyResult copyObjects(@NotNull String sourceBucketName,
+                                      @NotNull String sourcePrefix,
+                                      @NotNull final String destinationBucketName,
+                                      @NotNull KeyMapping keyMapping,
+                                      final CannedAccessControlList acl,
+                                      final StorageClass storageClass)
+    {
+        Validate.notNull(sourceBucketName);
+        Validate.notNull(sourcePrefix);
+        Validate.notNull(destinationBucketName);
+        Validate.notNull(keyMapping);
+        final BulkCopyResult result = new BulkCopyResult();
+        // objects copied in parts run their own part copies, so both levels share
+        // the connections of the pool
+        int concurrency = Math.min(copyConcurrency, maxConnections);
+        int partConcurrency = Math.max(1, Math.min(multipartCopyConcurrency, maxConnections / concurrency));
+        ParallelTasks<BulkCopyResult> tasks = new ParallelTasks<BulkCopyResult>(concurrency)
+        {
+            @Override
+            protected void completed(BulkCopyResult copyResult)
+            {
+                result.addAll(copyResult);
+            }
+        };
+        try
+        {
+            for (S3ObjectSummary summary : listObjects(sourceBucketName, sourcePrefix))
+            {
+                String destinationKey = keyMapping.map(summary.getKey());
+                if (destinationKey == null)
+                {
+                    result.addSkipped(1);
+                }
+                else
+                {
+                    tasks.submit(copyTask(new S3ObjectId(sourceBucketName, summary.getKey()), summary.getSize(),
+                        new S3ObjectId(destinationBucketName, destinationKey), acl, storageClass,
+                        partConcurrency));
+                }
+            }
+            tasks.awaitAll();
+            return result;
+        }
+        finally
+        {
+            tasks.shutdown();
+        }
+    }
+
+    private Callable<BulkCopyResult> copyTask(final S3ObjectId source,
+                                              final long sourceLength,
+                                              final S3ObjectId destination,
+                                              final CannedAccessControlList acl,
+                                              final StorageClass storageClass,
+                                              final int partConcurrency)
+    {
+        return new Callable<BulkCopyResult>()
+        {
+            public BulkCopyResult call()
+            {
+                BulkCopyResult result = new BulkCopyResult();
+                try
+                {
+                    copyObject(source, sourceLength, destination, ConditionalConstraints.from(null, null), acl,
+                        storageClass, null, partConcurrency);
+                    result.addCopied(1);
+                }
+                catch (AmazonClientException e)
+                {
+                    result.addFailure(new BulkCopyResult.Failure(source.getKey(), destination.getKey(),
+                        getErrorCode(e), e.getMessage()));
+                }
+                return result;
+            }
+        };
+    }
+
+    private static Iterator<S3ObjectId> objectIds(final String bucketName,
+                                                  final Iterator<S3ObjectSummary> summaries)
+    {
+        return new Iterator<S3ObjectId>()
+        {
+            public boolean hasNext()
+            {
+                return summaries.hasNext();
+            }
+
+            public S3ObjectId next()
+            {
+                return new S3ObjectId(bucketName, summaries.next().getKey());
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static Iterator<S3ObjectId> versionIds(final String bucketName,
+                                                   final Iterator<S3VersionSummary> summaries)
+    {
+        return new Iterator<S3ObjectId>()
+        {
+            public boolean hasNext()
+            {
+                return summaries.hasNext();
+            }
+
+            public S3ObjectId next()
+            {
+                S3VersionSummary summary = summaries.next();
+                return new S3ObjectId(bucketName, summary.getKey(), summary.getVersionId());
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public Iterable<S3ObjectSummary> listObjectsInParallel(@NotNull String bucketName,
+                                                           String prefix,
+                                                           List<String> boundaries,
+                                                           boolean ordered)
+    {
+        Validate.notNull(bucketName);
+        List<ParallelListing.Shard> shards;
+        if (boundaries != null)
+        {
+            shards = ParallelListing.splitAt(bucketName, prefix, boundaries);
+        }
+        else
+        {
+            shards = ParallelListing.splitAtCommonPrefixes(s3, bucketName, prefix, "/");
+        }
+        return new ParallelListing(s3, shards, ordered, listingConcurrency);
+    }
+
+    public Iterable<S3VersionSummary> listObjectVersions(@NotNull String bucketName)
+    {
+        return listObjectVersions(bucketName, null, null, null);
+    }
+
+    public Iterable<S3VersionSummary> listObjectVersions(@NotNull String bucketName,
+                                                         String prefix,
+                                                         String keyMarker,
+                                                         String versionIdMarker)
+    {
+        Validate.notEmpty(bucketName);
+        return new S3VersionSummaryIterable(bucketName, prefix, keyMarker, versionIdMarker);
+    }
+
+    public ListingPage<S3VersionSummary> listObjectVersionsPage(@NotNull String bucketName,
+                                                                String prefix,
+                                                                String keyMarker,
+                                                                String versionIdMarker,
+                                                                Integer maxKeys)
+    {
+        Validate.notEmpty(bucketName);
+        Validate.isTrue(maxKeys == null || maxKeys > 0, "Max keys must be greater than zero");
+        VersionListing listing = s3.listVersions(new ListVersionsRequest(bucketName, prefix, keyMarker,
+            versionIdMarker, null, maxKeys));
+        if (!listing.isTruncated())
+        {
+            return new ListingPage<S3VersionSummary>(listing.getVersionSummaries(), listing.getCommonPrefixes(),
+                null);
+        }
+        return new ListingPage<S3VersionSummary>(listing.getVersionSummaries(), listing.getCommonPrefixes(),
+            listing.getNextKeyMarker(), listing.getNextVersionIdMarker());
+    }
+
+    // 2.3
+    public Iterable<S3ObjectSummary> listObjects(@NotNull String bucketName, String prefix)
+    {
+        return listObjects(bucketName, prefix, null, null);
+    }
+
+    public Iterable<S3ObjectSummary> listObjects(@NotNull String bucketName,
+                                                 String prefix,
+                                                 String delimiter,
+                                                 String marker)
+    {
+        Validate.notNull(bucketName);
+        return new S3ObjectSummaryIterable(bucketName, prefix, delimiter, marker);
+    }
+
+    public ListingPage<S3ObjectSummary> listObjectsPage(@NotNull String bucketName,
+                                                        String prefix,
+                                                        String delimiter,
+                                                        String marker,
+                                                        Integer maxKeys)
+    {
+        Validate.notNull(bucketName);
+        Validate.isTrue(maxKeys == null || maxKeys > 0, "Max keys must be greater than zero");
+        return toListingPage(s3.listObjects(new ListObjectsRequest(bucketName, prefix, marker, delimiter, maxKeys)));
+    }
+
+    public Iterable<ListingPage<S3ObjectSummary>> listObjectPages(@NotNull final String bucketName,
+                                                                  final String prefix,
+                                                                  final String delimiter,
+                                                                  final String marker,
+                                                                  final Integer pageSize)
+    {
+        Validate.notNull(bucketName);
+        Validate.isTrue(pageSize == null || pageSize > 0, "Page size must be greater than zero");
+        return new Iterable<ListingPage<S3ObjectSummary>>()
+        {
+            public Iterator<ListingPage<S3ObjectSummary>> iterator()
+            {
+                return new Iterator<ListingPage<S3ObjectSummary>>()
+                {
+                    private ObjectListing currentList;
+
+                    public boolean hasNext()
+                    {
+                        return currentList == null || currentList.isTruncated();
+                    }
+
+                    public ListingPage<S3ObjectSummary> next()
+                    {
+                        if (!hasNext())
+                        {
+                            throw new NoSuchElementException();
+                        }
+                        if (currentList == null)
+                        {
+                            currentList = s3.listObjects(new ListObjectsRequest(bucketName, prefix, marker,
+                                delimiter, pageSize));
+                        }
+                        else
+                        {
+                            currentList = s3.listNextBatchOfObjects(currentList);
+                        }
+                        return toListingPage(currentList);
+                    }
+
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    private static ListingPage<S3ObjectSummary> toListingPage(ObjectListing listing)
+    {
+        List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+        List<String> commonPrefixes = listing.getCommonPrefixes();
+        String nextMarker = null;
+        if (listing.isTruncated())
+        {
+            nextMarker = listing.getNextMarker();
+            if (nextMarker == null && !summaries.isEmpty())
+            {
+                // S3 only answers the next marker when a delimiter is used,
+                // otherwise it is the last listed key
+                nextMarker = summaries.get(summaries.size() - 1).getKey();
+            }
+        }
+        return new ListingPage<S3ObjectSummary>(summaries, commonPrefixes, nextMarker);
+    }
+
+    public Iterable<String> listCommonPrefixes(@NotNull String bucketName,
+                                               String prefix,
+                                               @NotNull String delimiter)
+    {
+        Validate.notNull(bucketName);
+        Validate.notEmpty(delimiter);
+        return new S3CommonPrefixIterable(bucketName, prefix, delimiter);
+    }
+
+    // 3.1.1
+    public void deleteBucketPolicy(@NotNull String bucketName)
+
+    {
+        Validate.notNull(bucketName);
+        s3.deleteBucketPolicy(bucketName);
+    }
+
+    // 3.1.2
+    public String getBucketPolicy(@NotNull String bucketName)
+
+    {
+        Validate.notNull(bucketName);
+        return s3.getBucketPolicy(bucketName).getPolicyText();
+    }
+
+    // 3.1.3
+    public void setBucketPolicy(@NotNull String bucketName, @NotNull String policyText)
+
+    {
+        Validate.notNull(bucketName);
+        Validate.notNull(policyText);
+        s3.setBucketPolicy(bucketName, policyText);
+    }
+
+    // 3.2.1
+    public void deleteBucketWebsiteConfiguration(@NotNull String bucketName)
+
+    {
+        Validate.notNull(bucketName);
+        s3.deleteBucketWebsiteConfiguration(bucketName);
+    }
+
+    // 3.2.2
+    public BucketWebsiteConfiguration getBucketWebsiteConfiguration(@NotNull String bucketName)
+
+    {
+        Validate.notNull(bucketName);
+        return s3.getBucketWebsiteConfiguration(bucketName);
+    }
+
+    // 3.2.3
+    public void setBucketWebsiteConfiguration(@NotNull String bucketName,
+                                              @NotNull BucketWebsiteConfiguration configuration)
+
+    {
+        Validate.notNull(bucketName);
+        Validate.notNull(configuration);
+        Validate.notNull(configuration.getIndexDocumentSuffix());
+        s3.setBucketWebsiteConfiguration(bucketName, configuration);
+    }
+
+    // 4.1
+    public String createObject(@NotNull S3ObjectId objectId,
+                               @NotNull S3ObjectContent content,
+                               String contentType,
+                               CannedAccessControlList acl,
+                               StorageClass storageClass,
+                               Map<String, String> userMetadata)
+    {
+        Validate.notNull(content);
+        PutObjectRequest request = content.createPutObjectRequest();
+        if (request.getMetadata() != null)
+        {
+            request.getMetadata().setContentType(contentType);
+        }
+        request.getMetadata().setUserMetadata(userMetadata);
+        request.setBucketName(objectId.getBucketName());
+        request.setKey(objectId.getKey());
+        request.setCannedAcl(acl);
+        if (storageClass != null)
+        {
+            request.setStorageClass(storageClass);
+        }
+        invalidateCaches(objectId);
+        try
+        {
+            if (isContentLengthUnknown(request))
+            {
+                return createObjectStreaming(request);
+            }
+            if (getContentLength(request) > multipartUploadThreshold)
+            {
+                return createObjectMultipart(request);
+            }
+            return s3.putObject(request).getVersionId();
+        }
+        finally
+        {
+            invalidateCaches(objectId);
+        }
+    }
+
+    /**
+     * Uploads a stream of unspecified length while it is being read. The first part
+     * is buffered in order to find out whether the stream is short enough to be
+     * uploaded in a single request. Otherwise, the remaining parts are uploaded as
+     * they are read, using a multipart upload, so memory usage is bounded by part
+     * size and concurrency, regardless of the stream length.
+     */
+    private String createObjectStreaming(PutObjectRequest request)
+    {
+        InputStream inputStream = request.getInputStream();
+        byte[] firstPart = new byte[(int) multipartUploadPartSize];
+        int read = readFully(inputStream, firstPart);
+        if (read < firstPart.length)
+        {
+            request.setInputStream(new ByteArrayInputStream(firstPart, 0, read));
+            request.getMetadata().setContentLength(read);
+            return s3.putObject(request).getVersionId();
+        }
+        request.setInputStream(new SequenceInputStream(new ByteArrayInputStream(firstPart), inputStream));
+        return createObjectMultipart(request);
+    }
+
+    /**
+     * Uploads the contents of the given request using a multipart upload, sending
+     * up to {@link #multipartUploadConcurrency} parts at the same time. Parts of
+     * files are read directly by the uploading threads, while parts of streams are
+     * buffered in memory. If any part fails, the whole upload is aborted.
+     */
+    private String createObjectMultipart(PutObjectRequest request)
+    {
+        long partSize = Math.max(multipartUploadPartSize, ceilDiv(getContentLength(request), MAX_UPLOAD_PARTS));
+        InitiateMultipartUploadRequest initiateRequest = new InitiateMultipartUploadRequest(
+            request.getBucketName(), request.getKey(), newMultipartUploadMetadata(request.getMetadata()));
+        initiateRequest.setCannedACL(request.getCannedAcl());
+        if (request.getStorageClass() != null)
+        {
+            initiateRequest.setStorageClass(StorageClass.fromValue(request.getStorageClass()));
+        }
+        String uploadId = s3.initiateMultipartUpload(initiateRequest).getUploadId();
+        ParallelTasks<PartETag> tasks = new ParallelTasks<PartETag>(multipartUploadConcurrency);
+        try
+        {
+            if (request.getFile() != null)
+            {
+                uploadFileParts(request, uploadId, partSize, tasks);
+            }
+            else
+            {
+                uploadStreamParts(request, uploadId, partSize, tasks);
+            }
+            return s3.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(request.getBucketName(), request.getKey(), uploadId,
+                    tasks.awaitAll())).getVersionId();
+        }
+        catch (RuntimeException e)
+        {
+            abortMultipartUpload(request.getBucketName(), request.getKey(), uploadId);
+            throw e;
+        }
+        finally
+        {
+            tasks.shutdown();
+        }
+    }
+
+    /**
+     * Submits the parts of the request's file, which are read by the uploading
+     * threads. If the request has an md5, the file is also read sequentially while
+     * the parts are submitted, so that each part is sent along with its own md5,
+     * and the md5 of the whole file is checked against the request's, as for
+     * streams.
+     */
+    private void uploadFileParts(PutObjectRequest request,
+                                 String uploadId,
+                                 long partSize,
+                                 ParallelTasks<PartETag> tasks)
+    {
+        File file = request.getFile();
+        long length = file.length();
+        String contentMd5 = request.getMetadata().getContentMD5();
+        MessageDigest contentDigest = contentMd5 != null ? newMd5Digest() : null;
+        InputStream digestedStream = null;
+        try
+        {
+            digestedStream = contentDigest != null ? new FileInputStream(file) : null;
+            int partNumber = 1;
+            for (long offset = 0; offset < length; offset += partSize, partNumber++)
+            {
+                long currentPartSize = Math.min(partSize, length - offset);
+                UploadPartRequest partRequest = newUploadPartRequest(request, uploadId, partNumber).withFile(file)
+                    .withFileOffset(offset)
+                    .withPartSize(currentPartSize);
+                if (contentDigest != null)
+                {
+                    MessageDigest partDigest = newMd5Digest();
+                    digest(digestedStream, currentPartSize, partDigest, contentDigest);
+                    partRequest.setMd5Digest(BinaryUtils.toBase64(partDigest.digest()));
+                }
+                tasks.submit(uploadPartTask(partRequest));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new AmazonClientException("Could not read the file to upload", e);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(digestedStream);
+        }
+        if (contentDigest != null && !BinaryUtils.toBase64(contentDigest.digest()).equals(contentMd5))
+        {
+            throw new AmazonClientException("The content to upload does not match its md5 " + contentMd5);
+        }
+    }
+
+    /**
+     * Updates the given digests with the given number of bytes of the stream
+     */
+    private static void digest(InputStream inputStream, long length, MessageDigest... digests)
+        throws IOException
+    {
+        byte[] buffer = new byte[64 * 1024];
+        long remaining = length;
+        while (remaining > 0)
+        {
+            int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1)
+            {
+                throw new EOFException("The file to upload was truncated while it was read");
+            }
+            for (MessageDigest digest : digests)
+            {
+                digest.update(buffer, 0, read);
+            }
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Reads the request's stream sequentially, until exhausted, in buffers of the
+     * given part size. As each buffer is allocated only once a thread is ready to
+     * upload it, no more than concurrency + 1 parts are held in memory.
+     * <p>
+     * If the stream length is unknown, the part size doubles every
+     * {@link #STREAM_PART_SIZE_DOUBLING_PARTS} parts, so that the part limit
+     * allows contents of up to 31 * 2000 times the given part size, at the cost of
+     * buffering parts of up to 16 times that size.
+     * </p>
+     * <p>
+     * If the request has an md5, as it can not be sent for the whole content, each
+     * part is sent along with its own md5 instead, and the md5 of the whole
+     * content is checked against the request's once the stream is exhausted.
+     * </p>
+     */
+    private void uploadStreamParts(PutObjectRequest request,
+                                   String uploadId,
+                                   long partSize,
+                                   ParallelTasks<PartETag> tasks)
+    {
+        InputStream inputStream = request.getInputStream();
+        String contentMd5 = request.getMetadata().getContentMD5();
+        MessageDigest contentDigest = contentMd5 != null ? newMd5Digest() : null;
+        boolean growing = isContentLengthUnknown(request);
+        int partNumber = 1;
+        int currentPartSize;
+        int read;
+        do
+        {
+            currentPartSize = (int) Math.min(Integer.MAX_VALUE, growing ? partSize << Math.min(4,
+                (partNumber - 1) / STREAM_PART_SIZE_DOUBLING_PARTS) : partSize);
+            byte[] buffer = new byte[currentPartSize];
+            read = readFully(inputStream, buffer);
+            if (read > 0 && partNumber > MAX_UPLOAD_PARTS)
+            {
+                throw new AmazonClientException("Content exceeds the maximum size of a multipart upload of "
+                                                + MAX_UPLOAD_PARTS + " parts of up to " + currentPartSize
+                                                + " bytes. Increase the multipart upload part size");
+            }
+            if (read > 0 || partNumber == 1)
+            {
+                UploadPartRequest partRequest = newUploadPartRequest(request, uploadId, partNumber++).withInputStream(
+                    new ByteArrayInputStream(buffer, 0, read)).withPartSize(read);
+                if (contentDigest != null)
+                {
+                    contentDigest.update(buffer, 0, read);
+                    MessageDigest partDigest = newMd5Digest();
+                    partDigest.update(buffer, 0, read);
+                    partRequest.setMd5Digest(BinaryUtils.toBase64(partDigest.digest()));
+                }
+                tasks.submit(uploadPartTask(partRequest));
+            }
+        }
+        while (read == currentPartSize);
+        if (contentDigest != null && !BinaryUtils.toBase64(contentDigest.digest()).equals(contentMd5))
+        {
+            throw new AmazonClientException("The content to upload does not match its md5 " + contentMd5);
+        }
+    }
+
+    private static MessageDigest newMd5Digest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new AmazonClientException("MD5 is not available", e);
+        }
+    }
+
+    private UploadPartRequest newUploadPartRequest(PutObjectRequest request, String uploadId, int partNumber)
+    {
+        return new UploadPartRequest().withBucketName(request.getBucketName())
+            .withKey(request.getKey())
+            .withUploadId(uploadId)
+            .withPartNumber(partNumber);
+    }
+
+    private Callable<PartETag> uploadPartTask(final UploadPartRequest request)
+    {
+        return new Callable<PartETag>()
+        {
+            public PartETag call()
+            {
+                return s3.uploadPart(request).getPartETag();
+            }
+        };
+    }
+
+    private void abortMultipartUpload(String bucketName, String key, String uploadId)
+    {
+        try
+        {
+            s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        }
+        catch (AmazonClientException e)
+        {
+            // the original failure is more relevant than this one
+        }
+    }
+
+    /**
+     * The metadata of a multipart upload can not carry the length or md5 of the
+     * whole content, as those apply to parts - the md5 is checked while uploading
+     * the parts instead
+     */
+    private ObjectMetadata newMultipartUploadMetadata(ObjectMetadata source)
+    {
+        ObjectMetadata metadata = new ObjectMetadata();
+        if (source.getContentType() != null)
+        {
+            metadata.setContentType(source.getContentType());
+        }
+        if (source.getUserMetadata() != null)
+        {
+            metadata.setUserMetadata(source.getUserMetadata());
+        }
+        return metadata;
+    }
+
+    /**
+     * @return whether the request uploads a stream with no Content-Length, which
+     *         is thus uploaded while it is read
+     */
+    private static boolean isContentLengthUnknown(PutObjectRequest request)
+    {
+        return request.getFile() == null && request.getInputStream() != null
+               && request.getMetadata().getRawMetadata().get(Headers.CONTENT_LENGTH) == null;
+    }
+
+    private static long getContentLength(PutObjectRequest request)
+    {
+        if (request.getFile() != null)
+        {
+            return request.getFile().length();
+        }
+        return request.getMetadata().getContentLength();
+    }
+
+    private static long ceilDiv(long dividend, long divisor)
+    {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    /**
+     * Reads from the given stream until the buffer is full or the stream is
+     * exhausted
+     * 
+     * @return the number of bytes read
+     */
+    private static int readFully(InputStream inputStream, byte[] buffer)
+    {
+        try
+        {
+            int total = 0;
+            int read;
+            while (total < buffer.length && (read = inputStream.read(buffer, total, buffer.length - total)) != -1)
+            {
+                total += read;
+            }
+            return total;
+        }
+        catch (IOException e)
+        {
+            throw new AmazonClientException("Could not read the content to upload", e);
+        }
+    }
+
+    // 4.2
+    public void deleteObject(@NotNull S3ObjectId objectId)
+    {
+        Validate.notNull(objectId);
+        invalidateCaches(objectId);
+        try
+        {
+            if (objectId.isVersioned())
+            {
+                s3.deleteVersion(objectId.getBucketName(), objectId.getKey(), objectId.getVersionId());
+            }
+            else
+            {
+                s3.deleteObject(objectId.getBucketName(), objectId.getKey());
+            }
+        }
+        finally
+        {
+            invalidateCaches(objectId);
+        }
+    }
+
+    // 4.4
+    public CopyObjectResult copyObject(@NotNull S3ObjectId source,
+                                       @NotNull S3ObjectId destination,
+                                       @NotNull ConditionalConstraints conditionalConstraints,
+                                       CannedAccessControlList acl,
+                                       StorageClass storageClass,
+                                       Map<String, String> userMetadata)
+    {
+        Validate.notNull(source);
+        Validate.notNull(destination);
+        Validate.notNull(conditionalConstraints);
+        return copyObject(source, -1, destination, conditionalConstraints, acl, storageClass, userMetadata,
+            Math.min(multipartCopyConcurrency, maxConnections));
+    }
+
+    /**
+     * Copies an object with a single request, or in parts if it is larger than the
+     * {@link #multipartCopyThreshold}. The source length is only requested when it
+     * is unknown and the threshold is lower than the single request limit. With
+     * larger thresholds, copies are attempted with a single request, and only
+     * fall back to parts if S3 rejects the source as too large.
+     *
+     * @param sourceLength the length of the source object, as listed, or -1 if
+     *            unknown
+     * @param partConcurrency the maximum number of parts copied at the same time
+     */
+    private CopyObjectResult copyObject(S3ObjectId source,
+                                        long sourceLength,
+                                        S3ObjectId destination,
+                                        ConditionalConstraints conditionalConstraints,
+                                        CannedAccessControlList acl,
+                                        StorageClass storageClass,
+                                        Map<String, String> userMetadata,
+                                        int partConcurrency)
+    {
+        if (multipartCopyThreshold == 0 || (sourceLength >= 0 && sourceLength <= multipartCopyThreshold))
+        {
+            return copyObjectSingle(source, destination, conditionalConstraints, acl, storageClass,
+                userMetadata);
+        }
+        if (sourceLength < 0 && multipartCopyThreshold >= MAX_COPY_SIZE)
+        {
+            try
+            {
+                return copyObjectSingle(source, destination, conditionalConstraints, acl, storageClass,
+                    userMetadata);
+            }
+            catch (AmazonServiceException e)
+            {
+                if (!"InvalidRequest".equals(e.getErrorCode()))
+                {
+                    throw e;
+                }
+                ObjectMetadata sourceMetadata = fetchSourceMetadata(source);
+                if (sourceMetadata.getContentLength() <= multipartCopyThreshold)
+                {
+                    throw e;
+                }
+                return copyObjectMultipart(source, sourceMetadata, destination, conditionalConstraints, acl,
+                    storageClass, userMetadata, partConcurrency);
+            }
+        }
+        ObjectMetadata sourceMetadata = fetchSourceMetadata(source);
+        if (sourceMetadata.getContentLength() <= multipartCopyThreshold)
+        {
+            return copyObjectSingle(source, destination, conditionalConstraints, acl, storageClass,
+                userMetadata);
+        }
+        return copyObjectMultipart(source, sourceMetadata, destination, conditionalConstraints, acl, storageClass,
+            userMetadata, partConcurrency);
+    }
+
+    private ObjectMetadata fetchSourceMetadata(S3ObjectId source)
+    {
+        return s3.getObjectMetadata(new GetObjectMetadataRequest(source.getBucketName(), source.getKey(),
+            source.getVersionId()));
+    }
+
+    private CopyObjectResult copyObjectSingle(S3ObjectId source,
+                                              S3ObjectId destination,
+                                              ConditionalConstraints conditionalConstraints,
+                                              CannedAccessControlList acl,
+                                              StorageClass storageClass,
+                                              Map<String, String> userMetadata)
+    {
+        CopyObjectRequest request = new CopyObjectRequest(source.getBucketName(), source.getKey(),
+            source.getVersionId(), destination.getBucketName(), destination.getKey());
+        request.setCannedAccessControlList(acl);
+        if (storageClass != null)
+        {
+            request.setStorageClass(storageClass);
+        }
+        if (userMetadata != null)
+        {
+            request.setNewObjectMetadata(new ObjectMetadata());
+            request.getNewObjectMetadata().setUserMetadata(userMetadata);
+        }
+        conditionalConstraints.populate(request);
+        invalidateCaches(destination);
+        try
+        {
+            return s3.copyObject(request);
+        }
+        finally
+        {
+            invalidateCaches(destination);
+        }
+    }
+
+    /**
+     * Copies the source object in parts of up to {@link #multipartCopyPartSize}
+     * bytes, up to partConcurrency of them at the same time.
+     * All parts are copied from the same source ETag, so changes made to the
+     * source object while it is being copied make the copy fail instead of mixing
+     * both contents. Answers null if the source does not meet the constraints.
+     */
+    private CopyObjectResult copyObjectMultipart(S3ObjectId source,
+                                                 ObjectMetadata sourceMetadata,
+                                                 S3ObjectId destination,
+                                                 ConditionalConstraints conditionalConstraints,
+                                                 CannedAccessControlList acl,
+                                                 StorageClass storageClass,
+                                                 Map<String, String> userMetadata,
+                                                 int partConcurrency)
+    {
+        if (!conditionalConstraints.matches(sourceMetadata))
+        {
+            return null;
+        }
+        invalidateCaches(destination);
+        try
+        {
+            return copyObjectParts(source, sourceMetadata, destination, acl, storageClass, userMetadata,
+                partConcurrency);
+        }
+        finally
+        {
+            invalidateCaches(destination);
+        }
+    }
+
+    private CopyObjectResult copyObjectParts(S3ObjectId source,
+                                             ObjectMetadata sourceMetadata,
+                                             S3ObjectId destination,
+                                             CannedAccessControlList acl,
+                                             StorageClass storageClass,
+                                             Map<String, String> userMetadata,
+                                             int partConcurrency)
+    {
+        long length = sourceMetadata.getContentLength();
+        long partSize = Math.max(multipartCopyPartSize, ceilDiv(length, MAX_UPLOAD_PARTS));
+        InitiateMultipartUploadRequest initiateRequest = new InitiateMultipartUploadRequest(
+            destination.getBucketName(), destination.getKey(), newMultipartCopyMetadata(sourceMetadata,
+                userMetadata));
+        initiateRequest.setCannedACL(acl);
+        if (storageClass != null)
+        {
+            initiateRequest.setStorageClass(storageClass);
+        }
+        String uploadId = s3.initiateMultipartUpload(initiateRequest).getUploadId();
+        ParallelTasks<PartETag> tasks = new ParallelTasks<PartETag>(partConcurrency);
+        try
+        {
+            int partNumber = 1;
+            for (long offset = 0; offset < length; offset += partSize, partNumber++)
+            {
+                tasks.submit(copyPartTask(new CopyPartRequest().withSourceBucketName(source.getBucketName())
+                    .withSourceKey(source.getKey())
+                    .withSourceVersionId(source.getVersionId())
+                    .withDestinationBucketName(destination.getBucketName())
+                    .withDestinationKey(destination.getKey())
+                    .withUploadId(uploadId)
+                    .withPartNumber(partNumber)
+                    .withFirstByte(offset)
+                    .withLastByte(Math.min(offset + partSize, length) - 1)
+                    .withMatchingETagConstraint(sourceMetadata.getETag())));
+            }
+            CompleteMultipartUploadResult completeResult = s3.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(destination.getBucketName(), destination.getKey(), uploadId,
+                    tasks.awaitAll()));
+            CopyObjectResult result = new CopyObjectResult();
+            result.setETag(completeResult.getETag());
+            result.setVersionId(completeResult.getVersionId());
+            return result;
+        }
+        catch (RuntimeException e)
+        {
+            abortMultipartUpload(destination.getBucketName(), destination.getKey(), uploadId);
+            throw e;
+        }
+        finally
+        {
+            tasks.shutdown();
+        }
+    }
+
+    private Callable<PartETag> copyPartTask(final CopyPartRequest request)
+    {
+        return new Callable<PartETag>()
+        {
+            public PartETag call()
+            {
+                CopyPartResult result = s3.copyPart(request);
+                if (result == null)
+                {
+                    throw new AmazonClientException("Object " + request.getSourceKey()
+                                                    + " changed while it was being copied");
+                }
+                return new PartETag(result.getPartNumber(), result.getETag());
+            }
+        };
+    }
+
+    /**
+     * As with single request copies, the metadata of the copy is either the source
+     * metadata or just the given user metadata. As for multipart uploads, it can
+     * not carry the length or md5 of the whole content, and headers that are only
+     * answered, such as the ETag, are not sent either
+     */
+    private static ObjectMetadata newMultipartCopyMetadata(ObjectMetadata source, Map<String, String> userMetadata)
+    {
+        ObjectMetadata metadata = new ObjectMetadata();
+        if (userMetadata != null)
+        {
+            metadata.setUserMetadata(userMetadata);
+            return metadata;
+        }
+        for (Map.Entry<String, Object> header : source.getRawMetadata().entrySet())
+        {
+            if (COPIED_HEADERS.contains(header.getKey().toLowerCase()))
+            {
+                metadata.setHeader(header.getKey(), header.getValue());
+            }
+        }
+        if (source.getUserMetadata() != null)
+        {
+            metadata.setUserMetadata(source.getUserMetadata());
+        }
+        return metadata;
+    }
+
+    // 4.5
+    public URI createObjectPresignedUri(@NotNull S3ObjectId objectId, Date expiration, HttpMethod method)
+    {
+        Validate.notNull(objectId);
+        PresignedUriCache cache = presignedUriCache;
+        if (cache == null)
+        {
+            return signObjectUri(null, objectId, expiration, method);
+        }
+        return signObjectUri(cache, objectId, toPresignedUriExpiration(expiration), method);
+    }
+
+    public List<URI> createObjectPresignedUris(@NotNull Iterable<S3ObjectId> objectIds,
+                                               Date expiration,
+                                               HttpMethod method)
+    {
+        Validate.notNull(objectIds);
+        PresignedUriCache cache = presignedUriCache;
+        // all the uris of a batch share the same expiration
+        Date batchExpiration = toPresignedUriExpiration(expiration);
+        List<URI> uris = new ArrayList<URI>();
+        for (S3ObjectId objectId : objectIds)
+        {
+            Validate.notNull(objectId);
+            uris.add(signObjectUri(cache, objectId, batchExpiration, method));
+        }
+        return uris;
+    }
+
+    private static Date toPresignedUriExpiration(Date expiration)
+    {
+        return expiration != null ? expiration : new Date(System.currentTimeMillis()
+                                                          + DEFAULT_PRESIGNED_URI_EXPIRATION);
+    }
+
+    /**
+     * Signs an uri, reusing a cached one if possible.
+     * 
+     * @param cache the cache to use, or null if caching is disabled
+     * @param expiration the expiration of the uri, which can be null only if there
+     *            is no cache
+     */
+    private URI signObjectUri(PresignedUriCache cache, S3ObjectId objectId, Date expiration, HttpMethod method)
+    {
+        if (cache != null)
+        {
+            URI uri = cache.get(objectId, method, expiration.getTime());
+            if (uri != null)
+            {
+                return uri;
+            }
+        }
+        URI uri;
+        try
+        {
+            uri = s3.generatePresignedUrl(objectId.getBucketName(), objectId.getKey(), expiration, method)
+                .toURI();
+        }
+        catch (URISyntaxException e)
+        {
+            throw new AmazonClientException("S3 returned a malformed URI", e);
+        }
+        if (cache != null)
+        {
+            cache.put(objectId, method, uri, expiration.getTime());
+        }
+        return uri;
+    }
+
+    // 4.6
+    public void setObjectStorageClass(@NotNull S3ObjectId objectId, StorageClass newStorageClass)
+    {
+        invalidateCaches(objectId);
+        try
+        {
+            s3.changeObjectStorageClass(objectId.getBucketName(), objectId.getKey(), newStorageClass);
+        }
+        finally
+        {
+            invalidateCaches(objectId);
+        }
+    }
+
+    // 4.3
+    public InputStream getObjectContent(@NotNull S3ObjectId objectId, @NotNull ConditionalConstraints conditionalConstraints)
+    {
+        Validate.notNull(objectId);
+        ContentCache cache = contentCache;
+        if (cache != null && conditionalConstraints.isEmpty())
+        {
+            return getCachedObjectContent(cache, objectId);
+        }
+        S3Object object = getObject(objectId, conditionalConstraints);
+        if (object == null)
+        {
+            return null;
+        }
+        return object.getObjectContent();
+    }
+
+    /**
+     * Answers the content of an object from the given cache, if it has not changed
+     * since it was cached - which is checked with a conditional GET, unless a
+     * specific version is requested, as those never change. Otherwise, the content
+     * is fetched and cached.
+     */
+    private InputStream getCachedObjectContent(ContentCache cache, S3ObjectId objectId)
+    {
+        ContentCache.Entry entry = cache.get(objectId);
+        if (entry != null)
+        {
+            S3Object object = null;
+            if (!objectId.isVersioned())
+            {
+                GetObjectRequest request = new GetObjectRequest(objectId.getBucketName(), objectId.getKey());
+                request.setNonmatchingETagConstraints(Collections.singletonList(entry.getETag()));
+                object = s3.getObject(request);
+            }
+            if (object != null)
+            {
+                return cacheContent(cache, objectId, object);
+            }
+            InputStream content = cache.open(entry);
+            if (content != null)
+            {
+                return content;
+            }
+        }
+        return cacheContent(cache, objectId, getObject(objectId, ConditionalConstraints.from(null, null)));
+    }
+
+    private static InputStream cacheContent(ContentCache cache, S3ObjectId objectId, S3Object object)
+    {
+        if (!cache.accepts(object.getObjectMetadata().getContentLength()))
+        {
+            return object.getObjectContent();
+        }
+        File file = cache.newFile();
+        InputStream content = object.getObjectContent();
+        OutputStream output = null;
+        try
+        {
+            output = new FileOutputStream(file);
+            IOUtils.copyLarge(content, output);
+            output.close();
+            // opened before the content is published, as it may be evicted as
+            // soon as it is
+            InputStream cached = new FileInputStream(file);
+            cache.put(objectId, file, object.getObjectMetadata().getETag());
+            return cached;
+        }
+        catch (IOException e)
+        {
+            file.delete();
+            throw new AmazonClientException("Could not cache object contents", e);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(content);
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    public InputStream getObjectContentInParallel(@NotNull final S3ObjectId objectId,
+                                                  @NotNull ConditionalConstraints conditionalConstraints)
+    {
+        Validate.notNull(objectId);
+        Validate.notNull(conditionalConstraints);
+        ObjectMetadata metadata = fetchObjectMetadata(objectId);
+        if (metadata.getContentLength() <= downloadPartSize)
+        {
+            return getObjectContent(objectId, conditionalConstraints);
+        }
+        final String eTag = metadata.getETag();
+        S3Object firstRange = getObjectRangeMatching(objectId, conditionalConstraints, eTag, 0, downloadPartSize - 1);
+        if (firstRange == null)
+        {
+            return null;
+        }
+        return new ParallelRangeInputStream(toByteArray(firstRange), metadata.getContentLength(),
+            downloadPartSize, downloadConcurrency)
+        {
+            @Override
+            protected byte[] fetchRange(long start, long end)
+            {
+                return toByteArray(getPinnedObjectRange(objectId, eTag, start, end));
+            }
+        };
+    }
+
+    public InputStream getObjectRange(@NotNull S3ObjectId objectId,
+                                      @NotNull ByteRange range,
+                                      @NotNull ConditionalConstraints conditionalConstraints)
+    {
+        Validate.notNull(objectId);
+        Validate.notNull(range);
+        Validate.notNull(conditionalConstraints);
+        GetObjectRequest request = new GetObjectRequest(objectId.getBucketName(), objectId.getKey(),
+            objectId.getVersionId());
+        long objectLength = Long.MAX_VALUE;
+        if (range.isSuffix())
+        {
+            ObjectMetadata metadata = fetchObjectMetadata(objectId);
+            if (metadata.getContentLength() == 0)
+            {
+                return getObjectContent(objectId, conditionalConstraints);
+            }
+            objectLength = metadata.getContentLength();
+            if (!conditionalConstraints.populatePinned(request, metadata.getETag()))
+            {
+                return null;
+            }
+        }
+        else
+        {
+            conditionalConstraints.populate(request);
+        }
+        request.setRange(range.getFirstByte(objectLength), range.getLastByte(objectLength));
+        S3Object object = s3.getObject(request);
+        if (object == null)
+        {
+            return null;
+        }
+        return object.getObjectContent();
+    }
+
+    public boolean downloadObject(@NotNull final S3ObjectId objectId,
+                                  @NotNull ConditionalConstraints conditionalConstraints,
+                                  @NotNull final File destination)
+    {
+        Validate.notNull(objectId);
+        Validate.notNull(conditionalConstraints);
+        Validate.notNull(destination);
+        ObjectMetadata metadata = fetchObjectMetadata(objectId);
+        long length = metadata.getContentLength();
+        final String eTag = metadata.getETag();
+        S3Object firstRange = length <= downloadPartSize
+                                                        ? getObject(objectId, conditionalConstraints)
+                                                        : getObjectRangeMatching(objectId, conditionalConstraints,
+                                                            eTag, 0, downloadPartSize - 1);
+        if (firstRange == null)
+        {
+            return false;
+        }
+        allocate(destination, length);
+        ParallelTasks<Void> tasks = new ParallelTasks<Void>(downloadConcurrency);
+        try
+        {
+            tasks.submit(writeRangeTask(firstRange, destination, 0));
+            for (long start = downloadPartSize; start < length; start += downloadPartSize)
+            {
+                final long rangeStart = start;
+                final long rangeEnd = Math.min(length, start + downloadPartSize) - 1;
+                tasks.submit(new Callable<Void>()
+                {
+                    public Void call()
+                    {
+                        writeRange(getPinnedObjectRange(objectId, eTag, rangeStart, rangeEnd), destination,
+                            rangeStart);
+                        return null;
+                    }
+                });
+            }
+            tasks.awaitAll();
+            return true;
+        }
+        finally
+        {
+            tasks.shutdown();
+        }
+    }
+
+    private S3Object getObjectRangeMatching(S3ObjectId objectId,
+                                    ConditionalConstraints conditionalConstraints,
+                                    String eTag,
+                                    long start,
+                                    long end)
+    {
+        GetObjectRequest request = new GetObjectRequest(objectId.getBucketName(), objectId.getKey(),
+            objectId.getVersionId());
+        if (!conditionalConstraints.populatePinned(request, eTag))
+        {
+            return null;
+        }
+        request.setRange(start, end);
+        return s3.getObject(request);
+    }
+
+    /**
+     * Answers a range of the object with the given ETag, failing if the object no
+     * longer has such ETag
+     */
+    private S3Object getPinnedObjectRange(S3ObjectId objectId, String eTag, long start, long end)
+    {
+        S3Object range = getObjectRangeMatching(objectId, ConditionalConstraints.from(null, null), eTag, start, end);
+        if (range == null)
+        {
+            throw new AmazonClientException("Object " + objectId.getKey() + " in bucket "
+                                            + objectId.getBucketName() + " changed while being downloaded");
+        }
+        return range;
+    }
+
+    private Callable<Void> writeRangeTask(final S3Object range, final File destination, final long offset)
+    {
+        return new Callable<Void>()
+        {
+            public Void call()
+            {
+                writeRange(range, destination, offset);
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Writes the contents of the given range to the destination file, starting at
+     * the given offset
+     */
+    private static void writeRange(S3Object range, File destination, long offset)
+    {
+        InputStream content = range.getObjectContent();
+        RandomAccessFile file = null;
+        try
+        {
+            file = new RandomAccessFile(destination, "rw");
+            file.seek(offset);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = content.read(buffer)) != -1)
+            {
+                file.write(buffer, 0, read);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new AmazonClientException("Could not write object contents to " + destination, e);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(content);
+            closeQuietly(file);
+        }
+    }
+
+    private static void allocate(File destination, long length)
+    {
+        RandomAccessFile file = null;
+        try
+        {
+            file = new RandomAccessFile(destination, "rw");
+            file.setLength(length);
+        }
+        catch (IOException e)
+        {
+            throw new AmazonClientException("Could not create file " + destination, e);
+        }
+        finally
+        {
+            closeQuietly(file);
+        }
+    }
+
+    private static void closeQuietly(RandomAccessFile file)
+    {
+        if (file != null)
+        {
+            try
+            {
+                file.close();
+            }
+            catch (IOException e)
+            {
+                // ignore
+            }
+        }
+    }
+
+    private static byte[] toByteArray(S3Object object)
+    {
+        InputStream content = object.getObjectContent();
+        try
+        {
+            return IOUtils.toByteArray(content);
+        }
+        catch (IOException e)
+        {
+            throw new AmazonClientException("Could not read object contents", e);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(content);
+        }
+    }
+
+    @NotNull
+    public ObjectMetadata getObjectMetadata(@NotNull S3ObjectId objectId)
+    {
+        Validate.notNull(objectId);
+        MetadataCache cache = metadataCache;
+        if (cache != null)
+        {
+            ObjectMetadata metadata = cache.get(objectId);
+            if (metadata != null)
+            {
+                return metadata;
+            }
+        }
+        return fetchObjectMetadata(objectId);
+    }
+
+    /**
+     * Fetches the metadata of an object, bypassing the metadata cache, which is
+     * refreshed with it. Operations that pin their requests to the object ETag or
+     * rely on its length must use it, as cached metadata may be stale.
+     */
+    private ObjectMetadata fetchObjectMetadata(S3ObjectId objectId)
+    {
+        ObjectMetadata metadata = s3.getObjectMetadata(new GetObjectMetadataRequest(objectId.getBucketName(),
+            objectId.getKey(), objectId.getVersionId()));
+        MetadataCache cache = metadataCache;
+        if (cache != null)
+        {
+            cache.put(objectId, metadata);
+        }
+        return metadata;
+    }
+
+    public S3Object getObject(@NotNull S3ObjectId objectId,
+                              @NotNull ConditionalConstraints conditionalConstraints)
+    {
+        Validate.notNull(objectId);
+        GetObjectRequest request = new GetObjectRequest(objectId.getBucketName(), objectId.getKey(),
+            objectId.getVersionId());
+        conditionalConstraints.populate(request);
+        S3Object object = s3.getObject(request);
+        MetadataCache cache = metadataCache;
+        if (object != null && cache != null)
+        {
+            // a whole object GET answers the same metadata than a HEAD, so it
+            // refreshes the cache for free
+            cache.put(objectId, object.getObjectMetadata());
+        }
+        return object;
+    }
+
+    public CacheStatistics getMetadataCacheStatistics()
+    {
+        MetadataCache cache = metadataCache;
+        return cache != null ? cache.getStatistics() : new CacheStatistics(0, 0, 0, 0);
+    }
+
+    public CacheStatistics getPresignedUriCacheStatistics()
+    {
+        PresignedUriCache cache = presignedUriCache;
+        return cache != null ? cache.getStatistics() : new CacheStatistics(0, 0, 0, 0);
+    }
+
+    public CacheStatistics getContentCacheStatistics()
+    {
+        ContentCache cache = contentCache;
+        return cache != null ? cache.getStatistics() : new CacheStatistics(0, 0, 0, 0);
+    }
+
+    private void invalidateCaches(String bucketName, List<KeyVersion> keys)
+    {
+        for (KeyVersion key : keys)
+        {
+            invalidateCaches(new S3ObjectId(bucketName, key.getKey(), key.getVersion()));
+        }
+    }
+
+    /**
+     * Discards the cached metadata and contents of an object. Writes invalidate
+     * both before and after being sent, as reads performed while the write is
+     * in flight may cache the previous state of the object again.
+     */
+    private void invalidateCaches(S3ObjectId objectId)
+    {
+        MetadataCache cache = metadataCache;
+        if (cache != null)
+        {
+            cache.invalidate(objectId);
+        }
+        ContentCache contents = contentCache;
+        if (contents != null)
+        {
+            contents.invalidate(objectId);
+        }
+    }
+
+    public void setBucketVersioningStatus(@NotNull String bucketName,
+                                          @NotNull VersioningStatus versioningStatus)
     {
-        return s3.listBuckets();
+        Validate.notNull(bucketName);
+        s3.setBucketVersioningConfiguration(new SetBucketVersioningConfigurationRequest(bucketName,
+            new BucketVersioningConfiguration(versioningStatus.toString())));
     }
 
-    // 2.1
-    public Bucket createBucket(@NotNull String bucketName, Region region, CannedAccessControlList acl)
+    public URI createObjectUriUsingDefaultServer(S3ObjectId objectId, boolean secure)
     {
-        Validate.notNull(bucketName);
-        CreateBucketRequest request = new CreateBucketRequest(bucketName, region.toS3Equivalent());
-        request.setCannedAcl(acl);
-        return s3.createBucket(request);
+        Validate.notNull(objectId);
+        return Region.getDefaultRegion().getObjectUri(objectId, secure);
     }
 
-    // 2.2
-    public void deleteBucket(@NotNull String bucketName)
+    public URI createObjectUri(S3ObjectId objectId, boolean secure)
     {
-        Validate.notNull(bucketName);
-        s3.deleteBucket(bucketName);
+        Validate.notNull(objectId);
+        return getBucketRegion(objectId.getBucketName()).getObjectUri(objectId, secure);
     }
 
-    public void deleteBucketAndObjects(@NotNull String bucketName)
-
+    private Region getBucketRegion(String bucketName)
     {
-        Validate.notNull(bucketName);
-        if (!s3.getBucketVersioningConfiguration(bucketName).getStatus().equals(
-            BucketVersioningConfiguration.OFF))
-        {
-            for (S3VersionSummary summary : listObjectVersions(bucketName))
-            {
-                s3.deleteVersion(bucketName, summary.getKey(), summary.getVersionId());
-            }
-        }
-        else
+        BucketRegionCache cache = bucketRegionCache;
+        Region region = cache.get(bucketName);
+        if (region == null)
         {
-            for (S3ObjectSummary summary : listObjects(bucketName, null))
-            {
-                s3.deleteObject(bucketName, summary.getKey());
-            }
+            region = Region.from(s3.getBucketLocation(bucketName));
+            cache.put(bucketName, region);
         }
-        deleteBucket(bucketName);
+        return region;
     }
 
-    public S3VersionSummaryIterable listObjectVersions(@NotNull String bucketName)
+    /**
+     * Sets the content length, in bytes, above which objects are uploaded using
+     * multipart uploads instead of a single request. Defaults to
+     * {@link #DEFAULT_MULTIPART_UPLOAD_THRESHOLD}
+     */
+    public void setMultipartUploadThreshold(long multipartUploadThreshold)
     {
-        Validate.notEmpty(bucketName);
-        return new S3VersionSummaryIterable(bucketName);
+        Validate.isTrue(multipartUploadThreshold > 0, "Multipart upload threshold must be greater than zero");
+        this.multipartUploadThreshold = multipartUploadThreshold;
     }
 
-    // 2.3
-    public Iterable<S3ObjectSummary> listObjects(@NotNull String bucketName, String prefix)
+    /**
+     * Sets the size, in bytes, of each part of multipart uploads. S3 does not
+     * accept parts smaller than 5 MB, except for the last one. This size is
+     * increased when necessary in order not to exceed the maximum number of parts
+     * per upload. Defaults to {@link #DEFAULT_MULTIPART_UPLOAD_PART_SIZE}
+     */
+    public void setMultipartUploadPartSize(long multipartUploadPartSize)
     {
-        Validate.notNull(bucketName);
-        return new S3ObjectSummaryIterable(bucketName, prefix);
+        Validate.isTrue(multipartUploadPartSize > 0 && multipartUploadPartSize <= Integer.MAX_VALUE,
+            "Multipart upload part size must be a positive int");
+        this.multipartUploadPartSize = multipartUploadPartSize;
     }
 
-    // 3.1.1
-    public void deleteBucketPolicy(@NotNull String bucketName)
-
+    /**
+     * Sets the maximum number of parts of a single multipart upload that are
+     * uploaded concurrently. Defaults to {@link #DEFAULT_MULTIPART_UPLOAD_CONCURRENCY}
+     */
+    public void setMultipartUploadConcurrency(int multipartUploadConcurrency)
     {
-        Validate.notNull(bucketName);
-        s3.deleteBucketPolicy(bucketName);
+        Validate.isTrue(multipartUploadConcurrency > 0, "Multipart upload concurrency must be greater than zero");
+        this.multipartUploadConcurrency = multipartUploadConcurrency;
     }
 
-    // 3.1.2
-    public String getBucketPolicy(@NotNull String bucketName)
-
+    /**
+     * Sets the size, in bytes, of the byte ranges fetched by parallel downloads.
+     * Defaults to {@link #DEFAULT_DOWNLOAD_PART_SIZE}
+     */
+    public void setDownloadPartSize(long downloadPartSize)
     {
-        Validate.notNull(bucketName);
-        return s3.getBucketPolicy(bucketName).getPolicyText();
+        Validate.isTrue(downloadPartSize > 0 && downloadPartSize <= Integer.MAX_VALUE,
+            "Download part size must be a positive int");
+        this.downloadPartSize = downloadPartSize;
     }
 
-    // 3.1.3
-    public void setBucketPolicy(@NotNull String bucketName, @NotNull String policyText)
-
+    /**
+     * Sets the maximum number of byte ranges of a single object fetched
+     * concurrently by parallel downloads. Defaults to
+     * {@link #DEFAULT_DOWNLOAD_CONCURRENCY}
+     */
+    public void setDownloadConcurrency(int downloadConcurrency)
     {
-        Validate.notNull(bucketName);
-        Validate.notNull(policyText);
-        s3.setBucketPolicy(bucketName, policyText);
+        Validate.isTrue(downloadConcurrency > 0, "Download concurrency must be greater than zero");
+        this.downloadConcurrency = downloadConcurrency;
     }
 
-    // 3.2.1
-    public void deleteBucketWebsiteConfiguration(@NotNull String bucketName)
+    /**
+     * Sets the maximum number of multi-object delete requests sent at the same time
+     * by bulk deletions. Defaults to {@link #DEFAULT_DELETE_CONCURRENCY}
+     */
+    public void setDeleteConcurrency(int deleteConcurrency)
+    {
+        Validate.isTrue(deleteConcurrency > 0, "Delete concurrency must be greater than zero");
+        this.deleteConcurrency = deleteConcurrency;
+    }
 
+    /**
+     * Sets the maximum number of objects copied at the same time by bulk copies.
+     * It is capped at the maximum number of connections, and so are the parts
+     * copied at the same time by all the objects copied in parts. Defaults to
+     * {@link #DEFAULT_COPY_CONCURRENCY}
+     */
+    public void setCopyConcurrency(int copyConcurrency)
     {
-        Validate.notNull(bucketName);
-        s3.deleteBucketWebsiteConfiguration(bucketName);
+        Validate.isTrue(copyConcurrency > 0, "Copy concurrency must be greater than zero");
+        this.copyConcurrency = copyConcurrency;
     }
 
-    // 3.2.2
-    public BucketWebsiteConfiguration getBucketWebsiteConfiguration(@NotNull String bucketName)
+    /**
+     * Sets the source object length above which objects are copied in several
+     * parts, using an S3 multipart upload. Single request copies are limited to
+     * 5 GB. Thresholds lower than that cost an extra metadata request for every
+     * copy whose source length is not already known, while with larger ones
+     * copies only fall back to parts when S3 rejects their source as too large.
+     * Defaults to {@link #DEFAULT_MULTIPART_COPY_THRESHOLD}
+     * 
+     * @param multipartCopyThreshold the threshold, or zero for disabling
+     *            multipart copies
+     */
+    public void setMultipartCopyThreshold(long multipartCopyThreshold)
+    {
+        Validate.isTrue(multipartCopyThreshold >= 0, "Multipart copy threshold must not be negative");
+        this.multipartCopyThreshold = multipartCopyThreshold;
+    }
 
+    /**
+     * Sets the size of each part of a multipart copy. It is increased as necessary
+     * for not exceeding the maximum number of parts per upload. Defaults to
+     * {@link #DEFAULT_MULTIPART_COPY_PART_SIZE}
+     */
+    public void setMultipartCopyPartSize(long multipartCopyPartSize)
     {
-        Validate.notNull(bucketName);
-        return s3.getBucketWebsiteConfiguration(bucketName);
+        Validate.isTrue(multipartCopyPartSize >= MIN_UPLOAD_PART_SIZE,
+            "Multipart copy part size must be at least " + MIN_UPLOAD_PART_SIZE);
+        this.multipartCopyPartSize = multipartCopyPartSize;
     }
 
-    // 3.2.3
-    public void setBucketWebsiteConfiguration(@NotNull String bucketName,
-                                              @NotNull BucketWebsiteConfiguration configuration)
+    /**
+     * Sets the maximum number of parts of a single multipart copy that are
+     * copied concurrently. Defaults to {@link #DEFAULT_MULTIPART_COPY_CONCURRENCY}
+     */
+    public void setMultipartCopyConcurrency(int multipartCopyConcurrency)
+    {
+        Validate.isTrue(multipartCopyConcurrency > 0, "Multipart copy concurrency must be greater than zero");
+        this.multipartCopyConcurrency = multipartCopyConcurrency;
+    }
 
+    /**
+     * Sets the maximum number of connections of the pool of the client, which
+     * caps the concurrency of copies. Defaults to
+     * {@link ClientConfiguration#DEFAULT_MAX_CONNECTIONS}
+     */
+    public void setMaxConnections(int maxConnections)
     {
-        Validate.notNull(bucketName);
-        Validate.notNull(configuration);
-        Validate.notNull(configuration.getIndexDocumentSuffix());
-        s3.setBucketWebsiteConfiguration(bucketName, configuration);
+        Validate.isTrue(maxConnections > 0, "Max connections must be greater than zero");
+        this.maxConnections = maxConnections;
     }
 
-    // 4.1
-    public String createObject(@NotNull S3ObjectId objectId,
-                               @NotNull S3ObjectContent content,
-                               String contentType,
-                               CannedAccessControlList acl,
-                               StorageClass storageClass,
-                               Map<String, String> userMetadata)
+    /**
+     * Sets the maximum number of listing pages fetched in background ahead of the
+     * consumer of a listing. Zero, the default, disables the prefetch
+     */
+    public void setListingPrefetchPages(int listingPrefetchPages)
     {
-        Validate.notNull(content);
-        PutObjectRequest request = content.createPutObjectRequest();
-        if (request.getMetadata() != null)
-        {
-            request.getMetadata().setContentType(contentType);
-        }
-        request.getMetadata().setUserMetadata(userMetadata);
-        request.setBucketName(objectId.getBucketName());
-        request.setKey(objectId.getKey());
-        request.setCannedAcl(acl);
-        if (storageClass != null)
-        {
-            request.setStorageClass(storageClass);
-        }
-        return s3.putObject(request).getVersionId();
+        Validate.isTrue(listingPrefetchPages >= 0, "Listing prefetch pages must not be negative");
+        this.listingPrefetchPages = listingPrefetchPages;
     }
 
-    // 4.2
-    public void deleteObject(@NotNull S3ObjectId objectId)
+    /**
+     * Sets the maximum number of pages either being fetched or fetched and not
+     * consumed yet by parallel listings. Defaults to
+     * {@link #DEFAULT_LISTING_CONCURRENCY}
+     */
+    public void setListingConcurrency(int listingConcurrency)
     {
-        Validate.notNull(objectId);
-        if (objectId.isVersioned())
-        {
-            s3.deleteVersion(objectId.getBucketName(), objectId.getKey(), objectId.getVersionId());
-        }
-        else
-        {
-            s3.deleteObject(objectId.getBucketName(), objectId.getKey());
-        }
+        Validate.isTrue(listingConcurrency > 0, "Listing concurrency must be greater than zero");
+        this.listingConcurrency = listingConcurrency;
     }
 
-    // 4.4
-    public String copyObject(@NotNull S3ObjectId source,
-                             @NotNull S3ObjectId destination,
-                             @NotNull ConditionalConstraints conditionalConstraints,
-                             CannedAccessControlList acl,
-                             StorageClass storageClass, 
-                             Map<String, String> userMetadata)
+    /**
+     * Enables caching the metadata of up to the given number of objects, for the
+     * given time. The metadata of objects changed through this client is
+     * discarded, but changes made by other clients are not noticed until entries
+     * expire. Caching is disabled by default
+     * 
+     * @param maxEntries the maximum number of objects whose metadata is cached, or
+     *            zero for disabling the cache
+     * @param ttlSeconds the time metadata is cached since it was fetched
+     */
+    public void setMetadataCache(int maxEntries, long ttlSeconds)
     {
-        Validate.notNull(source);
-        Validate.notNull(destination);
-        Validate.notNull(conditionalConstraints);
-        CopyObjectRequest request = new CopyObjectRequest(source.getBucketName(), source.getKey(),
-            source.getVersionId(), destination.getBucketName(), destination.getKey());
-        request.setCannedAccessControlList(acl);
-        if (storageClass != null)
-        {
-            request.setStorageClass(storageClass);
-        }
-        if (userMetadata != null)
-        {
-            request.setNewObjectMetadata(new ObjectMetadata());
-            request.getNewObjectMetadata().setUserMetadata(userMetadata);
-        }
-        conditionalConstraints.populate(request);
-        return s3.copyObject(request).getVersionId();
+        Validate.isTrue(maxEntries >= 0, "Metadata cache max entries must not be negative");
+        Validate.isTrue(ttlSeconds > 0, "Metadata cache TTL must be greater than zero");
+        setMetadataCache(maxEntries > 0 ? new MetadataCache(maxEntries, ttlSeconds * 1000) : null);
     }
 
-    // 4.5
-    public URI createObjectPresignedUri(@NotNull S3ObjectId objectId, Date expiration, HttpMethod method)
+    /**
+     * Caches the metadata of objects in the given cache, which may be shared with
+     * other clients, so that changes made through any of them are noticed by all
+     * of them.
+     * 
+     * @param metadataCache the cache, or null for disabling caching
+     */
+    public void setMetadataCache(MetadataCache metadataCache)
     {
-        Validate.notNull(objectId);
-        try
-        {
-            return s3.generatePresignedUrl(objectId.getBucketName(), objectId.getKey(), expiration, method)
-                .toURI();
-        }
-        catch (URISyntaxException e)
-        {
-            throw new AmazonClientException("S3 returned a malformed URI", e);
-        }
+        this.metadataCache = metadataCache;
     }
 
-    // 4.6
-    public void setObjectStorageClass(@NotNull S3ObjectId objectId, StorageClass newStorageClass)
+    /**
+     * Enables caching the contents answered by
+     * {@link #getObjectContent(S3ObjectId, ConditionalConstraints)} in the given
+     * directory, up to the given total size. Cached contents are revalidated on
+     * each read with a conditional GET, so unchanged contents are not transferred
+     * again. Caching is disabled by default
+     * 
+     * @param directory the directory contents are stored at, which is created if
+     *            it does not exist. Files left by previous caches are deleted
+     * @param maxBytes the maximum total size of the cached contents
+     */
+    public void setContentCache(@NotNull File directory, long maxBytes)
     {
-        s3.changeObjectStorageClass(objectId.getBucketName(), objectId.getKey(), newStorageClass);
+        Validate.notNull(directory);
+        Validate.isTrue(maxBytes > 0, "Content cache max size must be greater than zero");
+        setContentCache(new ContentCache(directory, maxBytes));
     }
 
-    // 4.3
-    public InputStream getObjectContent(@NotNull S3ObjectId objectId, @NotNull ConditionalConstraints conditionalConstraints)
+    /**
+     * Caches contents in the given cache, which may be shared with other clients,
+     * so that they are all bounded by the same total size, and changes made
+     * through any of them are noticed by all of them.
+     * 
+     * @param contentCache the cache, or null for disabling caching
+     */
+    public void setContentCache(ContentCache contentCache)
     {
-        Validate.notNull(objectId);
-        S3Object object = getObject(objectId, conditionalConstraints);
-        if (object == null)
-        {
-            return null;
-        }
-        return object.getObjectContent();
+        this.contentCache = contentCache;
     }
 
-    @NotNull
-    public ObjectMetadata getObjectMetadata(@NotNull S3ObjectId objectId)
+    /**
+     * Enables caching up to the given number of pre-signed URIs, so that URIs
+     * requested again for the same object and method are not signed again. A
+     * cached URI is reused only while it is valid for at least the given margin,
+     * and only if it does not expire after the requested expiration. Caching is
+     * disabled by default
+     * 
+     * @param maxEntries the maximum number of cached URIs, or zero for disabling
+     *            the cache
+     * @param marginSeconds the minimum time a cached URI must still be valid for
+     *            in order to be reused
+     */
+    public void setPresignedUriCache(int maxEntries, long marginSeconds)
     {
-        Validate.notNull(objectId);
-        return s3.getObjectMetadata(new GetObjectMetadataRequest(objectId.getBucketName(), objectId.getKey(),
-            objectId.getVersionId()));
+        Validate.isTrue(maxEntries >= 0, "Presigned URI cache max entries must not be negative");
+        Validate.isTrue(marginSeconds >= 0, "Presigned URI cache margin must not be negative");
+        this.presignedUriCache = maxEntries > 0 ? new PresignedUriCache(maxEntries, marginSeconds * 1000) : null;
     }
 
-    public S3Object getObject(@NotNull S3ObjectId objectId,
-                              @NotNull ConditionalConstraints conditionalConstraints)
+    /**
+     * Sets the time buckets regions are cached since they are fetched. Regions are
+     * cached for the life of this client by default. Already cached and seeded
+     * regions are discarded
+     * 
+     * @param ttlSeconds the time regions are cached, or zero for caching them
+     *            forever
+     */
+    public void setBucketRegionCacheTtl(long ttlSeconds)
     {
-        Validate.notNull(objectId);
-        GetObjectRequest request = new GetObjectRequest(objectId.getBucketName(), objectId.getKey(),
-            objectId.getVersionId());
-        conditionalConstraints.populate(request);
-        return s3.getObject(request);
+        Validate.isTrue(ttlSeconds >= 0, "Bucket region cache TTL must not be negative");
+        this.bucketRegionCache = new BucketRegionCache(ttlSeconds * 1000);
     }
 
-    public void setBucketVersioningStatus(@NotNull String bucketName,
-                                          @NotNull VersioningStatus versioningStatus)
+    /**
+     * Sets the region of the given bucket, so that it never needs to be fetched
+     */
+    public void seedBucketRegion(@NotNull String bucketName, @NotNull Region region)
     {
-        Validate.notNull(bucketName);
-        s3.setBucketVersioningConfiguration(new SetBucketVersioningConfigurationRequest(bucketName,
-            new BucketVersioningConfiguration(versioningStatus.toString())));
+        Validate.notEmpty(bucketName);
+        Validate.notNull(region);
+        bucketRegionCache.seed(bucketName, region);
     }
 
-    public URI createObjectUriUsingDefaultServer(S3ObjectId objectId, boolean secure)
+    private class S3ObjectSummaryIterable extends S3ObjectListingIterable<S3ObjectSummary>
     {
-        Validate.notNull(objectId);
-        return Region.getDefaultRegion().getObjectUri(objectId, secure);
+
+        public S3ObjectSummaryIterable(String bucketName, String prefix, String delimiter, String marker)
+        {
+            super(bucketName, prefix, delimiter, marker);
+        }
+
+        @Override
+        protected Iterator<S3ObjectSummary> getSummariesIterator(ObjectListing summaryListing)
+        {
+            return summaryListing.getObjectSummaries().iterator();
+        }
     }
 
-    public URI createObjectUri(S3ObjectId objectId, boolean secure)
+    private class S3CommonPrefixIterable extends S3ObjectListingIterable<String>
     {
-        Validate.notNull(objectId);
-        String location = s3.getBucketLocation(objectId.getBucketName());
-        return Region.from(location).getObjectUri(objectId, secure);
+
+        public S3CommonPrefixIterable(String bucketName, String prefix, String delimiter)
+        {
+            super(bucketName, prefix, delimiter, null);
+        }
+
+        @Override
+        protected Iterator<String> getSummariesIterator(ObjectListing summaryListing)
+        {
+            return summaryListing.getCommonPrefixes().iterator();
+        }
     }
 
-    private class S3ObjectSummaryIterable extends S3SummaryIterable<S3ObjectSummary, ObjectListing>
+    private abstract class S3ObjectListingIterable<SummaryType> extends
+        S3SummaryIterable<SummaryType, ObjectListing>
     {
 
         private String bucketName;
         private String prefix;
+        private String delimiter;
+        private String marker;
 
-        public S3ObjectSummaryIterable(String bucketName, String prefix)
+        public S3ObjectListingIterable(String bucketName, String prefix, String delimiter, String marker)
         {
             this.bucketName = bucketName;
             this.prefix = prefix;
-        }
-
-        @Override
-        protected Iterator<S3ObjectSummary> getSummariesIterator(ObjectListing summaryListing)
-        {
-            return summaryListing.getObjectSummaries().iterator();
+            this.delimiter = delimiter;
+            this.marker = marker;
         }
 
         @Override
@@ -336,7 +2076,11 @@ public class SimpleAmazonS3AmazonDevKitImpl implements SimpleAmazonS3
         @Override
         protected ObjectListing listSummaries()
         {
-            return s3.listObjects(bucketName, prefix);
+            if (delimiter == null && marker == null)
+            {
+                return s3.listObjects(bucketName, prefix);
+            }
+            return s3.listObjects(new ListObjectsRequest(bucketName, prefix, marker, delimiter, null));
         }
     }
 
@@ -344,10 +2088,16 @@ public class SimpleAmazonS3AmazonDevKitImpl implements SimpleAmazonS3
     {
 
         private String bucketName;
+        private String prefix;
+        private String keyMarker;
+        private String versionIdMarker;
 
-        public S3VersionSummaryIterable(String bucketName)
+        public S3VersionSummaryIterable(String bucketName, String prefix, String keyMarker, String versionIdMarker)
         {
             this.bucketName = bucketName;
+            this.prefix = prefix;
+            this.keyMarker = keyMarker;
+            this.versionIdMarker = versionIdMarker;
         }
 
         @Override
@@ -371,7 +2121,12 @@ public class SimpleAmazonS3AmazonDevKitImpl implements SimpleAmazonS3
         @Override
         protected VersionListing listSummaries()
         {
-            return s3.listVersions(bucketName, null);
+            if (keyMarker == null)
+            {
+                return s3.listVersions(bucketName, prefix);
+            }
+            return s3.listVersions(new ListVersionsRequest(bucketName, prefix, keyMarker, versionIdMarker, null,
+                null));
         }
     }
 
@@ -380,16 +2135,20 @@ public class SimpleAmazonS3AmazonDevKitImpl implements SimpleAmazonS3
      * to be compatible with some mule's collection splitting
      */
     private abstract class S3SummaryIterable<SummaryType, ListingType> extends
-        AbstractCollection<SummaryType> implements Iterable<SummaryType>
+        LazyCollection<SummaryType> implements Iterable<SummaryType>
     {
 
         public Iterator<SummaryType> iterator()
         {
             final ListingType summaryListing = listSummaries();
-            return new Iterator<SummaryType>()
+            return open(new CloseableIterator<SummaryType>()
             {
                 private ListingType currentList = summaryListing;
                 private Iterator<SummaryType> currentIter = getSummariesIterator(summaryListing);
+                private PagePrefetcher<ListingType> prefetcher = listingPrefetchPages > 0
+                                                                 && isTruncated(summaryListing)
+                    ? newPrefetcher(summaryListing) : null;
+                private boolean closed;
 
                 public boolean hasNext()
                 {
@@ -408,14 +2167,42 @@ public class SimpleAmazonS3AmazonDevKitImpl implements SimpleAmazonS3
                     throw new UnsupportedOperationException();
                 }
 
+                public void close()
+                {
+                    closed = true;
+                    currentIter = Collections.<SummaryType> emptyList().iterator();
+                    if (prefetcher != null)
+                    {
+                        prefetcher.cancel();
+                    }
+                }
+
                 private void updateIter()
                 {
-                    if (!currentIter.hasNext() && isTruncated(currentList))
+                    while (!closed && !currentIter.hasNext() && isTruncated(currentList))
                     {
-                        currentList = listNext(currentList);
+                        currentList = prefetcher != null ? prefetcher.next() : listNext(currentList);
                         currentIter = getSummariesIterator(currentList);
                     }
                 }
+            });
+        }
+
+        private PagePrefetcher<ListingType> newPrefetcher(ListingType summaryListing)
+        {
+            return new PagePrefetcher<ListingType>(summaryListing, listingPrefetchPages)
+            {
+                @Override
+                protected boolean isTruncated(ListingType page)
+                {
+                    return S3SummaryIterable.this.isTruncated(page);
+                }
+
+                @Override
+                protected ListingType fetchNext(ListingType page)
+                {
+                    return listNext(page);
+                }
             };
         }
 
@@ -426,25 +2213,6 @@ public class SimpleAmazonS3AmazonDevKitImpl implements SimpleAmazonS3
         protected abstract ListingType listSummaries();
 
         protected abstract Iterator<SummaryType> getSummariesIterator(ListingType summaryListing);
-        
-        /**Hack for enabling collection splitter to work, which forces evaluation of whole iterable.
-         * This will not work with huge lists, but there is no better solution*/
-        @Override
-        public Object[] toArray()
-        {
-            LinkedList<Object> l = new LinkedList<Object>();
-            for (Object o : this)
-            {
-                l.add(o);
-            }
-            return l.toArray();
-        }
-
-        @Override
-        public int size()
-        {
-            throw new UnsupportedOperationException();
-        }
     }
 
 }
@@ -0,0 +1,90 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.simpleapi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A behavior that applies uniformly to every call of a {@link SimpleAmazonS3},
+ * such as retrying or throttling it. Instead of re-implementing each operation,
+ * decorators intercept them through a dynamic proxy - see
+ * {@link #toSimpleAmazonS3()} - so they keep working as operations are added.
+ * Decorators can be stacked, by decorating the proxy of another decorator.
+ */
+public abstract class SimpleAmazonS3Decorator implements InvocationHandler
+{
+    private final SimpleAmazonS3 delegate;
+
+    protected SimpleAmazonS3Decorator(@NotNull SimpleAmazonS3 delegate)
+    {
+        Validate.notNull(delegate);
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return a {@link SimpleAmazonS3} whose calls are handled by this decorator
+     */
+    public SimpleAmazonS3 toSimpleAmazonS3()
+    {
+        return (SimpleAmazonS3) Proxy.newProxyInstance(SimpleAmazonS3.class.getClassLoader(),
+            new Class<?>[]{SimpleAmazonS3.class}, this);
+    }
+
+    public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        if (method.getDeclaringClass() == Object.class)
+        {
+            if (method.getName().equals("equals"))
+            {
+                return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode"))
+            {
+                return System.identityHashCode(proxy);
+            }
+            return getClass().getSimpleName() + "[" + delegate + "]";
+        }
+        return invoke(method, args);
+    }
+
+    /**
+     * Handles a call to an operation, which is performed by invoking
+     * {@link #proceed(Method, Object[])}, as many times as necessary
+     *
+     * @param method the called operation
+     * @param args the arguments of the call, or null if it has none
+     * @return the result of the operation
+     */
+    protected abstract Object invoke(Method method, Object[] args) throws Throwable;
+
+    /**
+     * Performs an operation on the decorated {@link SimpleAmazonS3}, throwing its
+     * exceptions unwrapped.
+     */
+    protected final Object proceed(Method method, Object[] args) throws Throwable
+    {
+        try
+        {
+            return method.invoke(delegate, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+    }
+}
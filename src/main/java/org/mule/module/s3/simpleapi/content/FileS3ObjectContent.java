@@ -24,17 +24,37 @@ import org.apache.commons.lang.Validate;
 public class FileS3ObjectContent implements S3ObjectContent
 {
     private final File file;
+    private final String md5base64;
 
     public FileS3ObjectContent(@NotNull File file)
+    {
+        this(file, null);
+    }
+
+    /**
+     * @param file the content
+     * @param md5base64 the content md5, encoded in base 64
+     */
+    public FileS3ObjectContent(@NotNull File file, String md5base64)
     {
         Validate.notNull(file);
         this.file = file;
+        this.md5base64 = md5base64;
     }
 
     public PutObjectRequest createPutObjectRequest()
     {
         PutObjectRequest request = new PutObjectRequest(null, null, file);
         request.setMetadata(new ObjectMetadata());
+        if (md5base64 != null)
+        {
+            request.getMetadata().setContentMD5(md5base64);
+        }
         return request;
     }
+
+    public boolean isRepeatable()
+    {
+        return true;
+    }
 }
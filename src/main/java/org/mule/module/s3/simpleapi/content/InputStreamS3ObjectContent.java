@@ -10,8 +10,6 @@
 
 package org.mule.module.s3.simpleapi.content;
 
-import static org.mule.module.s3.util.InternalUtils.coalesce;
-
 import org.mule.module.s3.simpleapi.SimpleAmazonS3.S3ObjectContent;
 
 import com.amazonaws.services.s3.model.ObjectMetadata;
@@ -26,21 +24,31 @@ import org.apache.commons.lang.Validate;
 public class InputStreamS3ObjectContent implements S3ObjectContent
 {
     private final InputStream inputStream;
-    private final long length;
+    private final Long length;
     private final String md5base64;
 
+    /**
+     * @param inputStream the content
+     * @param length the content length, or null if it is unknown, in which case
+     *            the content has no Content-Length and it is uploaded while it is
+     *            read
+     * @param md5base64 the content md5, encoded in base 64
+     */
     public InputStreamS3ObjectContent(@NotNull InputStream inputStream, Long length, String md5base64)
     {
         Validate.notNull(inputStream);
         this.inputStream = inputStream;
-        this.length = coalesce(length, 0L);
+        this.length = length;
         this.md5base64 = md5base64;
     }
 
     public PutObjectRequest createPutObjectRequest()
     {
         ObjectMetadata metadata = new ObjectMetadata();
-        metadata.setContentLength(length);
+        if (length != null)
+        {
+            metadata.setContentLength(length);
+        }
         if (md5base64 != null)
         {
             metadata.setContentMD5(md5base64);
@@ -48,4 +56,12 @@ public class InputStreamS3ObjectContent implements S3ObjectContent
         return new PutObjectRequest(null, null, inputStream, metadata);
     }
 
+    /**
+     * @return false, as the stream is consumed by the first upload
+     */
+    public boolean isRepeatable()
+    {
+        return false;
+    }
+
 }
@@ -0,0 +1,41 @@
+/**
+ * Mule S3 Cloud Connector
+ *
+ * Copyright (c) MuleSoft, Inc.  All rights reserved.  http://www.mulesoft.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+
+package org.mule.module.s3.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A {@link ThreadFactory} that creates named daemon threads, so that pools used
+ * internally by the connector never prevent the JVM from shutting down
+ */
+public final class DaemonThreadFactory implements ThreadFactory
+{
+    private final String namePrefix;
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    public DaemonThreadFactory(@NotNull String namePrefix)
+    {
+        Validate.notEmpty(namePrefix);
+        this.namePrefix = namePrefix;
+    }
+
+    public Thread newThread(Runnable runnable)
+    {
+        Thread thread = new Thread(runnable, namePrefix + "-" + threadNumber.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -16,33 +16,74 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.refEq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mule.module.s3.AccessControlList.PRIVATE;
 import static org.mule.module.s3.AccessControlList.PUBLIC_READ;
 import static org.mule.module.s3.AccessControlList.PUBLIC_READ_WRITE;
 
+import org.mule.module.s3.simpleapi.BulkCopyResult;
+import org.mule.module.s3.simpleapi.BulkDeleteException;
+import org.mule.module.s3.simpleapi.BulkDeleteResult;
+import org.mule.module.s3.simpleapi.CacheStatistics;
+import org.mule.module.s3.simpleapi.ConcurrencyLimitStatistics;
+import org.mule.module.s3.simpleapi.ConcurrencyLimitingAmazonS3;
+import org.mule.module.s3.simpleapi.ListingPage;
+import org.mule.module.s3.simpleapi.MetadataCache;
+import org.mule.module.s3.simpleapi.MetricsSimpleAmazonS3;
+import org.mule.module.s3.simpleapi.OperationMetrics;
+import org.mule.module.s3.simpleapi.RateLimitStatistics;
+import org.mule.module.s3.simpleapi.RateLimitingAmazonS3;
 import org.mule.module.s3.simpleapi.Region;
+import org.mule.module.s3.simpleapi.RetryStatistics;
+import org.mule.module.s3.simpleapi.RetryBudgets;
+import org.mule.module.s3.simpleapi.RetryingSimpleAmazonS3;
+import org.mule.module.s3.simpleapi.S3Metrics;
+import org.mule.module.s3.simpleapi.S3ObjectId;
 import org.mule.module.s3.simpleapi.SimpleAmazonS3AmazonDevKitImpl;
 import org.mule.module.s3.simpleapi.VersioningStatus;
 import org.mule.module.s3.simpleapi.SimpleAmazonS3.S3ObjectContent;
 import org.mule.module.s3.simpleapi.content.FileS3ObjectContent;
+import org.mule.module.s3.simpleapi.content.InputStreamS3ObjectContent;
 
 import static org.hamcrest.CoreMatchers.*;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.BucketPolicy;
+import com.amazonaws.services.s3.model.BucketVersioningConfiguration;
 import com.amazonaws.services.s3.model.BucketWebsiteConfiguration;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
 import com.amazonaws.services.s3.model.CopyObjectResult;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.CopyPartResult;
 import com.amazonaws.services.s3.model.CreateBucketRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult.DeletedObject;
 import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ListVersionsRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
@@ -52,23 +93,46 @@ import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.model.S3VersionSummary;
 import com.amazonaws.services.s3.model.SetBucketVersioningConfigurationRequest;
 import com.amazonaws.services.s3.model.StorageClass;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
 import com.amazonaws.services.s3.model.VersionListing;
+import com.amazonaws.util.BinaryUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.NullInputStream;
 import org.apache.commons.lang.ObjectUtils;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class S3TestCase
 {
@@ -115,7 +179,7 @@ public class S3TestCase
         when(client.copyObject(refEq(request))).thenReturn(result);
 
         assertEquals("12", connector.copyObject(MY_BUCKET, MY_OBJECT, null, null, "myObject2", PUBLIC_READ,
-            org.mule.module.s3.StorageClass.STANDARD, null, null, null));
+            org.mule.module.s3.StorageClass.STANDARD, null, null, null, null, null));
     }
 
     @Test
@@ -130,7 +194,7 @@ public class S3TestCase
         when(client.copyObject(refEq(request))).thenReturn(result);
 
         assertEquals("12", connector.copyObject(MY_BUCKET, MY_OBJECT, "12", null, "myObject2", PRIVATE,
-            org.mule.module.s3.StorageClass.STANDARD, null, null, null));
+            org.mule.module.s3.StorageClass.STANDARD, null, null, null, null, null));
     }
 
     @Test
@@ -142,7 +206,21 @@ public class S3TestCase
         when(client.copyObject(refEq(request))).thenReturn(new CopyObjectResult());
 
         assertNull(connector.copyObject(MY_BUCKET, MY_OBJECT, null, "myBucket2", "myObject2", PRIVATE,
-            org.mule.module.s3.StorageClass.STANDARD, null, null, null));
+            org.mule.module.s3.StorageClass.STANDARD, null, null, null, null, null));
+    }
+
+    @Test
+    public void copyObjectWithNonMatchingETag()
+    {
+        CopyObjectRequest request = new CopyObjectRequest(MY_BUCKET, MY_OBJECT, MY_BUCKET, "myObject2");
+        request.setCannedAccessControlList(CannedAccessControlList.Private);
+        request.setStorageClass(StorageClass.Standard);
+        request.setNonmatchingETagConstraints(Collections.singletonList("etag1"));
+        when(client.copyObject(refEq(request))).thenReturn(null);
+
+        assertSame(NotModified.INSTANCE, connector.copyObject(MY_BUCKET, MY_OBJECT, null, null, "myObject2", PRIVATE,
+            org.mule.module.s3.StorageClass.STANDARD, null, null, null, null, "etag1"));
+        verify(client).copyObject(refEq(request));
     }
 
     @Test
@@ -201,6 +279,189 @@ public class S3TestCase
             "text/plain", PUBLIC_READ, org.mule.module.s3.StorageClass.STANDARD, null));
     }
 
+    @Test
+    public void createObjectMultipart() throws Exception
+    {
+        connector.setClient(newMultipartClient());
+        CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+        result.setVersionId("12");
+        when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(result);
+
+        assertEquals("12", connector.createObject(MY_BUCKET, MY_OBJECT, "hello multipart world", null, null,
+            "text/plain", PRIVATE, org.mule.module.s3.StorageClass.STANDARD, null));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> request = ArgumentCaptor.forClass(
+            CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(request.capture());
+        assertEquals("upload1", request.getValue().getUploadId());
+        assertEquals(3, request.getValue().getPartETags().size());
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(i + 1, request.getValue().getPartETags().get(i).getPartNumber());
+            assertEquals("etag" + (i + 1), request.getValue().getPartETags().get(i).getETag());
+        }
+        verify(client, never()).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    public void createObjectMultipartAbortsOnFailure() throws Exception
+    {
+        connector.setClient(newMultipartClient());
+        when(client.uploadPart(any(UploadPartRequest.class))).thenThrow(new AmazonServiceException("boom"));
+        try
+        {
+            connector.createObject(MY_BUCKET, MY_OBJECT, "hello multipart world", null, null, null, PRIVATE,
+                org.mule.module.s3.StorageClass.STANDARD, null);
+            fail();
+        }
+        catch (AmazonServiceException e)
+        {
+            assertEquals("boom", e.getMessage());
+        }
+        verify(client).abortMultipartUpload(refEq(new AbortMultipartUploadRequest(MY_BUCKET, MY_OBJECT, "upload1")));
+        verify(client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void createObjectMultipartWithMd5() throws Exception
+    {
+        connector.setClient(newMultipartClient());
+        String content = "hello multipart world";
+        String contentMd5 = BinaryUtils.toBase64(MessageDigest.getInstance("MD5").digest(content.getBytes()));
+
+        connector.createObject(MY_BUCKET, MY_OBJECT, content, null, contentMd5, null, PRIVATE,
+            org.mule.module.s3.StorageClass.STANDARD, null);
+
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(client, times(3)).uploadPart(parts.capture());
+        for (UploadPartRequest part : parts.getAllValues())
+        {
+            int offset = (part.getPartNumber() - 1) * 8;
+            byte[] partContent = content.substring(offset, Math.min(offset + 8, content.length())).getBytes();
+            assertEquals(BinaryUtils.toBase64(MessageDigest.getInstance("MD5").digest(partContent)),
+                part.getMd5Digest());
+        }
+        verify(client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void createObjectMultipartWithWrongMd5Aborts() throws Exception
+    {
+        connector.setClient(newMultipartClient());
+        try
+        {
+            connector.createObject(MY_BUCKET, MY_OBJECT, "hello multipart world", null, "A5B69...", null,
+                PRIVATE, org.mule.module.s3.StorageClass.STANDARD, null);
+            fail();
+        }
+        catch (AmazonClientException e)
+        {
+            // expected
+        }
+        verify(client).abortMultipartUpload(refEq(new AbortMultipartUploadRequest(MY_BUCKET, MY_OBJECT, "upload1")));
+        verify(client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void createObjectMultipartFileWithMd5() throws Exception
+    {
+        connector.setClient(newMultipartClient());
+        String content = "hello multipart world";
+        String contentMd5 = BinaryUtils.toBase64(MessageDigest.getInstance("MD5").digest(content.getBytes()));
+        File file = File.createTempFile("mules3", ".tmp");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, content);
+
+        connector.createObject(MY_BUCKET, MY_OBJECT, file, null, contentMd5, null, PRIVATE,
+            org.mule.module.s3.StorageClass.STANDARD, null);
+
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(client, times(3)).uploadPart(parts.capture());
+        for (UploadPartRequest part : parts.getAllValues())
+        {
+            int offset = (part.getPartNumber() - 1) * 8;
+            byte[] partContent = content.substring(offset, Math.min(offset + 8, content.length())).getBytes();
+            assertEquals(BinaryUtils.toBase64(MessageDigest.getInstance("MD5").digest(partContent)),
+                part.getMd5Digest());
+        }
+        verify(client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void createObjectMultipartFileWithWrongMd5Aborts() throws Exception
+    {
+        connector.setClient(newMultipartClient());
+        File file = File.createTempFile("mules3", ".tmp");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "hello multipart world");
+        try
+        {
+            connector.createObject(MY_BUCKET, MY_OBJECT, file, null, "A5B69...", null, PRIVATE,
+                org.mule.module.s3.StorageClass.STANDARD, null);
+            fail();
+        }
+        catch (AmazonClientException e)
+        {
+            // expected
+        }
+        verify(client).abortMultipartUpload(refEq(new AbortMultipartUploadRequest(MY_BUCKET, MY_OBJECT, "upload1")));
+        verify(client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void createObjectEmptyContentIsNotStreamed() throws Exception
+    {
+        when(client.putObject(argThat(new ContentMetadataMatcher(0, "A5B69...", null)))).thenReturn(
+            new PutObjectResult());
+        assertNull(connector.createObject(MY_BUCKET, MY_OBJECT, new byte[0], null, "A5B69...", null, PRIVATE,
+            org.mule.module.s3.StorageClass.STANDARD, null));
+        verify(client).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    public void createObjectStreamingGrowsPartSize() throws Exception
+    {
+        connector.setClient(newMultipartClient());
+        connector.setStreamingUpload(true);
+        byte[] content = new byte[2000 * 8 + 16];
+
+        connector.createObject(MY_BUCKET, MY_OBJECT, new ByteArrayInputStream(content), null, null, null,
+            PRIVATE, org.mule.module.s3.StorageClass.STANDARD, null);
+
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(client, times(2001)).uploadPart(parts.capture());
+        for (UploadPartRequest part : parts.getAllValues())
+        {
+            assertEquals(part.getPartNumber() <= 2000 ? 8 : 16, part.getPartSize());
+        }
+    }
+
+    @Test
+    public void createObjectStreamingShortContent() throws Exception
+    {
+        connector.setStreamingUpload(true);
+        when(client.putObject(argThat(new ContentMetadataMatcher(5, "A5B69...", null)))).thenReturn(
+            new PutObjectResult());
+        assertNull(connector.createObject(MY_BUCKET, MY_OBJECT, new ByteArrayInputStream("hello".getBytes()),
+            null, "A5B69...", null, PRIVATE, org.mule.module.s3.StorageClass.STANDARD, null));
+        verify(client, never()).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void createObjectStreamingLongContent() throws Exception
+    {
+        connector.setClient(newMultipartClient());
+        connector.setStreamingUpload(true);
+        when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(
+            new CompleteMultipartUploadResult());
+
+        assertNull(connector.createObject(MY_BUCKET, MY_OBJECT, new ByteArrayInputStream(
+            "hello multipart world".getBytes()), null, null, null, PRIVATE,
+            org.mule.module.s3.StorageClass.STANDARD, null));
+        verify(client, times(3)).uploadPart(any(UploadPartRequest.class));
+        verify(client, never()).putObject(any(PutObjectRequest.class));
+    }
+
     @Test
     public void getBucketPolicy()
     {
@@ -219,6 +480,215 @@ public class S3TestCase
             null, null, "GET"));
     }
 
+    @Test
+    public void createPresignedUris() throws Exception
+    {
+        Date expiration = new Date(System.currentTimeMillis() + 3600 * 1000);
+        when(client.generatePresignedUrl(MY_BUCKET, "foo", expiration, HttpMethod.GET)).thenReturn(
+            new URL("http://www.foo.com"));
+        when(client.generatePresignedUrl(MY_BUCKET, "bar", expiration, HttpMethod.GET)).thenReturn(
+            new URL("http://www.bar.com"));
+        assertEquals(Arrays.asList(new URI("http://www.foo.com"), new URI("http://www.bar.com")),
+            connector.createObjectPresignedUris(MY_BUCKET, Arrays.asList("foo", "bar"), expiration, "GET"));
+    }
+
+    @Test
+    public void createPresignedUrisCached() throws Exception
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setPresignedUriCache(10, 60);
+        connector.setClient(simpleS3);
+        when(client.generatePresignedUrl(eq(MY_BUCKET), eq(MY_OBJECT), any(Date.class), eq(HttpMethod.GET))).thenReturn(
+            new URL("http://www.foo.com"));
+        Date expiration = new Date(System.currentTimeMillis() + 3600 * 1000);
+
+        connector.createObjectPresignedUris(MY_BUCKET, Arrays.asList(MY_OBJECT), expiration, "GET");
+        connector.createObjectPresignedUris(MY_BUCKET, Arrays.asList(MY_OBJECT), expiration, "GET");
+        verify(client, times(1)).generatePresignedUrl(MY_BUCKET, MY_OBJECT, expiration, HttpMethod.GET);
+
+        // an uri that would outlive the requested expiration is not reused
+        connector.createObjectPresignedUris(MY_BUCKET, Arrays.asList(MY_OBJECT), null, "GET");
+        // nor an uri that is about to expire
+        Date shortExpiration = new Date(System.currentTimeMillis() + 30 * 1000);
+        connector.createObjectPresignedUri(MY_BUCKET, MY_OBJECT, null, shortExpiration, "GET");
+        connector.createObjectPresignedUri(MY_BUCKET, MY_OBJECT, null, shortExpiration, "GET");
+        verify(client, times(4)).generatePresignedUrl(eq(MY_BUCKET), eq(MY_OBJECT), any(Date.class),
+            eq(HttpMethod.GET));
+
+        CacheStatistics statistics = connector.getPresignedUriCacheStatistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(4, statistics.getMisses());
+    }
+
+    @Test
+    public void connectWithConnectionPoolSettings() throws Exception
+    {
+        S3Connector connector = new S3Connector();
+        connector.setMaxConnections(20);
+        connector.setSocketTimeout(10000);
+        connector.setIdleConnectionTimeout(60);
+        connector.connect("", "");
+        try
+        {
+            ConnectionPoolStatistics statistics = connector.getConnectionPoolStatistics();
+            assertEquals(20, statistics.getMaxConnections());
+            assertEquals(0, statistics.getLeasedConnections());
+            assertEquals(0, statistics.getAvailableConnections());
+        }
+        finally
+        {
+            connector.disconnect();
+        }
+        assertEquals(0, connector.getConnectionPoolStatistics().getMaxConnections());
+    }
+
+    @Test
+    public void failedConnectReleasesSharedResources() throws Exception
+    {
+        S3Connector connector = new S3Connector();
+        connector.setMetricsName("failed");
+        connector.setMultipartUploadThreshold(0L);
+        try
+        {
+            connector.connect("", "");
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        assertFalse(connector.isConnected());
+        assertEquals(0, connector.getConnectionPoolStatistics().getMaxConnections());
+        assertTrue(ManagementFactory.getPlatformMBeanServer()
+            .queryNames(new ObjectName("org.mule.module.s3:type=S3Metrics,*"), null)
+            .isEmpty());
+    }
+
+    @Test
+    public void connectionsShareClients() throws Exception
+    {
+        S3Connector first = new S3Connector();
+        S3Connector second = new S3Connector();
+        S3Connector other = new S3Connector();
+        other.setMaxConnections(10);
+        S3Connector otherSecret = new S3Connector();
+        int clients = SharedAmazonS3Clients.size();
+        first.connect("AKIDEXAMPLE1234", "secret");
+        second.connect("AKIDEXAMPLE1234", "secret");
+        other.connect("AKIDEXAMPLE1234", "secret");
+        otherSecret.connect("AKIDEXAMPLE1234", "other secret");
+        assertEquals(clients + 3, SharedAmazonS3Clients.size());
+        assertEquals("****1234", first.connectionId());
+
+        first.disconnect();
+        assertEquals(clients + 3, SharedAmazonS3Clients.size());
+        second.disconnect();
+        other.disconnect();
+        otherSecret.disconnect();
+        assertEquals(clients, SharedAmazonS3Clients.size());
+    }
+
+    @Test
+    public void getObjectMetadataAsync() throws Exception
+    {
+        ObjectMetadata metadata = new ObjectMetadata();
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(metadata);
+        assertSame(metadata, connector.getObjectMetadataAsync(MY_BUCKET, MY_OBJECT, null).get());
+    }
+
+    @Test
+    public void getObjectAsyncNotModified() throws Exception
+    {
+        when(client.getObject(any(GetObjectRequest.class))).thenReturn(null);
+        assertSame(NotModified.INSTANCE, connector.getObjectAsync(MY_BUCKET, MY_OBJECT, null, null, null, null,
+            "etag1").get());
+    }
+
+    @Test
+    public void copyObjectAsyncNotModified() throws Exception
+    {
+        when(client.copyObject(any(CopyObjectRequest.class))).thenReturn(null);
+        assertSame(NotModified.INSTANCE, connector.copyObjectAsync(MY_BUCKET, MY_OBJECT, null, null, "myObject2",
+            PRIVATE, org.mule.module.s3.StorageClass.STANDARD, null, null, null, null, "etag1").get());
+    }
+
+    @Test
+    public void deleteObjectAsyncFailure() throws Exception
+    {
+        doThrow(new AmazonServiceException("Access denied")).when(client).deleteObject(MY_BUCKET, MY_OBJECT);
+        try
+        {
+            connector.deleteObjectAsync(MY_BUCKET, MY_OBJECT, null).get();
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof AmazonServiceException);
+        }
+    }
+
+    @Test
+    public void disconnectWaitsForAsyncOperations() throws Exception
+    {
+        final CountDownLatch deleting = new CountDownLatch(1);
+        doAnswer(new Answer<Void>()
+        {
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                deleting.await();
+                return null;
+            }
+        }).when(client).deleteObject(MY_BUCKET, MY_OBJECT);
+        Future<Void> deleted = connector.deleteObjectAsync(MY_BUCKET, MY_OBJECT, null);
+        Thread disconnecting = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                connector.disconnect();
+            }
+        };
+
+        disconnecting.start();
+        disconnecting.join(200);
+        assertTrue(disconnecting.isAlive());
+        deleting.countDown();
+        disconnecting.join(5000);
+
+        assertFalse(disconnecting.isAlive());
+        assertTrue(deleted.isDone());
+    }
+
+    @Test
+    public void disconnectAbandonsAsyncOperationsAfterTimeout() throws Exception
+    {
+        connector.setAsyncConcurrency(1);
+        connector.setAsyncShutdownTimeout(50L);
+        doAnswer(new Answer<Void>()
+        {
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                new CountDownLatch(1).await();
+                return null;
+            }
+        }).when(client).deleteObject(MY_BUCKET, MY_OBJECT);
+        Future<Void> running = connector.deleteObjectAsync(MY_BUCKET, MY_OBJECT, null);
+        Future<Void> waiting = connector.deleteObjectAsync(MY_BUCKET, MY_OBJECT, null);
+
+        connector.disconnect();
+
+        assertTrue(waiting.isCancelled());
+        try
+        {
+            running.get();
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        }
+    }
+
     @Test
     public void getObjectContent() throws Exception
     {
@@ -227,7 +697,7 @@ public class S3TestCase
         s3Object.setObjectContent(content);
 
         when(client.getObject(refEq(new GetObjectRequest(MY_BUCKET, MY_OBJECT)))).thenReturn(s3Object);
-        assertSame(content, connector.getObjectContent(MY_BUCKET, MY_OBJECT, null, null, null));
+        assertSame(content, connector.getObjectContent(MY_BUCKET, MY_OBJECT, null, null, null, null, null));
     }
 
     @Test
@@ -238,7 +708,110 @@ public class S3TestCase
         s3Object.setObjectContent(content);
 
         when(client.getObject(refEq(new GetObjectRequest(MY_BUCKET, MY_OBJECT, "9")))).thenReturn(s3Object);
-        assertSame(content, connector.getObjectContent(MY_BUCKET, MY_OBJECT, "9", null, null));
+        assertSame(content, connector.getObjectContent(MY_BUCKET, MY_OBJECT, "9", null, null, null, null));
+    }
+
+    @Test
+    public void getObjectContentNotModified() throws Exception
+    {
+        GetObjectRequest request = new GetObjectRequest(MY_BUCKET, MY_OBJECT);
+        request.setNonmatchingETagConstraints(Collections.singletonList("etag1"));
+        when(client.getObject(refEq(request))).thenReturn(null);
+
+        assertSame(NotModified.INSTANCE, connector.getObjectContent(MY_BUCKET, MY_OBJECT, null, null, null, null,
+            "etag1"));
+        verify(client).getObject(refEq(request));
+    }
+
+    @Test
+    public void getObjectSuffixRangeWithNonMatchingETag() throws Exception
+    {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(20);
+        metadata.setHeader("ETag", "etag1");
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(metadata);
+
+        assertSame(NotModified.INSTANCE, connector.getObjectRange(MY_BUCKET, MY_OBJECT, null, null, 5L, null, null,
+            null, "etag1"));
+        verify(client, never()).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void getObjectRange() throws Exception
+    {
+        S3Object s3Object = new S3Object();
+        NullInputStream content = new NullInputStream(0);
+        s3Object.setObjectContent(content);
+        GetObjectRequest request = new GetObjectRequest(MY_BUCKET, MY_OBJECT);
+        request.setRange(10, 14);
+        when(client.getObject(refEq(request))).thenReturn(s3Object);
+
+        assertSame(content, connector.getObjectRange(MY_BUCKET, MY_OBJECT, null, 10L, 5L, null, null, null,
+            null));
+    }
+
+    @Test
+    public void getObjectSuffixRange() throws Exception
+    {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(1000);
+        metadata.setHeader("ETag", "etag1");
+        when(client.getObjectMetadata(refEq(new GetObjectMetadataRequest(MY_BUCKET, MY_OBJECT)))).thenReturn(
+            metadata);
+        S3Object s3Object = new S3Object();
+        NullInputStream content = new NullInputStream(0);
+        s3Object.setObjectContent(content);
+        GetObjectRequest request = new GetObjectRequest(MY_BUCKET, MY_OBJECT).withMatchingETagConstraint("etag1");
+        request.setRange(936, 999);
+        when(client.getObject(refEq(request))).thenReturn(s3Object);
+
+        assertSame(content, connector.getObjectRange(MY_BUCKET, MY_OBJECT, null, null, 64L, null, null, null,
+            null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getObjectRangeWithoutOffsetNorLength() throws Exception
+    {
+        connector.getObjectRange(MY_BUCKET, MY_OBJECT, null, null, null, null, null, null, null);
+    }
+
+    @Test
+    public void getObjectContentInParallel() throws Exception
+    {
+        String content = "0123456789abcdefghij";
+        connector.setClient(newRangedDownloadClient(content));
+        connector.setParallelDownload(true);
+
+        InputStream stream = (InputStream) connector.getObjectContent(MY_BUCKET, MY_OBJECT, null, null, null, null,
+            null);
+        assertEquals(content, IOUtils.toString(stream));
+        verify(client, times(3)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void downloadObject() throws Exception
+    {
+        String content = "0123456789abcdefghij";
+        connector.setClient(newRangedDownloadClient(content));
+        File destination = File.createTempFile("mules3", ".tmp");
+        destination.deleteOnExit();
+
+        assertEquals(destination, connector.downloadObject(MY_BUCKET, MY_OBJECT, null, destination.getPath(),
+            null, null, null, null));
+        assertEquals(content, FileUtils.readFileToString(destination));
+        verify(client, times(3)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void downloadObjectNotModified() throws Exception
+    {
+        connector.setClient(newRangedDownloadClient("0123456789abcdefghij"));
+        File destination = File.createTempFile("mules3", ".tmp");
+        destination.deleteOnExit();
+
+        assertSame(NotModified.INSTANCE, connector.downloadObject(MY_BUCKET, MY_OBJECT, null,
+            destination.getPath(), null, null, null, "etag1"));
+        verify(client, never()).getObject(any(GetObjectRequest.class));
     }
 
     @Test
@@ -256,7 +829,7 @@ public class S3TestCase
         S3Object s3Object = new S3Object();
 
         when(client.getObject(refEq(new GetObjectRequest(MY_BUCKET, MY_OBJECT)))).thenReturn(s3Object);
-        assertSame(s3Object, connector.getObject(MY_BUCKET, MY_OBJECT, null, null, null));
+        assertSame(s3Object, connector.getObject(MY_BUCKET, MY_OBJECT, null, null, null, null, null));
     }
 
     @Test
@@ -267,13 +840,24 @@ public class S3TestCase
         when(
             client.getObject(refEq(new GetObjectRequest(MY_BUCKET, MY_OBJECT).withUnmodifiedSinceConstraint(date)))).thenReturn(
             s3Object);
-        assertSame(s3Object, connector.getObject(MY_BUCKET, MY_OBJECT, null, null, date));
+        assertSame(s3Object, connector.getObject(MY_BUCKET, MY_OBJECT, null, null, date, null, null));
+    }
+
+    @Test
+    public void getObjectNotModified() throws Exception
+    {
+        GetObjectRequest request = new GetObjectRequest(MY_BUCKET, MY_OBJECT);
+        request.setMatchingETagConstraints(Collections.singletonList("etag1"));
+        when(client.getObject(refEq(request))).thenReturn(null);
+
+        assertSame(NotModified.INSTANCE, connector.getObject(MY_BUCKET, MY_OBJECT, null, null, null, "etag1", null));
+        verify(client).getObject(refEq(request));
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void getObjectWithInconsistentConstraints() throws Exception
     {
-        connector.getObject(MY_BUCKET, MY_OBJECT, null, new Date(), new Date());
+        connector.getObject(MY_BUCKET, MY_OBJECT, null, new Date(), new Date(), null, null);
     }
 
     @Test
@@ -343,7 +927,7 @@ public class S3TestCase
     @Test
     public void listObjects() throws Exception
     {
-        Iterable<S3ObjectSummary> listObjects = connector.listObjects(MY_BUCKET, "mk");
+        Iterable<S3ObjectSummary> listObjects = connector.listObjects(MY_BUCKET, "mk", null, null);
 
         ObjectListing firstListing = new ObjectListing();
         firstListing.getObjectSummaries().add(newObjectSummary("key1"));
@@ -366,78 +950,724 @@ public class S3TestCase
     }
     
     @Test
-    public void listVersions() throws Exception
+    public void listCommonPrefixes() throws Exception
     {
-        Iterable<S3VersionSummary> listObjects = connector.listObjectVersions(MY_BUCKET);
-
-        VersionListing firstListing = new VersionListing();
-        firstListing.setVersionSummaries(Arrays.asList(newVersionSummary("key1"), newVersionSummary("key2")));
+        ObjectListing firstListing = new ObjectListing();
+        firstListing.getObjectSummaries().add(newObjectSummary("photos/index.html"));
+        firstListing.setCommonPrefixes(Arrays.asList("photos/2010/", "photos/2011/"));
         firstListing.setTruncated(true);
+        ObjectListing secondListing = new ObjectListing();
+        secondListing.setCommonPrefixes(Arrays.asList("photos/2012/"));
 
-        VersionListing secondListing = new VersionListing();
-        secondListing.setVersionSummaries(Collections.singletonList(newVersionSummary("key3")));
-        secondListing.setTruncated(false);
+        when(client.listObjects(refEq(new ListObjectsRequest(MY_BUCKET, "photos/", null, "/", null)))).thenReturn(
+            firstListing);
+        when(client.listNextBatchOfObjects(eq(firstListing))).thenReturn(secondListing);
 
-        when(client.listVersions(eq(MY_BUCKET), (String) Matchers.isNull())).thenReturn(firstListing);
-        when(client.listNextBatchOfVersions(eq(firstListing))).thenReturn(secondListing);
+        List<String> prefixes = new ArrayList<String>();
+        for (String prefix : connector.listCommonPrefixes(MY_BUCKET, "photos/", "/"))
+        {
+            prefixes.add(prefix);
+        }
+        assertEquals(Arrays.asList("photos/2010/", "photos/2011/", "photos/2012/"), prefixes);
 
-        Iterator<S3VersionSummary> iter = listObjects.iterator();
-        assertTrue(iter.hasNext());
-        assertEquals("key1", iter.next().getKey());
-        assertEquals("key2", iter.next().getKey());
-        assertEquals("key3", iter.next().getKey());
+        Iterator<S3ObjectSummary> iter = connector.listObjects(MY_BUCKET, "photos/", "/", null).iterator();
+        assertEquals("photos/index.html", iter.next().getKey());
         assertFalse(iter.hasNext());
     }
 
     @Test
-    public void setBucketVersioningStatus() throws Exception
+    public void listObjectPages() throws Exception
     {
-        connector.setBucketVersioningStatus(MY_BUCKET, VersioningStatus.ENABLED);
+        ObjectListing firstListing = new ObjectListing();
+        firstListing.getObjectSummaries().add(newObjectSummary("key1"));
+        firstListing.getObjectSummaries().add(newObjectSummary("key2"));
+        firstListing.setTruncated(true);
+        ObjectListing secondListing = new ObjectListing();
+        secondListing.getObjectSummaries().add(newObjectSummary("key3"));
 
-        verify(client).setBucketVersioningConfiguration(
-            argThat(new BaseMatcher<SetBucketVersioningConfigurationRequest>()
-            {
-                public boolean matches(Object item)
-                {
-                    SetBucketVersioningConfigurationRequest request = (SetBucketVersioningConfigurationRequest) item;
-                    return request.getBucketName().equals(MY_BUCKET)
-                           & request.getVersioningConfiguration().getStatus().equals("Enabled");
-                }
+        when(client.listObjects(refEq(new ListObjectsRequest(MY_BUCKET, "k", null, null, 2)))).thenReturn(
+            firstListing);
+        when(client.listNextBatchOfObjects(eq(firstListing))).thenReturn(secondListing);
 
-                public void describeTo(Description description)
-                {
-                }
-            }));
+        Iterable<ListingPage<S3ObjectSummary>> pages = connector.listObjectPages(MY_BUCKET, "k", null, null, 2);
+        assertFalse(pages instanceof Collection);
+        Iterator<ListingPage<S3ObjectSummary>> iter = pages.iterator();
+        ListingPage<S3ObjectSummary> page = iter.next();
+        assertEquals(2, page.getItems().size());
+        assertEquals("key2", page.getNextMarker());
+        page = iter.next();
+        assertEquals("key3", page.getItems().get(0).getKey());
+        assertFalse(page.isTruncated());
+        assertFalse(iter.hasNext());
     }
 
     @Test
-    public void deleteBucketNoForce() throws Exception
+    public void listObjectsPage() throws Exception
     {
-        connector.deleteBucket(MY_BUCKET, false);
-        verify(client).deleteBucket(MY_BUCKET);
+        ObjectListing listing = new ObjectListing();
+        listing.getObjectSummaries().add(newObjectSummary("key3"));
+        listing.getObjectSummaries().add(newObjectSummary("key4"));
+        listing.setTruncated(true);
+        when(client.listObjects(refEq(new ListObjectsRequest(MY_BUCKET, null, "key2", null, 2)))).thenReturn(
+            listing);
+
+        ListingPage<S3ObjectSummary> page = connector.listObjectsPage(MY_BUCKET, null, null, "key2", 2);
+
+        assertEquals("key3", page.getItems().get(0).getKey());
+        assertTrue(page.isTruncated());
+        assertEquals("key4", page.getNextMarker());
     }
 
     @Test
-    public void createUriUseDefaultServer() throws Exception
+    public void listObjectVersionsPage() throws Exception
     {
-        assertEquals("http://my-bucket.s3.amazonaws.com/myObject", connector.createObjectUri(MY_BUCKET,
-            MY_OBJECT, true,false).toString());
+        VersionListing listing = new VersionListing();
+        listing.setVersionSummaries(Collections.singletonList(newVersionSummary("key3")));
+        listing.setTruncated(true);
+        listing.setNextKeyMarker("key3");
+        listing.setNextVersionIdMarker("v1");
+        when(client.listVersions(refEq(new ListVersionsRequest(MY_BUCKET, null, "key2", "v2", null, 1)))).thenReturn(
+            listing);
+
+        ListingPage<S3VersionSummary> page = connector.listObjectVersionsPage(MY_BUCKET, null, "key2", "v2", 1);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals("key3", page.getNextMarker());
+        assertEquals("v1", page.getNextVersionIdMarker());
     }
 
     @Test
-    public void createObjectUri() throws Exception
-    {
-        when(client.getBucketLocation(MY_BUCKET)).thenReturn(Region.EU_IRELAND.toS3Equivalent().toString());
-        assertEquals("http://my-bucket.s3-external-1.amazonaws.com/myObject", connector.createObjectUri(
-            MY_BUCKET, MY_OBJECT, false, false).toString());
-    }
-    
-    @Test
-    public void createSecureUri() throws Exception
+    public void listObjectsWithPrefetch() throws Exception
     {
-        when(client.getBucketLocation(MY_BUCKET)).thenReturn(Region.EU_IRELAND.toS3Equivalent().toString());
-        assertEquals("https://my-bucket.s3-external-1.amazonaws.com/myObject", connector.createObjectUri(
-            MY_BUCKET, MY_OBJECT, false, true).toString());
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setListingPrefetchPages(2);
+        connector.setClient(simpleS3);
+
+        ObjectListing firstListing = new ObjectListing();
+        firstListing.getObjectSummaries().add(newObjectSummary("key1"));
+        firstListing.setTruncated(true);
+        ObjectListing secondListing = new ObjectListing();
+        secondListing.setTruncated(true);
+        ObjectListing thirdListing = new ObjectListing();
+        thirdListing.getObjectSummaries().add(newObjectSummary("key2"));
+        thirdListing.getObjectSummaries().add(newObjectSummary("key3"));
+        thirdListing.setTruncated(false);
+
+        when(client.listObjects(eq(MY_BUCKET), eq("mk"))).thenReturn(firstListing);
+        when(client.listNextBatchOfObjects(eq(firstListing))).thenReturn(secondListing);
+        when(client.listNextBatchOfObjects(eq(secondListing))).thenReturn(thirdListing);
+
+        Iterator<S3ObjectSummary> iter = connector.listObjects(MY_BUCKET, "mk", null, null).iterator();
+        assertEquals("key1", iter.next().getKey());
+        assertEquals("key2", iter.next().getKey());
+        assertEquals("key3", iter.next().getKey());
+        assertFalse(iter.hasNext());
+        verify(client, times(2)).listNextBatchOfObjects(any(ObjectListing.class));
+    }
+
+    @Test
+    public void closeListingStopsPrefetch() throws Exception
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setListingPrefetchPages(2);
+        connector.setClient(simpleS3);
+        final AtomicInteger fetched = new AtomicInteger();
+        ObjectListing firstListing = new ObjectListing();
+        firstListing.getObjectSummaries().add(newObjectSummary("key1"));
+        firstListing.setTruncated(true);
+        when(client.listObjects(eq(MY_BUCKET), eq("mk"))).thenReturn(firstListing);
+        when(client.listNextBatchOfObjects(any(ObjectListing.class))).thenAnswer(new Answer<ObjectListing>()
+        {
+            public ObjectListing answer(InvocationOnMock invocation) throws Throwable
+            {
+                ObjectListing listing = new ObjectListing();
+                listing.getObjectSummaries().add(newObjectSummary("key" + (fetched.incrementAndGet() + 1)));
+                listing.setTruncated(true);
+                return listing;
+            }
+        });
+
+        Iterable<S3ObjectSummary> listing = connector.listObjects(MY_BUCKET, "mk", null, null);
+        Iterator<S3ObjectSummary> iter = listing.iterator();
+        assertEquals("key1", iter.next().getKey());
+        assertEquals("key2", iter.next().getKey());
+        ((Closeable) listing).close();
+
+        assertFalse(iter.hasNext());
+        Thread.sleep(100);
+        int fetchedOnClose = fetched.get();
+        Thread.sleep(100);
+        assertEquals(fetchedOnClose, fetched.get());
+        assertTrue(fetchedOnClose <= 4);
+    }
+
+    @Test
+    public void listObjectsInParallelWithBoundaries() throws Exception
+    {
+        when(client.listObjects(any(ListObjectsRequest.class))).thenAnswer(new Answer<ObjectListing>()
+        {
+            public ObjectListing answer(InvocationOnMock invocation) throws Throwable
+            {
+                ListObjectsRequest request = (ListObjectsRequest) invocation.getArguments()[0];
+                ObjectListing listing = new ObjectListing();
+                for (String key : Arrays.asList("mk1", "mk2", "mk3", "mk4", "mk5"))
+                {
+                    if (request.getMarker() == null || key.compareTo(request.getMarker()) > 0)
+                    {
+                        listing.getObjectSummaries().add(newObjectSummary(key));
+                    }
+                }
+                return listing;
+            }
+        });
+
+        List<String> keys = new ArrayList<String>();
+        for (S3ObjectSummary summary : connector.listObjectsInParallel(MY_BUCKET, "mk",
+            Arrays.asList("mk3"), true))
+        {
+            keys.add(summary.getKey());
+        }
+
+        assertEquals(Arrays.asList("mk1", "mk2", "mk3", "mk4", "mk5"), keys);
+    }
+
+    @Test
+    public void listObjectsInParallelBoundsPagesAhead() throws Exception
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setListingConcurrency(2);
+        connector.setClient(simpleS3);
+        final List<String> allKeys = Arrays.asList("mk0", "mk1", "mk2", "mk3", "mk4", "mk5", "mk6", "mk7",
+            "mk8", "mk9");
+        final AtomicInteger fetched = new AtomicInteger();
+        final AtomicInteger consumed = new AtomicInteger();
+        final AtomicInteger maxAhead = new AtomicInteger();
+        when(client.listObjects(any(ListObjectsRequest.class))).thenAnswer(new Answer<ObjectListing>()
+        {
+            public ObjectListing answer(InvocationOnMock invocation) throws Throwable
+            {
+                int ahead = fetched.incrementAndGet() - consumed.get();
+                synchronized (maxAhead)
+                {
+                    maxAhead.set(Math.max(maxAhead.get(), ahead));
+                }
+                ListObjectsRequest request = (ListObjectsRequest) invocation.getArguments()[0];
+                ObjectListing listing = new ObjectListing();
+                for (String key : allKeys)
+                {
+                    if (request.getMarker() == null || key.compareTo(request.getMarker()) > 0)
+                    {
+                        listing.getObjectSummaries().add(newObjectSummary(key));
+                    }
+                }
+                return listing;
+            }
+        });
+
+        List<String> keys = new ArrayList<String>();
+        for (S3ObjectSummary summary : connector.listObjectsInParallel(MY_BUCKET, "mk", allKeys.subList(0, 9),
+            false))
+        {
+            keys.add(summary.getKey());
+            consumed.incrementAndGet();
+        }
+
+        Collections.sort(keys);
+        assertEquals(allKeys, keys);
+        // two pages pending, plus the one being consumed
+        assertTrue(maxAhead.get() <= 3);
+    }
+
+    @Test
+    public void listObjectsInParallelByCommonPrefixes() throws Exception
+    {
+        when(client.listObjects(any(ListObjectsRequest.class))).thenAnswer(new Answer<ObjectListing>()
+        {
+            public ObjectListing answer(InvocationOnMock invocation) throws Throwable
+            {
+                ListObjectsRequest request = (ListObjectsRequest) invocation.getArguments()[0];
+                ObjectListing listing = new ObjectListing();
+                if (request.getDelimiter() != null)
+                {
+                    listing.getObjectSummaries().add(newObjectSummary("key1"));
+                    listing.setCommonPrefixes(Arrays.asList("a/", "b/"));
+                }
+                else
+                {
+                    listing.getObjectSummaries().add(newObjectSummary(request.getPrefix() + "key2"));
+                }
+                return listing;
+            }
+        });
+
+        List<String> keys = new ArrayList<String>();
+        for (S3ObjectSummary summary : connector.listObjectsInParallel(MY_BUCKET, null, null, false))
+        {
+            keys.add(summary.getKey());
+        }
+
+        Collections.sort(keys);
+        assertEquals(Arrays.asList("a/key2", "b/key2", "key1"), keys);
+    }
+
+    @Test
+    public void listVersions() throws Exception
+    {
+        Iterable<S3VersionSummary> listObjects = connector.listObjectVersions(MY_BUCKET, null, null, null);
+
+        VersionListing firstListing = new VersionListing();
+        firstListing.setVersionSummaries(Arrays.asList(newVersionSummary("key1"), newVersionSummary("key2")));
+        firstListing.setTruncated(true);
+
+        VersionListing secondListing = new VersionListing();
+        secondListing.setVersionSummaries(Collections.singletonList(newVersionSummary("key3")));
+        secondListing.setTruncated(false);
+
+        when(client.listVersions(eq(MY_BUCKET), (String) Matchers.isNull())).thenReturn(firstListing);
+        when(client.listNextBatchOfVersions(eq(firstListing))).thenReturn(secondListing);
+
+        Iterator<S3VersionSummary> iter = listObjects.iterator();
+        assertTrue(iter.hasNext());
+        assertEquals("key1", iter.next().getKey());
+        assertEquals("key2", iter.next().getKey());
+        assertEquals("key3", iter.next().getKey());
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void listVersionsWithPrefixAfterMarker() throws Exception
+    {
+        VersionListing listing = new VersionListing();
+        listing.setVersionSummaries(Collections.singletonList(newVersionSummary("logs/key2")));
+        listing.setTruncated(false);
+        when(client.listVersions(any(ListVersionsRequest.class))).thenReturn(listing);
+
+        Iterator<S3VersionSummary> iter = connector.listObjectVersions(MY_BUCKET, "logs/", "logs/key1", "3")
+            .iterator();
+        assertEquals("logs/key2", iter.next().getKey());
+        assertFalse(iter.hasNext());
+
+        ArgumentCaptor<ListVersionsRequest> request = ArgumentCaptor.forClass(ListVersionsRequest.class);
+        verify(client).listVersions(request.capture());
+        assertEquals("logs/", request.getValue().getPrefix());
+        assertEquals("logs/key1", request.getValue().getKeyMarker());
+        assertEquals("3", request.getValue().getVersionIdMarker());
+    }
+
+    @Test
+    public void setBucketVersioningStatus() throws Exception
+    {
+        connector.setBucketVersioningStatus(MY_BUCKET, VersioningStatus.ENABLED);
+
+        verify(client).setBucketVersioningConfiguration(
+            argThat(new BaseMatcher<SetBucketVersioningConfigurationRequest>()
+            {
+                public boolean matches(Object item)
+                {
+                    SetBucketVersioningConfigurationRequest request = (SetBucketVersioningConfigurationRequest) item;
+                    return request.getBucketName().equals(MY_BUCKET)
+                           & request.getVersioningConfiguration().getStatus().equals("Enabled");
+                }
+
+                public void describeTo(Description description)
+                {
+                }
+            }));
+    }
+
+    @Test
+    public void deleteBucketNoForce() throws Exception
+    {
+        connector.deleteBucket(MY_BUCKET, false);
+        verify(client).deleteBucket(MY_BUCKET);
+    }
+
+    @Test
+    public void deleteBucketForce() throws Exception
+    {
+        when(client.getBucketVersioningConfiguration(MY_BUCKET)).thenReturn(
+            new BucketVersioningConfiguration(BucketVersioningConfiguration.OFF));
+        ObjectListing listing = new ObjectListing();
+        listing.getObjectSummaries().add(newObjectSummary("key1"));
+        listing.getObjectSummaries().add(newObjectSummary("key2"));
+        when(client.listObjects(eq(MY_BUCKET), (String) Matchers.isNull())).thenReturn(listing);
+
+        connector.deleteBucket(MY_BUCKET, true);
+
+        ArgumentCaptor<DeleteObjectsRequest> request = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(client).deleteObjects(request.capture());
+        assertEquals(MY_BUCKET, request.getValue().getBucketName());
+        assertEquals(2, request.getValue().getKeys().size());
+        assertEquals("key1", request.getValue().getKeys().get(0).getKey());
+        verify(client).deleteBucket(MY_BUCKET);
+    }
+
+    @Test
+    public void deleteBucketForceWithFailures() throws Exception
+    {
+        when(client.getBucketVersioningConfiguration(MY_BUCKET)).thenReturn(
+            new BucketVersioningConfiguration(BucketVersioningConfiguration.ENABLED));
+        VersionListing listing = new VersionListing();
+        listing.setVersionSummaries(Arrays.asList(newVersionSummary("key1"), newVersionSummary("key2")));
+        when(client.listVersions(eq(MY_BUCKET), (String) Matchers.isNull())).thenReturn(listing);
+        DeleteError error = new DeleteError();
+        error.setKey("key2");
+        error.setCode("AccessDenied");
+        when(client.deleteObjects(any(DeleteObjectsRequest.class))).thenThrow(
+            new MultiObjectDeleteException(Collections.singletonList(error),
+                Collections.<DeletedObject> emptyList()));
+
+        try
+        {
+            connector.deleteBucket(MY_BUCKET, true);
+            fail();
+        }
+        catch (BulkDeleteException e)
+        {
+            assertEquals(1, e.getResult().getDeletedCount());
+            assertEquals(1, e.getResult().getFailures().size());
+            assertEquals("key2", e.getResult().getFailures().get(0).getKey());
+            assertEquals("AccessDenied", e.getResult().getFailures().get(0).getCode());
+        }
+        verify(client, never()).deleteBucket(MY_BUCKET);
+    }
+
+    @Test
+    public void deleteObjectsByPrefix() throws Exception
+    {
+        ObjectListing listing = new ObjectListing();
+        listing.getObjectSummaries().add(newObjectSummary("logs/key1"));
+        listing.getObjectSummaries().add(newObjectSummary("logs/key2"));
+        when(client.listObjects(MY_BUCKET, "logs/")).thenReturn(listing);
+
+        BulkDeleteResult result = connector.deleteObjects(MY_BUCKET, "logs/", null);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(2, result.getDeletedCount());
+        ArgumentCaptor<DeleteObjectsRequest> request = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(client).deleteObjects(request.capture());
+        assertEquals("logs/key2", request.getValue().getKeys().get(1).getKey());
+        verify(client, never()).deleteBucket(MY_BUCKET);
+    }
+
+    @Test
+    public void deleteObjectsByKeys() throws Exception
+    {
+        BulkDeleteResult result = connector.deleteObjects(MY_BUCKET, null, Arrays.asList("key1", "key2", "key3"));
+
+        assertEquals(3, result.getDeletedCount());
+        ArgumentCaptor<DeleteObjectsRequest> request = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(client).deleteObjects(request.capture());
+        assertEquals(MY_BUCKET, request.getValue().getBucketName());
+        assertEquals(3, request.getValue().getKeys().size());
+        verify(client, never()).listObjects(anyString(), anyString());
+    }
+
+    @Test
+    public void deleteObjectsConnectionFailure() throws Exception
+    {
+        when(client.deleteObjects(any(DeleteObjectsRequest.class))).thenThrow(
+            new AmazonClientException("Connection reset"));
+
+        BulkDeleteResult result = connector.deleteObjects(MY_BUCKET, null, Arrays.asList("key1", "key2"));
+
+        assertFalse(result.isSuccessful());
+        assertEquals(0, result.getDeletedCount());
+        assertEquals(2, result.getFailures().size());
+        assertEquals("key2", result.getFailures().get(1).getKey());
+        assertNull(result.getFailures().get(1).getCode());
+        assertEquals("Connection reset", result.getFailures().get(1).getMessage());
+    }
+
+    @Test
+    public void copyObjectsByPrefix() throws Exception
+    {
+        ObjectListing listing = new ObjectListing();
+        listing.getObjectSummaries().add(newObjectSummary("staging/a.xml"));
+        listing.getObjectSummaries().add(newObjectSummary("staging/b.txt"));
+        listing.getObjectSummaries().add(newObjectSummary("staging/c.xml"));
+        when(client.listObjects(MY_BUCKET, "staging/")).thenReturn(listing);
+        CopyObjectRequest copied = new CopyObjectRequest(MY_BUCKET, "staging/a.xml", "myBucket2", "production/a.xml");
+        copied.setCannedAccessControlList(CannedAccessControlList.Private);
+        copied.setStorageClass(StorageClass.Standard);
+        when(client.copyObject(refEq(copied))).thenReturn(new CopyObjectResult());
+        CopyObjectRequest failed = new CopyObjectRequest(MY_BUCKET, "staging/c.xml", "myBucket2", "production/c.xml");
+        failed.setCannedAccessControlList(CannedAccessControlList.Private);
+        failed.setStorageClass(StorageClass.Standard);
+        when(client.copyObject(refEq(failed))).thenThrow(new AmazonServiceException("Access denied"));
+
+        BulkCopyResult result = connector.copyObjects(MY_BUCKET, "staging/", "myBucket2", "production/", "\\.xml$",
+            null, PRIVATE, org.mule.module.s3.StorageClass.STANDARD);
+
+        assertEquals(1, result.getCopiedCount());
+        assertEquals(1, result.getSkippedCount());
+        assertEquals(1, result.getFailures().size());
+        assertEquals("production/c.xml", result.getFailures().get(0).getDestinationKey());
+    }
+
+    @Test
+    public void copyObjectsConnectionFailure() throws Exception
+    {
+        ObjectListing listing = new ObjectListing();
+        listing.getObjectSummaries().add(newObjectSummary("staging/a.xml"));
+        listing.getObjectSummaries().add(newObjectSummary("staging/b.xml"));
+        when(client.listObjects(MY_BUCKET, "staging/")).thenReturn(listing);
+        CopyObjectRequest failed = new CopyObjectRequest(MY_BUCKET, "staging/b.xml", "myBucket2", "production/b.xml");
+        failed.setCannedAccessControlList(CannedAccessControlList.Private);
+        failed.setStorageClass(StorageClass.Standard);
+        when(client.copyObject(any(CopyObjectRequest.class))).thenReturn(new CopyObjectResult());
+        when(client.copyObject(refEq(failed))).thenThrow(new AmazonClientException("Connection reset"));
+
+        BulkCopyResult result = connector.copyObjects(MY_BUCKET, "staging/", "myBucket2", "production/", null,
+            null, PRIVATE, org.mule.module.s3.StorageClass.STANDARD);
+
+        assertEquals(1, result.getCopiedCount());
+        assertEquals(1, result.getFailures().size());
+        assertEquals("staging/b.xml", result.getFailures().get(0).getSourceKey());
+        assertNull(result.getFailures().get(0).getCode());
+        assertEquals("Connection reset", result.getFailures().get(0).getMessage());
+    }
+
+    @Test
+    public void getObjectMetadataCached() throws Exception
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setMetadataCache(10, 60);
+        connector.setClient(simpleS3);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentType("text/plain");
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(metadata);
+
+        assertEquals("text/plain", connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null).getContentType());
+        connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null).setContentType("image/png");
+        assertEquals("text/plain", connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null).getContentType());
+        verify(client, times(1)).getObjectMetadata(any(GetObjectMetadataRequest.class));
+
+        connector.deleteObject(MY_BUCKET, MY_OBJECT, null);
+        connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null);
+        verify(client, times(2)).getObjectMetadata(any(GetObjectMetadataRequest.class));
+
+        CacheStatistics statistics = connector.getMetadataCacheStatistics();
+        assertEquals(2, statistics.getHits());
+        assertEquals(2, statistics.getMisses());
+        assertEquals(1, statistics.getSize());
+    }
+
+    @Test
+    public void pooledConnectionsShareMetadataCache() throws Exception
+    {
+        SharedAmazonS3Clients.SharedClient first = SharedAmazonS3Clients.acquire("key", "secret",
+            new ClientConfiguration(), 0);
+        SharedAmazonS3Clients.SharedClient second = SharedAmazonS3Clients.acquire("key", "secret",
+            new ClientConfiguration(), 0);
+        try
+        {
+            assertSame(first.getMetadataCache(10, 60), second.getMetadataCache(10, 60));
+        }
+        finally
+        {
+            SharedAmazonS3Clients.release(first);
+            SharedAmazonS3Clients.release(second);
+        }
+
+        MetadataCache cache = new MetadataCache(10, 60000);
+        SimpleAmazonS3AmazonDevKitImpl reader = new SimpleAmazonS3AmazonDevKitImpl(client);
+        reader.setMetadataCache(cache);
+        SimpleAmazonS3AmazonDevKitImpl writer = new SimpleAmazonS3AmazonDevKitImpl(client);
+        writer.setMetadataCache(cache);
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(new ObjectMetadata());
+        S3ObjectId objectId = new S3ObjectId(MY_BUCKET, MY_OBJECT);
+
+        reader.getObjectMetadata(objectId);
+        writer.deleteObject(objectId);
+        reader.getObjectMetadata(objectId);
+        verify(client, times(2)).getObjectMetadata(any(GetObjectMetadataRequest.class));
+    }
+
+    @Test
+    public void writesInvalidateMetadataCachedWhileInFlight() throws Exception
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setMetadataCache(10, 60);
+        connector.setClient(simpleS3);
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(new ObjectMetadata());
+        doAnswer(new Answer<Void>()
+        {
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                // a concurrent read caches the metadata before the deletion completes
+                connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null);
+                return null;
+            }
+        }).when(client).deleteObject(MY_BUCKET, MY_OBJECT);
+
+        connector.deleteObject(MY_BUCKET, MY_OBJECT, null);
+        connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null);
+        verify(client, times(2)).getObjectMetadata(any(GetObjectMetadataRequest.class));
+    }
+
+    @Test
+    public void getObjectSuffixRangeIgnoresStaleCachedMetadata() throws Exception
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setMetadataCache(10, 60);
+        connector.setClient(simpleS3);
+        ObjectMetadata staleMetadata = new ObjectMetadata();
+        staleMetadata.setContentLength(1000);
+        staleMetadata.setHeader("ETag", "etag1");
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(2000);
+        metadata.setHeader("ETag", "etag2");
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(staleMetadata,
+            metadata);
+        S3Object s3Object = new S3Object();
+        NullInputStream content = new NullInputStream(0);
+        s3Object.setObjectContent(content);
+        GetObjectRequest request = new GetObjectRequest(MY_BUCKET, MY_OBJECT).withMatchingETagConstraint("etag2");
+        request.setRange(1936, 1999);
+        when(client.getObject(refEq(request))).thenReturn(s3Object);
+
+        assertEquals("etag1", connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null).getETag());
+        assertSame(content, connector.getObjectRange(MY_BUCKET, MY_OBJECT, null, null, 64L, null, null, null,
+            null));
+        assertEquals("etag2", connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null).getETag());
+        verify(client, times(2)).getObjectMetadata(any(GetObjectMetadataRequest.class));
+    }
+
+    @Test
+    public void getObjectContentCached() throws Exception
+    {
+        File directory = File.createTempFile("s3-cache", "");
+        directory.delete();
+        try
+        {
+            SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+            simpleS3.setContentCache(directory, 1024);
+            connector.setClient(simpleS3);
+            when(client.getObject(any(GetObjectRequest.class))).thenAnswer(new Answer<S3Object>()
+            {
+                public S3Object answer(InvocationOnMock invocation) throws Throwable
+                {
+                    GetObjectRequest request = (GetObjectRequest) invocation.getArguments()[0];
+                    if (request.getNonmatchingETagConstraints().contains("etag1"))
+                    {
+                        return null;
+                    }
+                    S3Object object = new S3Object();
+                    object.getObjectMetadata().setContentLength(5);
+                    object.getObjectMetadata().setHeader("ETag", "etag1");
+                    object.setObjectContent(new ByteArrayInputStream("hello".getBytes()));
+                    return object;
+                }
+            });
+
+            assertEquals("hello", IOUtils.toString((InputStream) connector.getObjectContent(MY_BUCKET, MY_OBJECT,
+                null, null, null, null, null)));
+            InputStream cached = (InputStream) connector.getObjectContent(MY_BUCKET, MY_OBJECT, null, null, null,
+                null, null);
+            assertEquals("hello", IOUtils.toString(cached));
+            cached.close();
+
+            verify(client, times(2)).getObject(any(GetObjectRequest.class));
+            CacheStatistics statistics = connector.getContentCacheStatistics();
+            assertEquals(1, statistics.getHits());
+            assertEquals(1, statistics.getMisses());
+        }
+        finally
+        {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void pooledConnectionsShareContentCache() throws Exception
+    {
+        File directory = File.createTempFile("s3-cache", "");
+        directory.delete();
+        try
+        {
+            SharedContentCaches.SharedContentCache first = SharedContentCaches.acquire(directory, 1024);
+            SharedContentCaches.SharedContentCache second = null;
+            try
+            {
+                SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+                simpleS3.setContentCache(first.getCache());
+                connector.setClient(simpleS3);
+                S3Object object = new S3Object();
+                object.getObjectMetadata().setContentLength(5);
+                object.getObjectMetadata().setHeader("ETag", "etag1");
+                object.setObjectContent(new ByteArrayInputStream("hello".getBytes()));
+                when(client.getObject(any(GetObjectRequest.class))).thenReturn(object, (S3Object) null);
+                assertEquals("hello", IOUtils.toString((InputStream) connector.getObjectContent(MY_BUCKET,
+                    MY_OBJECT, null, null, null, null, null)));
+
+                // a new pooled connection does not delete the contents cached by the first one
+                second = SharedContentCaches.acquire(directory, 1024);
+                assertSame(first.getCache(), second.getCache());
+                InputStream cached = (InputStream) connector.getObjectContent(MY_BUCKET, MY_OBJECT, null, null,
+                    null, null, null);
+                assertEquals("hello", IOUtils.toString(cached));
+                cached.close();
+                assertEquals(1, connector.getContentCacheStatistics().getHits());
+            }
+            finally
+            {
+                SharedContentCaches.release(first);
+                if (second != null)
+                {
+                    SharedContentCaches.release(second);
+                }
+            }
+            assertEquals(0, directory.list().length);
+        }
+        finally
+        {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void createUriUseDefaultServer() throws Exception
+    {
+        assertEquals("http://my-bucket.s3.amazonaws.com/myObject", connector.createObjectUri(MY_BUCKET,
+            MY_OBJECT, true,false).toString());
+    }
+
+    @Test
+    public void createObjectUri() throws Exception
+    {
+        when(client.getBucketLocation(MY_BUCKET)).thenReturn(Region.EU_IRELAND.toS3Equivalent().toString());
+        assertEquals("http://my-bucket.s3-external-1.amazonaws.com/myObject", connector.createObjectUri(
+            MY_BUCKET, MY_OBJECT, false, false).toString());
+    }
+    
+    @Test
+    public void createSecureUri() throws Exception
+    {
+        when(client.getBucketLocation(MY_BUCKET)).thenReturn(Region.EU_IRELAND.toS3Equivalent().toString());
+        assertEquals("https://my-bucket.s3-external-1.amazonaws.com/myObject", connector.createObjectUri(
+            MY_BUCKET, MY_OBJECT, false, true).toString());
+    }
+    
+    @Test
+    public void createObjectUriCachesRegion() throws Exception
+    {
+        when(client.getBucketLocation(MY_BUCKET)).thenReturn(Region.EU_IRELAND.toS3Equivalent().toString());
+        connector.createObjectUri(MY_BUCKET, MY_OBJECT, false, false);
+        assertEquals("https://my-bucket.s3-external-1.amazonaws.com/otherObject", connector.createObjectUri(
+            MY_BUCKET, "otherObject", false, true).toString());
+        verify(client, times(1)).getBucketLocation(MY_BUCKET);
+    }
+
+    @Test
+    public void createObjectUriWithSeededRegion() throws Exception
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.seedBucketRegion(MY_BUCKET, Region.US_WEST);
+        connector.setClient(simpleS3);
+        assertEquals("http://my-bucket.s3-us-west-1.amazonaws.com/myObject", connector.createObjectUri(
+            MY_BUCKET, MY_OBJECT, false, false).toString());
+        verify(client, never()).getBucketLocation(MY_BUCKET);
     }
     
     @Test
@@ -449,6 +1679,617 @@ public class S3TestCase
         assertNotNull(content.createPutObjectRequest().getFile());
     }
 
+    @Test
+    public void copyObjectMultipart() throws Exception
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setMultipartCopyThreshold(10 * 1024 * 1024);
+        simpleS3.setMultipartCopyPartSize(5 * 1024 * 1024);
+        connector.setClient(simpleS3);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(12 * 1024 * 1024);
+        metadata.setContentType("video/mp4");
+        metadata.setHeader("Content-Language", "en");
+        metadata.setHeader("Expires", "Thu, 01 Dec 2033 16:00:00 GMT");
+        metadata.setServerSideEncryption("AES256");
+        metadata.setHeader("ETag", "\"etag\"");
+        metadata.addUserMetadata("owner", "me");
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(metadata);
+        InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+        initiateResult.setUploadId("upload1");
+        when(client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(
+            initiateResult);
+        when(client.copyPart(any(CopyPartRequest.class))).thenAnswer(new Answer<CopyPartResult>()
+        {
+            public CopyPartResult answer(InvocationOnMock invocation) throws Throwable
+            {
+                CopyPartRequest request = (CopyPartRequest) invocation.getArguments()[0];
+                CopyPartResult result = new CopyPartResult();
+                result.setPartNumber(request.getPartNumber());
+                result.setETag("etag" + request.getPartNumber());
+                return result;
+            }
+        });
+        CompleteMultipartUploadResult completeResult = new CompleteMultipartUploadResult();
+        completeResult.setVersionId("12");
+        when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(completeResult);
+
+        assertEquals("12", connector.copyObject(MY_BUCKET, MY_OBJECT, null, null, "myObject2", PRIVATE,
+            org.mule.module.s3.StorageClass.STANDARD, null, null, null, null, null));
+
+        ArgumentCaptor<InitiateMultipartUploadRequest> initiateRequest = ArgumentCaptor.forClass(
+            InitiateMultipartUploadRequest.class);
+        verify(client).initiateMultipartUpload(initiateRequest.capture());
+        ObjectMetadata copyMetadata = initiateRequest.getValue().getObjectMetadata();
+        assertEquals("video/mp4", copyMetadata.getContentType());
+        assertEquals("en", copyMetadata.getRawMetadata().get("Content-Language"));
+        assertEquals("Thu, 01 Dec 2033 16:00:00 GMT", copyMetadata.getRawMetadata().get("Expires"));
+        assertEquals("AES256", copyMetadata.getServerSideEncryption());
+        assertEquals("me", copyMetadata.getUserMetadata().get("owner"));
+        assertFalse(copyMetadata.getRawMetadata().containsKey("Content-Length"));
+        assertFalse(copyMetadata.getRawMetadata().containsKey("ETag"));
+        ArgumentCaptor<CopyPartRequest> partRequests = ArgumentCaptor.forClass(CopyPartRequest.class);
+        verify(client, times(3)).copyPart(partRequests.capture());
+        CopyPartRequest lastPart = partRequests.getAllValues().get(2);
+        assertEquals(10 * 1024 * 1024, lastPart.getFirstByte().longValue());
+        assertEquals(12 * 1024 * 1024 - 1, lastPart.getLastByte().longValue());
+        assertEquals(Arrays.asList("\"etag\""), lastPart.getMatchingETagConstraints());
+        verify(client, never()).copyObject(any(CopyObjectRequest.class));
+    }
+
+    @Test
+    public void copyObjectFallsBackToMultipartWhenTooLarge() throws Exception
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setMultipartCopyPartSize(1024L * 1024 * 1024);
+        connector.setClient(simpleS3);
+        when(client.copyObject(any(CopyObjectRequest.class))).thenThrow(newServiceException(400, "InvalidRequest"));
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(6L * 1024 * 1024 * 1024);
+        metadata.setHeader("ETag", "\"etag\"");
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(metadata);
+        InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+        initiateResult.setUploadId("upload1");
+        when(client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(
+            initiateResult);
+        when(client.copyPart(any(CopyPartRequest.class))).thenAnswer(new Answer<CopyPartResult>()
+        {
+            public CopyPartResult answer(InvocationOnMock invocation) throws Throwable
+            {
+                CopyPartRequest request = (CopyPartRequest) invocation.getArguments()[0];
+                CopyPartResult result = new CopyPartResult();
+                result.setPartNumber(request.getPartNumber());
+                result.setETag("etag" + request.getPartNumber());
+                return result;
+            }
+        });
+        CompleteMultipartUploadResult completeResult = new CompleteMultipartUploadResult();
+        completeResult.setVersionId("12");
+        when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(completeResult);
+
+        assertEquals("12", connector.copyObject(MY_BUCKET, MY_OBJECT, null, null, "myObject2", PRIVATE,
+            org.mule.module.s3.StorageClass.STANDARD, null, null, null, null, null));
+        verify(client).copyObject(any(CopyObjectRequest.class));
+        verify(client).getObjectMetadata(any(GetObjectMetadataRequest.class));
+        verify(client, times(6)).copyPart(any(CopyPartRequest.class));
+    }
+
+    @Test
+    public void copyObjectsBoundsPartCopiesByMaxConnections() throws Exception
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setMultipartCopyThreshold(10 * 1024 * 1024);
+        simpleS3.setMultipartCopyPartSize(5 * 1024 * 1024);
+        simpleS3.setMaxConnections(4);
+        connector.setClient(simpleS3);
+        ObjectListing listing = new ObjectListing();
+        for (String key : Arrays.asList("staging/a", "staging/b", "staging/c", "staging/d", "staging/e"))
+        {
+            S3ObjectSummary summary = newObjectSummary(key);
+            summary.setSize(12 * 1024 * 1024);
+            listing.getObjectSummaries().add(summary);
+        }
+        when(client.listObjects(MY_BUCKET, "staging/")).thenReturn(listing);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(12 * 1024 * 1024);
+        metadata.setHeader("ETag", "\"etag\"");
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(metadata);
+        InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+        initiateResult.setUploadId("upload1");
+        when(client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(
+            initiateResult);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        when(client.copyPart(any(CopyPartRequest.class))).thenAnswer(new Answer<CopyPartResult>()
+        {
+            public CopyPartResult answer(InvocationOnMock invocation) throws Throwable
+            {
+                int current = inFlight.incrementAndGet();
+                synchronized (maxInFlight)
+                {
+                    maxInFlight.set(Math.max(maxInFlight.get(), current));
+                }
+                Thread.sleep(20);
+                inFlight.decrementAndGet();
+                CopyPartRequest request = (CopyPartRequest) invocation.getArguments()[0];
+                CopyPartResult result = new CopyPartResult();
+                result.setPartNumber(request.getPartNumber());
+                result.setETag("etag" + request.getPartNumber());
+                return result;
+            }
+        });
+        when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(
+            new CompleteMultipartUploadResult());
+
+        BulkCopyResult result = connector.copyObjects(MY_BUCKET, "staging/", "myBucket2", "production/", null,
+            null, PRIVATE, org.mule.module.s3.StorageClass.STANDARD);
+
+        assertEquals(5, result.getCopiedCount());
+        verify(client, times(15)).copyPart(any(CopyPartRequest.class));
+        assertTrue(maxInFlight.get() <= 4);
+    }
+
+    @Test
+    public void copyObjectWithoutMetadataRequest() throws Exception
+    {
+        when(client.copyObject(any(CopyObjectRequest.class))).thenReturn(new CopyObjectResult());
+
+        connector.copyObject(MY_BUCKET, MY_OBJECT, null, null, "myObject2", PRIVATE,
+            org.mule.module.s3.StorageClass.STANDARD, null, null, null, null, null);
+        verify(client, never()).getObjectMetadata(any(GetObjectMetadataRequest.class));
+    }
+
+    @Test
+    public void retryThrottledCalls() throws Exception
+    {
+        RetryingSimpleAmazonS3 retrying = new RetryingSimpleAmazonS3(new SimpleAmazonS3AmazonDevKitImpl(client));
+        retrying.setBaseDelay(1);
+        connector.setClient(retrying.toSimpleAmazonS3());
+        ObjectMetadata metadata = new ObjectMetadata();
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenThrow(
+            newServiceException(503, "SlowDown"), newServiceException(503, "SlowDown")).thenReturn(metadata);
+
+        assertSame(metadata, connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null));
+        verify(client, times(3)).getObjectMetadata(any(GetObjectMetadataRequest.class));
+        RetryStatistics statistics = retrying.getStatistics();
+        assertEquals(2, statistics.getThrottled());
+        assertEquals(2, statistics.getRetries());
+        assertEquals(0, statistics.getGiveUps());
+    }
+
+    @Test
+    public void retryFileUploadsWithMetrics() throws Exception
+    {
+        RetryingSimpleAmazonS3 retrying = new RetryingSimpleAmazonS3(new SimpleAmazonS3AmazonDevKitImpl(client));
+        retrying.setBaseDelay(1);
+        S3Metrics metrics = new S3Metrics();
+        connector.setClient(new MetricsSimpleAmazonS3(retrying.toSimpleAmazonS3(), metrics).toSimpleAmazonS3());
+        when(client.putObject(any(PutObjectRequest.class))).thenThrow(newServiceException(500, "InternalError"))
+            .thenReturn(new PutObjectResult());
+        File file = File.createTempFile("mules3", ".tmp");
+        file.deleteOnExit();
+
+        connector.createObject(MY_BUCKET, MY_OBJECT, file, null, null, null, PRIVATE,
+            org.mule.module.s3.StorageClass.STANDARD, null);
+
+        verify(client, times(2)).putObject(any(PutObjectRequest.class));
+        assertEquals(1, retrying.getStatistics().getRetries());
+        assertEquals(0, metrics.getOperationMetrics("createObject").getErrors());
+    }
+
+    @Test
+    public void shareRetryBudgets() throws Exception
+    {
+        RetryBudgets budgets = new RetryBudgets(1);
+        RetryingSimpleAmazonS3 first = new RetryingSimpleAmazonS3(new SimpleAmazonS3AmazonDevKitImpl(client));
+        first.setBaseDelay(1);
+        first.setRetryBudgets(budgets);
+        RetryingSimpleAmazonS3 second = new RetryingSimpleAmazonS3(new SimpleAmazonS3AmazonDevKitImpl(client));
+        second.setBaseDelay(1);
+        second.setRetryBudgets(budgets);
+        ObjectMetadata metadata = new ObjectMetadata();
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenThrow(
+            newServiceException(503, "SlowDown")).thenReturn(metadata).thenThrow(
+            newServiceException(503, "SlowDown"));
+        S3ObjectId objectId = new S3ObjectId(MY_BUCKET, MY_OBJECT);
+
+        assertSame(metadata, first.toSimpleAmazonS3().getObjectMetadata(objectId));
+        try
+        {
+            second.toSimpleAmazonS3().getObjectMetadata(objectId);
+            fail();
+        }
+        catch (AmazonServiceException e)
+        {
+            assertEquals("SlowDown", e.getErrorCode());
+        }
+        verify(client, times(3)).getObjectMetadata(any(GetObjectMetadataRequest.class));
+        assertEquals(1, first.getStatistics().getRetries());
+        assertEquals(0, second.getStatistics().getRetries());
+        assertEquals(1, second.getStatistics().getBudgetExhaustions());
+    }
+
+    @Test
+    public void retryNonIdempotentCallsOnlyWhenThrottled() throws Exception
+    {
+        RetryingSimpleAmazonS3 retrying = new RetryingSimpleAmazonS3(new SimpleAmazonS3AmazonDevKitImpl(client));
+        retrying.setBaseDelay(1);
+        retrying.setMaxRetries(1);
+        connector.setClient(retrying.toSimpleAmazonS3());
+        when(client.createBucket(any(CreateBucketRequest.class))).thenThrow(
+            newServiceException(500, "InternalError"));
+        try
+        {
+            connector.createBucket(MY_BUCKET, Region.US_STANDARD, PRIVATE);
+            fail();
+        }
+        catch (AmazonServiceException e)
+        {
+            assertEquals("InternalError", e.getErrorCode());
+        }
+        verify(client, times(1)).createBucket(any(CreateBucketRequest.class));
+
+        doThrow(newServiceException(500, "InternalError")).when(client).deleteObject(MY_BUCKET, MY_OBJECT);
+        try
+        {
+            connector.deleteObject(MY_BUCKET, MY_OBJECT, null);
+            fail();
+        }
+        catch (AmazonServiceException e)
+        {
+            assertEquals(1, retrying.getStatistics().getGiveUps());
+        }
+        verify(client, times(2)).deleteObject(MY_BUCKET, MY_OBJECT);
+    }
+
+    @Test
+    public void rateLimitReadsByPrefix() throws Exception
+    {
+        RateLimitingAmazonS3 rateLimiting = new RateLimitingAmazonS3(client);
+        rateLimiting.setReadRateLimit(MY_BUCKET, "my", 1);
+        rateLimiting.setMaxWait(0);
+        connector.setClient(new SimpleAmazonS3AmazonDevKitImpl(rateLimiting.toAmazonS3()));
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(new ObjectMetadata());
+
+        connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null);
+        try
+        {
+            connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null);
+            fail();
+        }
+        catch (AmazonClientException e)
+        {
+            // expected
+        }
+        connector.getObjectMetadata(MY_BUCKET, "otherObject", null);
+        connector.deleteObject(MY_BUCKET, MY_OBJECT, null);
+
+        verify(client, times(2)).getObjectMetadata(any(GetObjectMetadataRequest.class));
+        verify(client).deleteObject(MY_BUCKET, MY_OBJECT);
+        RateLimitStatistics statistics = rateLimiting.getStatistics();
+        assertEquals(1, statistics.getPermitted());
+        assertEquals(1, statistics.getRejected());
+        assertEquals(0, statistics.getWaiting());
+    }
+
+    @Test
+    public void rateLimitEachRequestOfBulkOperations() throws Exception
+    {
+        RateLimitingAmazonS3 rateLimiting = new RateLimitingAmazonS3(client);
+        rateLimiting.setWriteRateLimit(MY_BUCKET, "logs/", 1);
+        rateLimiting.setWriteRateLimit("myBucket2", "production/", 1);
+        rateLimiting.setMaxWait(0);
+        connector.setClient(new SimpleAmazonS3AmazonDevKitImpl(rateLimiting.toAmazonS3()));
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 2000; i++)
+        {
+            keys.add("logs/key" + i);
+        }
+        ObjectListing listing = new ObjectListing();
+        listing.getObjectSummaries().add(newObjectSummary("staging/a.xml"));
+        listing.getObjectSummaries().add(newObjectSummary("staging/b.xml"));
+        when(client.listObjects(MY_BUCKET, "staging/")).thenReturn(listing);
+
+        BulkDeleteResult deleteResult = connector.deleteObjects(MY_BUCKET, null, keys);
+        BulkCopyResult copyResult = connector.copyObjects(MY_BUCKET, "staging/", "myBucket2", "production/",
+            null, null, PRIVATE, org.mule.module.s3.StorageClass.STANDARD);
+        BulkCopyResult unlimitedCopyResult = connector.copyObjects(MY_BUCKET, "staging/", "myBucket2", "test/",
+            null, null, PRIVATE, org.mule.module.s3.StorageClass.STANDARD);
+
+        assertEquals(1000, deleteResult.getDeletedCount());
+        assertEquals(1000, deleteResult.getFailures().size());
+        assertEquals(1, copyResult.getCopiedCount());
+        assertEquals(1, copyResult.getFailures().size());
+        assertEquals(2, unlimitedCopyResult.getCopiedCount());
+        verify(client, times(1)).deleteObjects(any(DeleteObjectsRequest.class));
+        verify(client, times(3)).copyObject(any(CopyObjectRequest.class));
+        RateLimitStatistics statistics = rateLimiting.getStatistics();
+        assertEquals(2, statistics.getPermitted());
+        assertEquals(2, statistics.getRejected());
+    }
+
+    @Test
+    public void rateLimitDelaysCalls() throws Exception
+    {
+        RateLimitingAmazonS3 rateLimiting = new RateLimitingAmazonS3(client);
+        rateLimiting.setWriteRateLimit(MY_BUCKET, null, 20);
+        connector.setClient(new SimpleAmazonS3AmazonDevKitImpl(rateLimiting.toAmazonS3()));
+
+        for (int i = 0; i < 25; i++)
+        {
+            connector.deleteObject(MY_BUCKET, MY_OBJECT, null);
+        }
+
+        verify(client, times(25)).deleteObject(MY_BUCKET, MY_OBJECT);
+        RateLimitStatistics statistics = rateLimiting.getStatistics();
+        assertEquals(25, statistics.getPermitted());
+        assertTrue(statistics.getDelayed() > 0);
+        assertEquals(1, statistics.getMaxWaiting());
+    }
+
+    @Test
+    public void pooledConnectionsShareLimits() throws Exception
+    {
+        SharedAmazonS3Clients.SharedClient first = SharedAmazonS3Clients.acquire("key", "secret",
+            new ClientConfiguration(), 0);
+        SharedAmazonS3Clients.SharedClient second = SharedAmazonS3Clients.acquire("key", "secret",
+            new ClientConfiguration(), 0);
+        SharedAmazonS3Clients.ComponentFactory<RateLimitingAmazonS3> factory =
+            new SharedAmazonS3Clients.ComponentFactory<RateLimitingAmazonS3>()
+            {
+                public RateLimitingAmazonS3 create()
+                {
+                    return new RateLimitingAmazonS3(client);
+                }
+            };
+        try
+        {
+            RateLimitingAmazonS3 limiter = first.getComponent(Arrays.<Object> asList("rateLimits", 10), factory);
+            assertSame(limiter, second.getComponent(Arrays.<Object> asList("rateLimits", 10), factory));
+            assertNotSame(limiter, second.getComponent(Arrays.<Object> asList("rateLimits", 20), factory));
+        }
+        finally
+        {
+            SharedAmazonS3Clients.release(first);
+            SharedAmazonS3Clients.release(second);
+        }
+    }
+
+    @Test
+    public void concurrencyLimitBacksOffWhenThrottled() throws Exception
+    {
+        ConcurrencyLimitingAmazonS3 concurrencyLimiting = new ConcurrencyLimitingAmazonS3(client, 10);
+        connector.setClient(new SimpleAmazonS3AmazonDevKitImpl(concurrencyLimiting.toAmazonS3()));
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(new ObjectMetadata())
+            .thenThrow(newServiceException(503, "SlowDown"));
+
+        connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null);
+        assertEquals(10, concurrencyLimiting.getStatistics().getLimit());
+        try
+        {
+            connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null);
+            fail();
+        }
+        catch (AmazonServiceException e)
+        {
+            assertEquals("SlowDown", e.getErrorCode());
+        }
+
+        ConcurrencyLimitStatistics statistics = concurrencyLimiting.getStatistics();
+        assertEquals(8, statistics.getLimit());
+        assertEquals(1, statistics.getDecreases());
+        assertEquals(0, statistics.getInFlight());
+        assertEquals(0, statistics.getWaiting());
+    }
+
+    @Test
+    public void concurrencyLimitAppliesToEachRequest() throws Exception
+    {
+        ConcurrencyLimitingAmazonS3 concurrencyLimiting = new ConcurrencyLimitingAmazonS3(client, 1);
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(concurrencyLimiting.toAmazonS3());
+        simpleS3.setDeleteConcurrency(4);
+        connector.setClient(simpleS3);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        when(client.deleteObjects(any(DeleteObjectsRequest.class))).thenAnswer(new Answer<Object>()
+        {
+            public Object answer(InvocationOnMock invocation) throws Throwable
+            {
+                maxInFlight.set(Math.max(maxInFlight.get(), inFlight.incrementAndGet()));
+                Thread.sleep(10);
+                inFlight.decrementAndGet();
+                return null;
+            }
+        });
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 4000; i++)
+        {
+            keys.add("key" + i);
+        }
+
+        assertEquals(4000, connector.deleteObjects(MY_BUCKET, null, keys).getDeletedCount());
+        verify(client, times(4)).deleteObjects(any(DeleteObjectsRequest.class));
+        assertEquals(1, maxInFlight.get());
+    }
+
+    @Test
+    public void concurrencyLimitHoldsGotObjectsUntilClosed() throws Exception
+    {
+        ConcurrencyLimitingAmazonS3 concurrencyLimiting = new ConcurrencyLimitingAmazonS3(client, 10);
+        connector.setClient(new SimpleAmazonS3AmazonDevKitImpl(concurrencyLimiting.toAmazonS3()));
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(new ByteArrayInputStream("hello".getBytes()));
+        when(client.getObject(any(GetObjectRequest.class))).thenReturn(s3Object);
+
+        InputStream content = (InputStream) connector.getObjectContent(MY_BUCKET, MY_OBJECT, null, null, null,
+            null, null);
+        assertEquals(1, concurrencyLimiting.getStatistics().getInFlight());
+        content.close();
+        content.close();
+        assertEquals(0, concurrencyLimiting.getStatistics().getInFlight());
+    }
+
+    @Test
+    public void recordOperationMetrics() throws Exception
+    {
+        S3Metrics metrics = new S3Metrics();
+        connector.setClient(new MetricsSimpleAmazonS3(new SimpleAmazonS3AmazonDevKitImpl(client), metrics)
+            .toSimpleAmazonS3());
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(new ObjectMetadata())
+            .thenThrow(newServiceException(404, "NoSuchKey"));
+        when(client.putObject(any(PutObjectRequest.class))).thenAnswer(new Answer<PutObjectResult>()
+        {
+            public PutObjectResult answer(InvocationOnMock invocation) throws Throwable
+            {
+                IOUtils.toByteArray(((PutObjectRequest) invocation.getArguments()[0]).getInputStream());
+                return new PutObjectResult();
+            }
+        });
+
+        connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null);
+        try
+        {
+            connector.getObjectMetadata(MY_BUCKET, MY_OBJECT, null);
+            fail();
+        }
+        catch (AmazonServiceException e)
+        {
+            // expected
+        }
+        connector.createObject(MY_BUCKET, MY_OBJECT, new NullInputStream(100), 100L, null, null, PRIVATE,
+            org.mule.module.s3.StorageClass.STANDARD, null);
+
+        OperationMetrics getObjectMetadata = metrics.getOperationMetrics("getObjectMetadata");
+        assertEquals(2, getObjectMetadata.getRequests());
+        assertEquals(1, getObjectMetadata.getErrors());
+        assertEquals(Long.valueOf(1), getObjectMetadata.getErrorsByType().get("NoSuchKey"));
+        assertEquals(0, getObjectMetadata.getInFlight());
+        assertTrue(getObjectMetadata.getLatencyP50() <= getObjectMetadata.getLatencyP99());
+        assertTrue(getObjectMetadata.getLatencyP99() <= getObjectMetadata.getMaxLatency());
+        assertEquals(3, metrics.getRequests());
+        assertEquals(100, metrics.getBytesUploaded());
+    }
+
+    @Test
+    public void recordDownloadedBytesAsRead() throws Exception
+    {
+        S3Metrics metrics = new S3Metrics();
+        connector.setClient(new MetricsSimpleAmazonS3(new SimpleAmazonS3AmazonDevKitImpl(client), metrics)
+            .toSimpleAmazonS3());
+        S3Object unread = new S3Object();
+        unread.getObjectMetadata().setContentLength(1000);
+        unread.setObjectContent(new NullInputStream(1000));
+        S3Object read = new S3Object();
+        read.getObjectMetadata().setContentLength(5);
+        read.setObjectContent(new ByteArrayInputStream("hello".getBytes()));
+        when(client.getObject(any(GetObjectRequest.class))).thenReturn(unread, read);
+
+        connector.getObject(MY_BUCKET, MY_OBJECT, null, null, null, null, null);
+        S3Object object = (S3Object) connector.getObject(MY_BUCKET, MY_OBJECT, null, null, null, null, null);
+        InputStream content = object.getObjectContent();
+        content.mark(5);
+        assertEquals("hello", IOUtils.toString(content));
+        content.reset();
+        assertEquals("hello", IOUtils.toString(content));
+
+        assertEquals(5, metrics.getBytesDownloaded());
+    }
+
+    @Test
+    public void publishMetricsOverJmx() throws Exception
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        S3Metrics metrics = new S3Metrics();
+        metrics.register(server, "test");
+        try
+        {
+            assertEquals(0L, server.getAttribute(new ObjectName(
+                "org.mule.module.s3:type=S3Metrics,name=\"test\""), "Requests"));
+            assertEquals(0L, server.getAttribute(new ObjectName(
+                "org.mule.module.s3:type=S3Metrics,name=\"test\",operation=copyObject"), "Errors"));
+        }
+        finally
+        {
+            metrics.unregister();
+        }
+        assertTrue(server.queryNames(new ObjectName("org.mule.module.s3:type=S3Metrics,*"), null).isEmpty());
+    }
+
+    private static AmazonServiceException newServiceException(int statusCode, String errorCode)
+    {
+        AmazonServiceException e = new AmazonServiceException(errorCode);
+        e.setStatusCode(statusCode);
+        e.setErrorCode(errorCode);
+        return e;
+    }
+
+    /**
+     * A client that uploads contents longer than 10 bytes in 8 bytes parts
+     */
+    private SimpleAmazonS3AmazonDevKitImpl newMultipartClient()
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setMultipartUploadThreshold(10);
+        simpleS3.setMultipartUploadPartSize(8);
+        simpleS3.setMultipartUploadConcurrency(2);
+
+        InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+        initiateResult.setUploadId("upload1");
+        when(client.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(
+            initiateResult);
+        when(client.uploadPart(any(UploadPartRequest.class))).thenAnswer(new Answer<UploadPartResult>()
+        {
+            public UploadPartResult answer(InvocationOnMock invocation) throws Throwable
+            {
+                UploadPartRequest request = (UploadPartRequest) invocation.getArguments()[0];
+                UploadPartResult result = new UploadPartResult();
+                result.setPartNumber(request.getPartNumber());
+                result.setETag("etag" + request.getPartNumber());
+                return result;
+            }
+        });
+        return simpleS3;
+    }
+
+    @Test
+    public void testStreamingContent() throws Exception
+    {
+        S3ObjectContent content = S3ContentUtils.createContent(
+            new ByteArrayInputStream(new byte[]{20, 30, 6}), null, null, true);
+        assertThat(content, instanceOf(InputStreamS3ObjectContent.class));
+        assertEquals(0, content.createPutObjectRequest().getMetadata().getContentLength());
+        assertNull(content.createPutObjectRequest().getMetadata().getRawMetadata().get("Content-Length"));
+    }
+
+    /**
+     * A client that downloads the given content in 8 bytes ranges
+     */
+    private SimpleAmazonS3AmazonDevKitImpl newRangedDownloadClient(final String content)
+    {
+        SimpleAmazonS3AmazonDevKitImpl simpleS3 = new SimpleAmazonS3AmazonDevKitImpl(client);
+        simpleS3.setDownloadPartSize(8);
+        simpleS3.setDownloadConcurrency(2);
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length());
+        metadata.setHeader("ETag", "etag1");
+        when(client.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(metadata);
+        when(client.getObject(any(GetObjectRequest.class))).thenAnswer(new Answer<S3Object>()
+        {
+            public S3Object answer(InvocationOnMock invocation) throws Throwable
+            {
+                GetObjectRequest request = (GetObjectRequest) invocation.getArguments()[0];
+                assertEquals(Collections.singletonList("etag1"), request.getMatchingETagConstraints());
+                long[] range = request.getRange();
+                S3Object object = new S3Object();
+                object.setObjectContent(new ByteArrayInputStream(content.substring((int) range[0],
+                    (int) range[1] + 1).getBytes()));
+                return object;
+            }
+        });
+        return simpleS3;
+    }
+
     private S3ObjectSummary newObjectSummary(String key)
     {
         S3ObjectSummary summary = new S3ObjectSummary();
@@ -118,7 +118,7 @@ public class S3TestDriver
         assertNotNull(versionId2);
         assertFalse(versionId1.equals(versionId2));
         
-        Iterable<S3VersionSummary> version = connector.listObjectVersions(bucketName);
+        Iterable<S3VersionSummary> version = connector.listObjectVersions(bucketName, null, null, null);
         assertTrue(version.iterator().hasNext());
     }
 